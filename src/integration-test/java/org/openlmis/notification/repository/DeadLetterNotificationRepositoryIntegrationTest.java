@@ -0,0 +1,77 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import org.junit.Test;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.domain.Notification;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
+import org.openlmis.notification.util.NotificationDataBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
+
+public class DeadLetterNotificationRepositoryIntegrationTest
+    extends BaseCrudRepositoryIntegrationTest<DeadLetterNotification, PendingNotificationId> {
+
+  @Autowired
+  private DeadLetterNotificationRepository repository;
+
+  @Autowired
+  private NotificationRepository notificationRepository;
+
+  @Override
+  CrudRepository<DeadLetterNotification, PendingNotificationId> getRepository() {
+    return repository;
+  }
+
+  @Override
+  DeadLetterNotification generateInstance() {
+    Notification notification = new NotificationDataBuilder()
+        .withEmptyMessage(NotificationChannel.EMAIL)
+        .withEmptyMessage(NotificationChannel.SMS)
+        .buildAsNew();
+
+    notificationRepository.saveAndFlush(notification);
+
+    return new DeadLetterNotification(new PendingNotificationDataBuilder()
+        .buildForEmailChannel(notification), ZonedDateTime.now());
+  }
+
+  @Override
+  protected void assertBefore(DeadLetterNotification instance) {
+    assertThat(instance.getId()).isNotNull();
+  }
+
+  @Test
+  public void shouldFindDeadLetterNotificationsByNotificationId() {
+    DeadLetterNotification email = repository.saveAndFlush(generateInstance());
+    DeadLetterNotification sms = repository.saveAndFlush(new DeadLetterNotification(
+        new PendingNotificationDataBuilder()
+            .withNotification(email.getNotification())
+            .withChannel(NotificationChannel.SMS)
+            .build(), ZonedDateTime.now()));
+    repository.saveAndFlush(generateInstance());
+
+    assertThat(repository.findByNotificationId(email.getNotificationId()))
+        .containsExactlyInAnyOrder(email, sms);
+  }
+
+}
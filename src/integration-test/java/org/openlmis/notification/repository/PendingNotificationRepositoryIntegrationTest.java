@@ -16,7 +16,11 @@
 package org.openlmis.notification.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.openlmis.notification.domain.PendingNotification.HIGH_PRIORITY;
+import static org.openlmis.notification.domain.PendingNotification.NORMAL_PRIORITY;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
@@ -38,6 +42,7 @@ public class PendingNotificationRepositoryIntegrationTest
     extends BaseCrudRepositoryIntegrationTest<PendingNotification, PendingNotificationId> {
 
   private static final int COUNT = 5;
+  private static final Duration LEASE = Duration.ofMinutes(5);
 
   @Autowired
   private PendingNotificationRepository repository;
@@ -95,4 +100,95 @@ public class PendingNotificationRepositoryIntegrationTest
     assertThat(notificationExists).isTrue();
   }
 
+  @Test
+  public void shouldClaimOldestPendingNotifications() {
+    List<PendingNotification> claimed = repository.claimPendingNotifications(NORMAL_PRIORITY, 2, LEASE);
+
+    assertThat(claimed)
+        .hasSize(2)
+        .containsExactly(pendingNotifications.get(0), pendingNotifications.get(1));
+    assertThat(claimed.get(0).getNotification().getMessages()).hasSize(1);
+    assertThat(claimed.get(0).getNextAttemptAt()).isNotNull();
+  }
+
+  @Test
+  public void shouldNotClaimLeasedPendingNotifications() {
+    List<PendingNotification> claimed = repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, LEASE);
+
+    assertThat(claimed).hasSize(COUNT);
+    assertThat(repository.count()).isEqualTo(COUNT);
+    assertThat(repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, LEASE)).isEmpty();
+  }
+
+  @Test
+  public void shouldClaimPendingNotificationsAgainWhenLeaseHasExpired() {
+    repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, Duration.ZERO);
+
+    assertThat(repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, LEASE)).hasSize(COUNT);
+  }
+
+  @Test
+  public void shouldClaimPendingNotificationsWithGivenPriority() {
+    Notification notification = new NotificationDataBuilder()
+        .withEmptyMessage(NotificationChannel.EMAIL)
+        .withImportant(true)
+        .buildAsNew();
+    notificationRepository.saveAndFlush(notification);
+
+    PendingNotification important = repository.saveAndFlush(new PendingNotificationDataBuilder()
+        .buildForEmailChannel(notification));
+
+    assertThat(repository.claimPendingNotifications(HIGH_PRIORITY, COUNT, LEASE))
+        .containsExactly(important);
+    assertThat(repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, LEASE))
+        .hasSize(COUNT)
+        .doesNotContain(important);
+  }
+
+  @Test
+  public void shouldClaimPendingNotificationsOfGivenNotification() {
+    PendingNotification pending = pendingNotifications.get(1);
+    List<PendingNotification> claimed = repository
+        .claimPendingNotifications(pending.getNotificationId(), LEASE);
+
+    assertThat(claimed).containsExactly(pending);
+    assertThat(repository.claimPendingNotifications(pending.getNotificationId(), LEASE))
+        .isEmpty();
+  }
+
+  @Test
+  public void shouldRemovePendingNotification() {
+    PendingNotification pending = pendingNotifications.get(0);
+    pending.lease(ZonedDateTime.now(), LEASE);
+    repository.saveAndFlush(pending);
+
+    assertThat(repository.removePendingNotification(pending.getId(), pending.getLeaseId()))
+        .isEqualTo(1);
+    assertThat(repository.existsById(pending.getId())).isFalse();
+  }
+
+  @Test
+  public void shouldNotRemovePendingNotificationLeasedAgain() {
+    PendingNotification pending = pendingNotifications.get(0);
+    pending.lease(ZonedDateTime.now(), LEASE);
+    UUID staleLeaseId = pending.getLeaseId();
+    pending.lease(ZonedDateTime.now(), LEASE);
+    repository.saveAndFlush(pending);
+
+    assertThat(repository.removePendingNotification(pending.getId(), staleLeaseId)).isZero();
+    assertThat(repository.findByIdAndLeaseId(pending.getId(), staleLeaseId)).isEmpty();
+    assertThat(repository.existsById(pending.getId())).isTrue();
+  }
+
+  @Test
+  public void shouldNotClaimPendingNotificationsBeforeNextAttempt() {
+    PendingNotification pending = pendingNotifications.get(0);
+    pending.failed(ZonedDateTime.now(), LEASE);
+    repository.saveAndFlush(pending);
+
+    assertThat(repository.claimPendingNotifications(NORMAL_PRIORITY, COUNT, LEASE))
+        .hasSize(COUNT - 1)
+        .doesNotContain(pending);
+  }
+
 }
@@ -21,9 +21,12 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.openlmis.notification.service.NotificationToSendRetriever.CHANNEL_TO_USE_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.IMPORTANT_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 
@@ -50,8 +53,7 @@ import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.openlmis.notification.repository.NotificationRepository;
 import org.openlmis.notification.repository.PendingNotificationRepository;
 import org.openlmis.notification.repository.UserContactDetailsRepository;
-import org.openlmis.notification.service.referencedata.TogglzFeatureDto;
-import org.openlmis.notification.service.referencedata.TogglzReferenceDataService;
+import org.openlmis.notification.service.referencedata.TogglzFeatureCache;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
 import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
@@ -89,6 +91,9 @@ public class NotificationToSendFlowIntegrationTest {
 
   private static final int INITIAL_USER_CONTACT_DETAILS_COUNT = 1;
 
+  // messages are sent and acknowledged by channel lanes in separate threads
+  private static final long TIMEOUT = 1000;
+
   @MockBean
   private EmailSender emailSender;
 
@@ -96,7 +101,7 @@ public class NotificationToSendFlowIntegrationTest {
   private SmsSender smsSender;
 
   @MockBean
-  private TogglzReferenceDataService togglzReferenceDataService;
+  private TogglzFeatureCache togglzFeatureCache;
 
   @Autowired
   private NotificationRepository notificationRepository;
@@ -113,6 +118,9 @@ public class NotificationToSendFlowIntegrationTest {
   @Autowired
   private DigestSubscriptionRepository digestSubscriptionRepository;
 
+  @Autowired
+  private DigestConfigurationRegistry digestConfigurationRegistry;
+
   @Autowired
   private NotificationToSendRetriever retriever;
 
@@ -131,9 +139,6 @@ public class NotificationToSendFlowIntegrationTest {
 
   private List<PendingNotification> pendingEmailNotifications = Lists.newArrayList();
 
-  private TogglzFeatureDto digestFeature =
-      new TogglzFeatureDto(DigestFilter.CONSOLIDATE_NOTIFICATIONS, true, null, null);
-
   private DigestConfiguration configuration;
   private List<DigestSubscription> subscriptions = Lists.newArrayList();
 
@@ -148,7 +153,7 @@ public class NotificationToSendFlowIntegrationTest {
     TransactionTemplate template = new TransactionTemplate(transactionManager);
     template.execute(new DatabaseInitializer());
 
-    given(togglzReferenceDataService.findAll()).willReturn(Lists.newArrayList(digestFeature));
+    digestConfigurationRegistry.reload();
   }
 
   @After
@@ -160,16 +165,18 @@ public class NotificationToSendFlowIntegrationTest {
   @Test
   public void shouldSendEmail() {
     // given
-    digestFeature.setEnabled(false);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(false);
 
     // when
     startChannel.send(message);
 
     // then
-    verify(emailSender).sendMail(correctContactDetails.getEmailAddress(), SUBJECT, BODY);
+    verify(emailSender, timeout(TIMEOUT))
+        .sendMail(correctContactDetails.getEmailAddress(), SUBJECT, BODY);
 
-    assertThat(pendingNotificationRepository.existsById(correctPendingNotification.getId()))
-        .isFalse();
+    await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() ->
+        !pendingNotificationRepository.existsById(correctPendingNotification.getId()));
 
     assertThat(userContactDetailsRepository.count()).isEqualTo(userContactDetails.size());
     assertThat(notificationRepository.count()).isEqualTo(emailNotifications.size());
@@ -191,18 +198,22 @@ public class NotificationToSendFlowIntegrationTest {
       .setHeader(RECIPIENT_HEADER, notification.getUserId())
       .setHeader(IMPORTANT_HEADER, notification.getImportant())
       .setHeader(CHANNEL_TO_USE_HEADER, notification.getMessages().get(0).getChannel())
+      .setHeader(CONTACT_DETAILS_HEADER,
+          new UserContactDetailsSnapshot(userContactDetails.get(0)))
       .build();
     // given
-    digestFeature.setEnabled(false);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(false);
 
     // when
     startChannel.send(message);
 
     // then
-    verify(emailSender).sendMail(correctContactDetails.getEmailAddress(), subject, body);
+    verify(emailSender, timeout(TIMEOUT))
+        .sendMail(correctContactDetails.getEmailAddress(), subject, body);
 
-    assertThat(pendingNotificationRepository.existsById(correctPendingNotification.getId()))
-        .isFalse();
+    await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() ->
+        !pendingNotificationRepository.existsById(correctPendingNotification.getId()));
 
     assertThat(userContactDetailsRepository.count()).isEqualTo(userContactDetails.size());
     assertThat(notificationRepository.count()).isEqualTo(emailNotifications.size());
@@ -214,7 +225,8 @@ public class NotificationToSendFlowIntegrationTest {
   @Test
   public void shouldSendDigestEmail() {
     // given
-    digestFeature.setEnabled(true);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(true);
 
     willAnswer(invocation -> {
       digestMessageSent.set(true);
@@ -231,8 +243,8 @@ public class NotificationToSendFlowIntegrationTest {
     // then
     verify(emailSender).sendMail(correctContactDetails.getEmailAddress(), SUBJECT, EXPECTED_MSG);
 
-    assertThat(pendingNotificationRepository.existsById(correctPendingNotification.getId()))
-        .isFalse();
+    await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() ->
+        !pendingNotificationRepository.existsById(correctPendingNotification.getId()));
 
     assertThat(userContactDetailsRepository.count())
             .isEqualTo(userContactDetails.size() + INITIAL_USER_CONTACT_DETAILS_COUNT);
@@ -253,15 +265,18 @@ public class NotificationToSendFlowIntegrationTest {
       .setHeader(RECIPIENT_HEADER, notification.getUserId())
       .setHeader(IMPORTANT_HEADER, notification.getImportant())
       .setHeader(CHANNEL_TO_USE_HEADER, notification.getMessages().get(0).getChannel())
+      .setHeader(CONTACT_DETAILS_HEADER,
+          new UserContactDetailsSnapshot(userContactDetails.get(0)))
       .build();
 
     // given
-    digestFeature.setEnabled(false);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(false);
 
     // when
     startChannel.send(message);
 
-    verify(emailSender, never()).sendMail(anyString(), anyString(), any());
+    verify(emailSender, after(TIMEOUT).never()).sendMail(anyString(), anyString(), any());
     verify(smsSender, never()).sendMessage(anyString(), anyString());
   }
 
@@ -279,18 +294,22 @@ public class NotificationToSendFlowIntegrationTest {
         .setHeader(RECIPIENT_HEADER, notification.getUserId())
         .setHeader(IMPORTANT_HEADER, notification.getImportant())
         .setHeader(CHANNEL_TO_USE_HEADER, notification.getMessages().get(0).getChannel())
+        .setHeader(CONTACT_DETAILS_HEADER,
+            new UserContactDetailsSnapshot(userContactDetails.get(0)))
         .build();
 
     // given
-    digestFeature.setEnabled(false);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(false);
 
     // when
     startChannel.send(message);
 
-    verify(emailSender).sendMail(correctContactDetails.getEmailAddress(), subject, body);
+    verify(emailSender, timeout(TIMEOUT))
+        .sendMail(correctContactDetails.getEmailAddress(), subject, body);
 
-    assertThat(pendingNotificationRepository.existsById(correctPendingNotification.getId()))
-        .isFalse();
+    await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() ->
+        !pendingNotificationRepository.existsById(correctPendingNotification.getId()));
 
     assertThat(userContactDetailsRepository.count()).isEqualTo(userContactDetails.size());
     assertThat(notificationRepository.count()).isEqualTo(emailNotifications.size());
@@ -328,7 +347,7 @@ public class NotificationToSendFlowIntegrationTest {
     }
 
     private void retrieveFirstPendingNotification() {
-      message = retriever.retrieve();
+      message = retriever.split(retriever.retrieve().getPayload()).get(0);
 
       correctContactDetails = userContactDetails
           .stream()
@@ -0,0 +1,181 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.web.deadletter;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willDoNothing;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND;
+
+import guru.nidi.ramltester.junit.RamlMatchers;
+import java.time.ZonedDateTime;
+import org.apache.http.HttpStatus;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.repository.DeadLetterNotificationRepository;
+import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.service.PendingNotificationService;
+import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
+import org.openlmis.notification.web.BaseWebIntegrationTest;
+import org.openlmis.notification.web.MissingPermissionException;
+import org.openlmis.notification.web.NotFoundException;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+public class DeadLetterNotificationControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = "/api/deadLetterNotifications";
+  private static final String REQUEUE_URL = RESOURCE_URL + "/requeue";
+  private static final String ID_REQUEUE_URL = RESOURCE_URL + "/{notificationId}/requeue";
+
+  @MockBean
+  private DeadLetterNotificationRepository deadLetterNotificationRepository;
+
+  @MockBean
+  private PendingNotificationService pendingNotificationService;
+
+  private DeadLetterNotification deadLetter = new DeadLetterNotification(
+      new PendingNotificationDataBuilder().build(), ZonedDateTime.now());
+
+  @Before
+  public void setUp() {
+    willDoNothing().given(permissionService).canManageDeadLetterNotifications();
+    given(deadLetterNotificationRepository.findAll(any(Pageable.class)))
+        .willReturn(new PageImpl<>(Lists.newArrayList(deadLetter)));
+  }
+
+  @Test
+  public void shouldGetDeadLetterNotifications() {
+    // when
+    startUserRequest()
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_OK)
+        .body("content", hasSize(1))
+        .body("content.notificationId", hasItems(deadLetter.getNotificationId().toString()));
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForGetDeadLetterNotificationsIfTokenIsInvalid() {
+    // when
+    startRequest(null)
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnForbiddenForGetDeadLetterNotificationsIfUserHasNoRight() {
+    // given
+    willThrow(new MissingPermissionException("test"))
+        .given(permissionService).canManageDeadLetterNotifications();
+
+    // when
+    startUserRequest()
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_FORBIDDEN);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldRequeueAllDeadLetterNotifications() {
+    // when
+    startUserRequest()
+        .when()
+        .post(REQUEUE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NO_CONTENT);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+    verify(pendingNotificationService).requeueAll();
+  }
+
+  @Test
+  public void shouldReturnForbiddenForRequeueAllIfUserHasNoRight() {
+    // given
+    willThrow(new MissingPermissionException("test"))
+        .given(permissionService).canManageDeadLetterNotifications();
+
+    // when
+    startUserRequest()
+        .when()
+        .post(REQUEUE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_FORBIDDEN);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldRequeueDeadLetterNotification() {
+    // when
+    startUserRequest()
+        .pathParam("notificationId", deadLetter.getNotificationId())
+        .queryParam("channel", NotificationChannel.SMS)
+        .when()
+        .post(ID_REQUEUE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NO_CONTENT);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+    verify(pendingNotificationService)
+        .requeue(deadLetter.getNotificationId(), NotificationChannel.SMS);
+  }
+
+  @Test
+  public void shouldReturnNotFoundForRequeueIfDeadLetterNotificationDoesNotExist() {
+    // given
+    willThrow(new NotFoundException(ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND))
+        .given(pendingNotificationService).requeue(deadLetter.getNotificationId(), null);
+
+    // when
+    startUserRequest()
+        .pathParam("notificationId", deadLetter.getNotificationId())
+        .when()
+        .post(ID_REQUEUE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NOT_FOUND)
+        .body(MESSAGE_KEY, is(ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND));
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+}
@@ -20,7 +20,11 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willDoNothing;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_DIGEST_CONFIGURATION_NOT_FOUND;
 
 import guru.nidi.ramltester.junit.RamlMatchers;
@@ -31,8 +35,11 @@ import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.openlmis.notification.domain.DigestConfiguration;
+import org.openlmis.notification.service.DigestConfigurationRegistry;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.web.BaseWebIntegrationTest;
+import org.openlmis.notification.web.MissingPermissionException;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 
@@ -40,6 +47,10 @@ public class DigestConfigurationControllerIntegrationTest extends BaseWebIntegra
 
   private static final String RESOURCE_URL = "/api/digestConfiguration";
   private static final String ID_RESOURCE_URL = RESOURCE_URL + "/{id}";
+  private static final String RELOAD_URL = RESOURCE_URL + "/reload";
+
+  @MockBean
+  private DigestConfigurationRegistry digestConfigurationRegistry;
 
   private DigestConfiguration configuration = new DigestConfigurationDataBuilder().build();
   private UUID configurationId = configuration.getId();
@@ -50,6 +61,7 @@ public class DigestConfigurationControllerIntegrationTest extends BaseWebIntegra
         .willReturn(new PageImpl<>(Lists.newArrayList(configuration)));
     given(digestConfigurationRepository.findById(configurationId))
         .willReturn(Optional.of(configuration));
+    willDoNothing().given(permissionService).canManageDigestConfigurations();
   }
 
   @Test
@@ -126,4 +138,36 @@ public class DigestConfigurationControllerIntegrationTest extends BaseWebIntegra
     // then
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
+
+  @Test
+  public void shouldReloadDigestConfigurations() {
+    // when
+    startUserRequest()
+        .when()
+        .post(RELOAD_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NO_CONTENT);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+    verify(digestConfigurationRegistry).reload();
+  }
+
+  @Test
+  public void shouldReturnForbiddenForReloadIfUserHasNoRight() {
+    // given
+    willThrow(new MissingPermissionException("test"))
+        .given(permissionService).canManageDigestConfigurations();
+
+    // when
+    startUserRequest()
+        .when()
+        .post(RELOAD_URL)
+        .then()
+        .statusCode(HttpStatus.SC_FORBIDDEN);
+
+    // then
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+    verify(digestConfigurationRegistry, never()).reload();
+  }
 }
@@ -20,7 +20,9 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_NOTIFICATION_QUEUE_FULL;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_NOTIFICATION_REQUEST_FIELD_REQUIRED;
 import static org.openlmis.notification.i18n.MessageKeys.PERMISSION_MISSING_GENERIC;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
@@ -37,6 +39,8 @@ import org.openlmis.notification.domain.UserContactDetails;
 import org.openlmis.notification.repository.NotificationRepository;
 import org.openlmis.notification.service.NotificationChannel;
 import org.openlmis.notification.service.PageDto;
+import org.openlmis.notification.service.PendingNotificationBacklog;
+import org.openlmis.notification.service.PendingNotificationDispatcher;
 import org.openlmis.notification.service.referencedata.UserDto;
 import org.openlmis.notification.service.referencedata.UserReferenceDataService;
 import org.openlmis.notification.testutils.UserDataBuilder;
@@ -44,6 +48,7 @@ import org.openlmis.notification.util.NotificationDataBuilder;
 import org.openlmis.notification.util.Pagination;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
 import org.openlmis.notification.web.BaseWebIntegrationTest;
+import org.openlmis.notification.web.TooManyRequestsException;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -63,6 +68,12 @@ public class NotificationControllerIntegrationTest extends BaseWebIntegrationTes
   @MockBean
   private UserReferenceDataService userReferenceDataService;
 
+  @MockBean
+  private PendingNotificationDispatcher pendingNotificationDispatcher;
+
+  @MockBean
+  private PendingNotificationBacklog pendingNotificationBacklog;
+
   private UserContactDetails contactDetails = new UserContactDetailsDataBuilder()
       .withReferenceDataUserId(USER_ID)
       .build();
@@ -95,6 +106,20 @@ public class NotificationControllerIntegrationTest extends BaseWebIntegrationTes
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldReturnTooManyRequestsIfThereAreTooManyPendingNotifications() {
+    willThrow(new TooManyRequestsException(30, ERROR_NOTIFICATION_QUEUE_FULL, "30"))
+        .given(pendingNotificationBacklog).admit(any());
+
+    send(SERVICE_ACCESS_TOKEN_HEADER)
+        .then()
+        .statusCode(429)
+        .header(HttpHeaders.RETRY_AFTER, "30")
+        .body(MESSAGE_KEY, is(ERROR_NOTIFICATION_QUEUE_FULL));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldNotSendMessageForInvalidNotification() {
     notification = new NotificationDataBuilder()
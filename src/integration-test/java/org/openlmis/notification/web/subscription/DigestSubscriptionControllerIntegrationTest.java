@@ -23,6 +23,7 @@ import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.verify;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_DIGEST_SUBSCRIPTION_INVALID_CHANNEL_FOR_DIGEST;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_INVALID_TAG_IN_SUBSCRIPTION;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_USER_CONTACT_DETAILS_NOT_FOUND;
@@ -41,11 +42,13 @@ import org.openlmis.notification.domain.DigestConfiguration;
 import org.openlmis.notification.domain.DigestSubscription;
 import org.openlmis.notification.domain.UserContactDetails;
 import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.service.SubscriptionRouteCache;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
 import org.openlmis.notification.web.BaseWebIntegrationTest;
 import org.openlmis.notification.web.MissingPermissionException;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
@@ -54,6 +57,9 @@ public class DigestSubscriptionControllerIntegrationTest extends BaseWebIntegrat
 
   private static final String USER_SUBSCRIPTIONS_URL = "/api/users/{id}/subscriptions";
 
+  @MockBean
+  private SubscriptionRouteCache subscriptionRouteCache;
+
   private UserContactDetails userContactDetails = new UserContactDetailsDataBuilder().build();
   private DigestConfiguration configuration = new DigestConfigurationDataBuilder().build();
   private DigestSubscription subscription = new DigestSubscriptionDataBuilder()
@@ -172,6 +178,7 @@ public class DigestSubscriptionControllerIntegrationTest extends BaseWebIntegrat
 
     // then
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+    verify(subscriptionRouteCache).invalidate(userId);
   }
 
   @Test
@@ -15,11 +15,8 @@
 
 package org.openlmis.notification;
 
-import com.google.common.collect.Lists;
-import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
-import org.aopalliance.aop.Advice;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.callback.Callback;
 import org.openlmis.notification.domain.Identifiable;
@@ -34,13 +31,12 @@ import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.integration.config.EnableIntegration;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.scheduling.PollerMetadata;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.support.PeriodicTrigger;
-import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.interceptor.MatchAlwaysTransactionAttributeSource;
-import org.springframework.transaction.interceptor.TransactionInterceptor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.CookieLocaleResolver;
@@ -111,27 +107,43 @@ public class Application {
   }
 
   /**
-   * Creates a metadata that will be used to create a default poller.
+   * Creates a metadata that will be used to create a default poller. If pending notifications
+   * are sent by the listener, the poller is only a safety net and runs less often. The poller
+   * does not open a transaction: pending notifications are leased in a short transaction and
+   * no database connection is held while they are being sent.
    */
   @Bean(name = PollerMetadata.DEFAULT_POLLER)
-  public PollerMetadata defaultPoller(PlatformTransactionManager transactionManager) {
-    List<Advice> adviceChain = Lists.newArrayList();
-    adviceChain.add(new TransactionInterceptor(transactionManager,
-        new MatchAlwaysTransactionAttributeSource()));
-
-    PeriodicTrigger trigger = new PeriodicTrigger(1, TimeUnit.SECONDS);
+  public PollerMetadata defaultPoller(
+      @Value("${notificationToSend.pollInterval}") long pollInterval,
+      @Value("${notificationToSend.listener.enabled}") boolean listenerEnabled,
+      @Value("${notificationToSend.listener.fallbackPollInterval}") long fallbackPollInterval) {
+    PeriodicTrigger trigger = new PeriodicTrigger(
+        listenerEnabled ? fallbackPollInterval : pollInterval, TimeUnit.MILLISECONDS);
     trigger.setFixedRate(false);
     trigger.setInitialDelay(0);
 
     PollerMetadata metadata = new PollerMetadata();
-    metadata.setAdviceChain(adviceChain);
     metadata.setTrigger(trigger);
 
     return metadata;
   }
 
+  /**
+   * Creates a template that is used to send messages to channels resolved by their names.
+   */
+  @Bean
+  public MessagingTemplate messagingTemplate() {
+    return new MessagingTemplate();
+  }
+
+  /**
+   * Creates a template that sends requests with the shared, pooled HTTP client.
+   */
   @Bean
-  public RestTemplate restTemplate(RestTemplateBuilder builder) {
-    return builder.build();
+  public RestTemplate restTemplate(RestTemplateBuilder builder,
+      ClientHttpRequestFactory clientHttpRequestFactory) {
+    return builder
+        .requestFactory(() -> clientHttpRequestFactory)
+        .build();
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Defines a single pooled HTTP client that is used for requests to other services (auth,
+ * referencedata) and to the SMS gateway. Connections are kept alive and reused, so requests do
+ * not pay for a new TCP (and TLS) handshake every time. The usage of the pool is published as
+ * the httpcomponents.httpclient.pool.* metrics.
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+  static final String HTTP_CLIENT_NAME = "notification";
+
+  /**
+   * Creates the connection pool.
+   */
+  @Bean
+  public PoolingHttpClientConnectionManager httpClientConnectionManager(
+      @Value("${http.client.maxConnections}") int maxConnections,
+      @Value("${http.client.maxConnectionsPerRoute}") int maxConnectionsPerRoute) {
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    return connectionManager;
+  }
+
+  /**
+   * Creates the HTTP client. Connections are kept alive as long as the server allows, but not
+   * longer than the configured keep alive time, and idle connections are closed in the
+   * background.
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager,
+      @Value("${http.client.connectTimeout}") int connectTimeout,
+      @Value("${http.client.readTimeout}") int readTimeout,
+      @Value("${http.client.connectionRequestTimeout}") int connectionRequestTimeout,
+      @Value("${http.client.keepAlive}") long keepAlive) {
+    RequestConfig requestConfig = RequestConfig
+        .custom()
+        .setConnectTimeout(connectTimeout)
+        .setSocketTimeout(readTimeout)
+        .setConnectionRequestTimeout(connectionRequestTimeout)
+        .build();
+
+    return HttpClients
+        .custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy((response, context) -> {
+          long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+              .getKeepAliveDuration(response, context);
+          return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        })
+        .evictExpiredConnections()
+        .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+        .useSystemProperties()
+        .build();
+  }
+
+  @Bean
+  public ClientHttpRequestFactory clientHttpRequestFactory(CloseableHttpClient httpClient) {
+    return new HttpComponentsClientHttpRequestFactory(httpClient);
+  }
+
+  @Bean
+  public MeterBinder httpClientConnectionPoolMetrics(
+      PoolingHttpClientConnectionManager connectionManager) {
+    return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager,
+        HTTP_CLIENT_NAME);
+  }
+
+}
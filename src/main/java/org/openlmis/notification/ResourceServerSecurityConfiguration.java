@@ -15,6 +15,8 @@
 
 package org.openlmis.notification;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
 import java.io.IOException;
 import java.util.Arrays;
 import javax.servlet.FilterChain;
@@ -23,6 +25,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.openlmis.notification.security.CustomTokenServices;
 import org.openlmis.notification.security.CustomUserAuthenticationConverter;
+import org.openlmis.notification.security.LocalJwtTokenServices;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -39,6 +42,7 @@ import org.springframework.security.oauth2.provider.authentication.TokenExtracto
 import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
 import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -95,25 +99,39 @@ public class ResourceServerSecurityConfiguration implements ResourceServerConfig
   }
 
   /**
-   * RemoteTokenServices bean initializer.
+   * ResourceServerTokenServices bean initializer. If a JWT verifier key is set, signed JWT access
+   * tokens are verified locally and only opaque tokens are checked in the auth service.
    * @param checkTokenUrl url to check tokens against
    * @param clientId client's id
    * @param clientSecret client's secret
+   * @param invalidTokenRetryLimit how many times an invalid token is checked again
+   * @param tokenCacheMaximumSize maximum number of cached token check results
+   * @param tokenCacheTimeToLive how long (in milliseconds) a token check result is cached
+   * @param jwtVerifierKey public key used to verify JWT access tokens, blank to disable
    * @return token services
    */
   @Bean
   @Autowired
-  public RemoteTokenServices remoteTokenServices(
+  public ResourceServerTokenServices tokenServices(
       @Value("${auth.server.url}") String checkTokenUrl,
       @Value("${auth.server.clientId}") String clientId,
       @Value("${auth.server.clientSecret}") String clientSecret,
-      @Value("${auth.server.invalidToken.retryLimit}") int invalidTokenRetryLimit) {
-    final RemoteTokenServices remoteTokenServices = new CustomTokenServices(invalidTokenRetryLimit);
+      @Value("${auth.server.invalidToken.retryLimit}") int invalidTokenRetryLimit,
+      @Value("${auth.server.tokenCache.maximumSize}") long tokenCacheMaximumSize,
+      @Value("${auth.server.tokenCache.timeToLive}") long tokenCacheTimeToLive,
+      @Value("${auth.server.jwt.verifierKey}") String jwtVerifierKey) {
+    final RemoteTokenServices remoteTokenServices = new CustomTokenServices(
+        invalidTokenRetryLimit, tokenCacheMaximumSize, tokenCacheTimeToLive);
     remoteTokenServices.setCheckTokenEndpointUrl(checkTokenUrl);
     remoteTokenServices.setClientId(clientId);
     remoteTokenServices.setClientSecret(clientSecret);
     remoteTokenServices.setAccessTokenConverter(accessTokenConverter());
-    return remoteTokenServices;
+
+    if (isBlank(jwtVerifierKey)) {
+      return remoteTokenServices;
+    }
+
+    return new LocalJwtTokenServices(jwtVerifierKey, accessTokenConverter(), remoteTokenServices);
   }
 
   /**
@@ -0,0 +1,115 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.domain;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.MapsId;
+import javax.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.openlmis.notification.service.NotificationChannel;
+
+/**
+ * A pending notification that could not be sent after the maximum number of attempts. It is
+ * not sent again unless it is requeued.
+ */
+@Getter
+@Entity
+@Table(name = "dead_letter_notifications")
+@NoArgsConstructor
+@EqualsAndHashCode(of = "id")
+@ToString(exclude = "notification")
+public class DeadLetterNotification implements Identifiable<PendingNotificationId> {
+
+  @EmbeddedId
+  private PendingNotificationId id;
+
+  @MapsId("notificationId")
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "notificationId", nullable = false)
+  private Notification notification;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime createdDate;
+
+  @Column(nullable = false)
+  private int attemptCount;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime deadLetteredDate;
+
+  /**
+   * Creates a new instance based on the given pending notification.
+   */
+  public DeadLetterNotification(PendingNotification pending, ZonedDateTime deadLetteredDate) {
+    this.id = new PendingNotificationId(pending.getNotificationId(), pending.getChannel());
+    this.notification = pending.getNotification();
+    this.createdDate = pending.getCreatedDate();
+    this.attemptCount = pending.getAttemptCount();
+    this.deadLetteredDate = deadLetteredDate;
+  }
+
+  /**
+   * Creates a new pending notification so the notification can be sent again.
+   */
+  public PendingNotification requeue() {
+    return new PendingNotification(notification, getChannel());
+  }
+
+  public UUID getNotificationId() {
+    return id.getNotificationId();
+  }
+
+  public NotificationChannel getChannel() {
+    return id.getChannel();
+  }
+
+  /**
+   * Exports current state of the object.
+   */
+  public void export(Exporter exporter) {
+    exporter.setNotificationId(getNotificationId());
+    exporter.setChannel(getChannel());
+    exporter.setCreatedDate(createdDate);
+    exporter.setAttemptCount(attemptCount);
+    exporter.setDeadLetteredDate(deadLetteredDate);
+  }
+
+  public interface Exporter {
+
+    void setNotificationId(UUID notificationId);
+
+    void setChannel(NotificationChannel channel);
+
+    void setCreatedDate(ZonedDateTime createdDate);
+
+    void setAttemptCount(int attemptCount);
+
+    void setDeadLetteredDate(ZonedDateTime deadLetteredDate);
+
+  }
+
+}
@@ -16,6 +16,7 @@
 package org.openlmis.notification.domain;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.UUID;
 import javax.persistence.Column;
@@ -27,8 +28,6 @@ import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.MapsId;
-import javax.persistence.NamedQueries;
-import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -36,6 +35,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.apache.commons.lang3.BooleanUtils;
 import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
 import org.openlmis.notification.service.NotificationChannel;
 
@@ -45,17 +45,10 @@ import org.openlmis.notification.service.NotificationChannel;
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
 @ToString(exclude = "notification")
-@NamedQueries({
-    @NamedQuery(name = "PendingNotification.getPendingNotifications",
-        query = "SELECT p"
-            + " FROM PendingNotification p"
-            + " INNER JOIN FETCH p.notification"
-            + " ORDER BY p.createdDate ASC")
-})
 public class PendingNotification implements Identifiable<PendingNotificationId> {
 
-  public static final String GET_PENDING_NOTIFICATIONS_NAMED_QUERY =
-      "PendingNotification.getPendingNotifications";
+  public static final int NORMAL_PRIORITY = 0;
+  public static final int HIGH_PRIORITY = 1;
 
   @EmbeddedId
   private PendingNotificationId id;
@@ -69,6 +62,18 @@ public class PendingNotification implements Identifiable<PendingNotificationId>
   @Getter
   private ZonedDateTime createdDate;
 
+  @Column(columnDefinition = "timestamp with time zone")
+  private ZonedDateTime nextAttemptAt;
+
+  @Column(nullable = false)
+  private int attemptCount;
+
+  @Column(nullable = false)
+  private int priority;
+
+  @Column
+  private UUID leaseId;
+
   /**
    * Creates a new instance based on passed parameters.
    */
@@ -76,6 +81,39 @@ public class PendingNotification implements Identifiable<PendingNotificationId>
     this.id = new PendingNotificationId(notification.getId(), channel);
     this.notification = notification;
     this.createdDate = ZonedDateTime.now();
+    this.priority = BooleanUtils.isTrue(notification.getImportant())
+        ? HIGH_PRIORITY
+        : NORMAL_PRIORITY;
+  }
+
+  /**
+   * Marks the pending notification as being sent. It can't be claimed again until the lease
+   * expires, unless it is released earlier. Each lease gets a new ID, so the outcome of a send
+   * can be matched with the lease it was made under.
+   */
+  public void lease(ZonedDateTime now, Duration duration) {
+    this.nextAttemptAt = now.plus(duration);
+    this.leaseId = UUID.randomUUID();
+  }
+
+  /**
+   * Records a failed attempt to send the notification. It can't be claimed again until the given
+   * delay passes.
+   */
+  public void failed(ZonedDateTime now, Duration retryDelay) {
+    this.attemptCount++;
+    this.nextAttemptAt = now.plus(retryDelay);
+    this.leaseId = null;
+  }
+
+  /**
+   * Gives up the lease without counting it as a failed attempt, for example when the message
+   * could not be handed off because the sending lanes are full. The notification can be claimed
+   * again after the given delay.
+   */
+  public void release(ZonedDateTime now, Duration delay) {
+    this.nextAttemptAt = now.plus(delay);
+    this.leaseId = null;
   }
 
   public UUID getNotificationId() {
@@ -90,6 +128,8 @@ public class PendingNotification implements Identifiable<PendingNotificationId>
   @NoArgsConstructor
   @AllArgsConstructor
   @EqualsAndHashCode
+  @ToString
+  @Getter
   public static final class PendingNotificationId implements Serializable {
 
     private UUID notificationId;
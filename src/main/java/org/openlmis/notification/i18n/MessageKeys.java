@@ -32,6 +32,7 @@ public abstract class MessageKeys {
   private static final String SEARCH = "search";
   private static final String DIGEST_CONFIGURATION = "digestConfiguration";
   private static final String DIGEST_SUBSCRIPTION = "digestSubscription";
+  private static final String DEAD_LETTER_NOTIFICATION = "deadLetterNotification";
 
 
   private static final String AUTHENTICATION = "authentication";
@@ -123,6 +124,9 @@ public abstract class MessageKeys {
   public static final String ERROR_NOTIFICATION_SEARCH_INVALID_PARAMS =
       join(ERROR_PREFIX, NOTIFICATION, SEARCH, INVALID_PARAMS);
 
+  public static final String ERROR_NOTIFICATION_QUEUE_FULL =
+      join(ERROR_PREFIX, NOTIFICATION, "queueFull");
+
   public static final String ERROR_INVALID_DATE_FORMAT =
       join(ERROR_PREFIX, INVALID_DATE_FORMAT);
 
@@ -141,6 +145,9 @@ public abstract class MessageKeys {
   public static final String ERROR_DIGEST_CONFIGURATION_NOT_FOUND =
       join(ERROR_PREFIX, DIGEST_CONFIGURATION, NOT_FOUND);
 
+  public static final String ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND =
+      join(ERROR_PREFIX, DEAD_LETTER_NOTIFICATION, NOT_FOUND);
+
   public static final String ERROR_DIGEST_SUBSCRIPTION_INVALID_CHANNEL_FOR_DIGEST =
       join(ERROR_PREFIX, DIGEST_SUBSCRIPTION, INVALID_CHANNEL_FOR_DIGEST);
 
@@ -15,11 +15,32 @@
 
 package org.openlmis.notification.repository;
 
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.LockModeType;
 import org.openlmis.notification.domain.PendingNotification;
 import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.openlmis.notification.repository.custom.PendingNotificationRepositoryCustom;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface PendingNotificationRepository
-    extends JpaRepository<PendingNotification, PendingNotificationId> {
+    extends JpaRepository<PendingNotification, PendingNotificationId>,
+    PendingNotificationRepositoryCustom {
+
+  @Query("DELETE FROM PendingNotification AS p"
+      + " WHERE p.id = :id"
+      + " AND p.leaseId = :leaseId")
+  @Modifying
+  @Transactional
+  int removePendingNotification(@Param("id") PendingNotificationId id,
+      @Param("leaseId") UUID leaseId);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<PendingNotification> findByIdAndLeaseId(PendingNotificationId id, UUID leaseId);
 
 }
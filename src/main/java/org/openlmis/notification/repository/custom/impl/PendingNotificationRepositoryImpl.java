@@ -0,0 +1,135 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.repository.custom.impl;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import org.hibernate.Hibernate;
+import org.openlmis.notification.domain.Notification;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.repository.custom.PendingNotificationRepositoryCustom;
+import org.springframework.transaction.annotation.Transactional;
+
+public class PendingNotificationRepositoryImpl implements PendingNotificationRepositoryCustom {
+
+  private static final String CLAIM_PENDING_NOTIFICATIONS_SQL = "SELECT p.*"
+      + " FROM notification.pending_notifications AS p"
+      + " WHERE p.priority = :priority"
+      + " AND (p.nextAttemptAt IS NULL OR p.nextAttemptAt <= :now)"
+      + " ORDER BY p.createdDate ASC"
+      + " LIMIT :limit"
+      + " FOR UPDATE SKIP LOCKED";
+
+  private static final String CLAIM_PENDING_NOTIFICATIONS_BY_ID_SQL = "SELECT p.*"
+      + " FROM notification.pending_notifications AS p"
+      + " WHERE p.notificationId = :notificationId"
+      + " AND (p.nextAttemptAt IS NULL OR p.nextAttemptAt <= :now)"
+      + " FOR UPDATE SKIP LOCKED";
+
+  private static final String FETCH_NOTIFICATIONS_HQL = "SELECT DISTINCT n"
+      + " FROM Notification AS n"
+      + " LEFT JOIN FETCH n.messages"
+      + " WHERE n.id IN (:ids)";
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /**
+   * Leases the oldest pending notifications with the given priority that are not being sent at
+   * the moment. Rows locked by another transaction (for example by other instance of the service)
+   * are skipped so several instances can claim disjoint rows at the same time. The lease is
+   * committed right away, so no database transaction is held while the notifications are sent.
+   * A leased pending notification should be removed after it has been sent. If it is not, it can
+   * be claimed again once the lease expires.
+   *
+   * @param priority the priority of pending notifications to claim.
+   * @param limit the maximum number of pending notifications to claim.
+   * @param lease for how long the claimed pending notifications can't be claimed again.
+   * @return claimed pending notifications with their notifications, ordered by created date.
+   */
+  @Transactional
+  public List<PendingNotification> claimPendingNotifications(int priority, int limit,
+      Duration lease) {
+    ZonedDateTime now = ZonedDateTime.now();
+    List<PendingNotification> claimed = getPendingNotifications(entityManager
+        .createNativeQuery(CLAIM_PENDING_NOTIFICATIONS_SQL, PendingNotification.class)
+        .setParameter("priority", priority)
+        .setParameter("now", now)
+        .setParameter("limit", limit));
+
+    if (claimed.isEmpty()) {
+      return claimed;
+    }
+
+    List<UUID> notificationIds = claimed
+        .stream()
+        .map(PendingNotification::getNotificationId)
+        .distinct()
+        .collect(Collectors.toList());
+
+    entityManager
+        .createQuery(FETCH_NOTIFICATIONS_HQL, Notification.class)
+        .setParameter("ids", notificationIds)
+        .getResultList();
+
+    // notifications are used after the transaction ends
+    claimed.forEach(pending -> Hibernate.initialize(pending.getNotification()));
+
+    return lease(claimed, now, lease);
+  }
+
+  /**
+   * Leases pending notifications of the given notification. Rows that have been already locked
+   * by another transaction are skipped. The notification itself is not retrieved from the
+   * database.
+   *
+   * @param notificationId the notification ID.
+   * @param lease for how long the claimed pending notifications can't be claimed again.
+   * @return claimed pending notifications.
+   */
+  @Transactional
+  public List<PendingNotification> claimPendingNotifications(UUID notificationId,
+      Duration lease) {
+    ZonedDateTime now = ZonedDateTime.now();
+    List<PendingNotification> claimed = getPendingNotifications(entityManager
+        .createNativeQuery(CLAIM_PENDING_NOTIFICATIONS_BY_ID_SQL, PendingNotification.class)
+        .setParameter("notificationId", notificationId)
+        .setParameter("now", now));
+
+    return lease(claimed, now, lease);
+  }
+
+  private List<PendingNotification> lease(List<PendingNotification> claimed,
+      ZonedDateTime now, Duration lease) {
+    claimed.forEach(pending -> pending.lease(now, lease));
+    entityManager.flush();
+
+    return claimed;
+  }
+
+  // native queries created with a result class return only instances of that class
+  @SuppressWarnings("unchecked")
+  private static List<PendingNotification> getPendingNotifications(Query query) {
+    return (List<PendingNotification>) query.getResultList();
+  }
+
+}
@@ -15,22 +15,90 @@
 
 package org.openlmis.notification.security;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 
+/**
+ * Checks access tokens in the auth service and keeps successful results in memory, so that the
+ * same token is not sent to the check token endpoint on every request. Tokens are cached under
+ * their SHA-256 hash. An entry lives no longer than the configured time to live and never beyond
+ * the token's own expiry. Failed checks are not cached.
+ */
 public class CustomTokenServices extends RemoteTokenServices {
 
   private int invalidTokenRetryLimit;
+  private final long cacheTimeToLive;
+  private final Clock clock;
+  private final Cache<String, CachedAuthentication> cache;
+
+  public CustomTokenServices(int invalidTokenRetryLimit, long cacheMaximumSize,
+      long cacheTimeToLive) {
+    this(invalidTokenRetryLimit, cacheMaximumSize, cacheTimeToLive, Clock.systemUTC());
+  }
 
-  public CustomTokenServices(int invalidTokenRetryLimit) {
+  @VisibleForTesting
+  CustomTokenServices(int invalidTokenRetryLimit, long cacheMaximumSize, long cacheTimeToLive,
+      Clock clock) {
     super();
     this.invalidTokenRetryLimit = invalidTokenRetryLimit;
+    this.cacheTimeToLive = cacheTimeToLive;
+    this.clock = clock;
+    this.cache = cacheMaximumSize > 0 && cacheTimeToLive > 0
+        ? CacheBuilder.newBuilder()
+            .maximumSize(cacheMaximumSize)
+            .expireAfterWrite(cacheTimeToLive, TimeUnit.MILLISECONDS)
+            .build()
+        : null;
+    super.setAccessTokenConverter(new ExpiryAwareAccessTokenConverter(
+        new DefaultAccessTokenConverter()));
+  }
+
+  @Override
+  public void setAccessTokenConverter(AccessTokenConverter accessTokenConverter) {
+    super.setAccessTokenConverter(new ExpiryAwareAccessTokenConverter(accessTokenConverter));
   }
 
   @Override
   public OAuth2Authentication loadAuthentication(String accessToken) {
-    return loadAuthentication(accessToken, 0);
+    if (null == cache) {
+      return copy(loadAuthentication(accessToken, 0));
+    }
+
+    String key = hash(accessToken);
+    CachedAuthentication cached = cache.getIfPresent(key);
+
+    if (null != cached) {
+      if (cached.expiresAt > currentTimeMillis()) {
+        return copy(cached.authentication);
+      }
+
+      cache.invalidate(key);
+    }
+
+    OAuth2Authentication authentication = loadAuthentication(accessToken, 0);
+    long expiresAt = currentTimeMillis() + cacheTimeToLive;
+
+    if (authentication instanceof ExpiringAuthentication) {
+      expiresAt = Math.min(expiresAt, ((ExpiringAuthentication) authentication).expiresAt);
+    }
+
+    if (expiresAt > currentTimeMillis()) {
+      cache.put(key, new CachedAuthentication(authentication, expiresAt));
+    }
+
+    return copy(authentication);
   }
 
   private OAuth2Authentication loadAuthentication(String accessToken, int attempt) {
@@ -46,4 +114,97 @@ public class CustomTokenServices extends RemoteTokenServices {
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Removes the cached result for the given access token, if any.
+   */
+  public void evict(String accessToken) {
+    if (null != cache) {
+      cache.invalidate(hash(accessToken));
+    }
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public void evictAll() {
+    if (null != cache) {
+      cache.invalidateAll();
+    }
+  }
+
+  private long currentTimeMillis() {
+    return clock.millis();
+  }
+
+  private static String hash(String accessToken) {
+    return Hashing.sha256().hashString(accessToken, StandardCharsets.UTF_8).toString();
+  }
+
+  // every caller gets its own instance, so details set on one request do not leak to another
+  private static OAuth2Authentication copy(OAuth2Authentication authentication) {
+    if (null == authentication) {
+      return null;
+    }
+
+    return new OAuth2Authentication(authentication.getOAuth2Request(),
+        authentication.getUserAuthentication());
+  }
+
+  private static final class CachedAuthentication {
+    private final OAuth2Authentication authentication;
+    private final long expiresAt;
+
+    CachedAuthentication(OAuth2Authentication authentication, long expiresAt) {
+      this.authentication = authentication;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class ExpiringAuthentication extends OAuth2Authentication {
+    private static final long serialVersionUID = 1L;
+
+    private final long expiresAt;
+
+    ExpiringAuthentication(OAuth2Authentication authentication, long expiresAt) {
+      super(authentication.getOAuth2Request(), authentication.getUserAuthentication());
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * The check token response contains the token's expiry but the default converter drops it.
+   * This converter keeps it next to the authentication, so that it can bound the cache entry.
+   */
+  private final class ExpiryAwareAccessTokenConverter implements AccessTokenConverter {
+    private final AccessTokenConverter delegate;
+
+    ExpiryAwareAccessTokenConverter(AccessTokenConverter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Map<String, ?> convertAccessToken(OAuth2AccessToken token,
+        OAuth2Authentication authentication) {
+      return delegate.convertAccessToken(token, authentication);
+    }
+
+    @Override
+    public OAuth2AccessToken extractAccessToken(String value, Map<String, ?> map) {
+      return delegate.extractAccessToken(value, map);
+    }
+
+    @Override
+    public OAuth2Authentication extractAuthentication(Map<String, ?> map) {
+      OAuth2Authentication authentication = delegate.extractAuthentication(map);
+      Object exp = map.get(EXP);
+
+      if (null == authentication || !(exp instanceof Number)) {
+        return authentication;
+      }
+
+      return new ExpiringAuthentication(authentication,
+          TimeUnit.SECONDS.toMillis(((Number) exp).longValue()));
+    }
+  }
+}
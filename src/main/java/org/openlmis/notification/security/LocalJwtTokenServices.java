@@ -0,0 +1,76 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.security;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.DefaultTokenServices;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+/**
+ * Verifies signed JWT access tokens locally with the configured public key, so that no request
+ * to the auth service is needed to authenticate them. The reference data user id and the client
+ * id are read from the token claims. Opaque tokens are passed to the given token services.
+ */
+public class LocalJwtTokenServices implements ResourceServerTokenServices {
+
+  private final DefaultTokenServices jwtTokenServices;
+  private final ResourceServerTokenServices opaqueTokenServices;
+
+  /**
+   * Creates new instance.
+   *
+   * @param verifierKey the RSA public key (in the PEM format) used to verify token signatures
+   * @param accessTokenConverter converts verified claims into an authentication
+   * @param opaqueTokenServices used for tokens that are not JWTs
+   */
+  public LocalJwtTokenServices(String verifierKey, AccessTokenConverter accessTokenConverter,
+      ResourceServerTokenServices opaqueTokenServices) {
+    JwtAccessTokenConverter jwtAccessTokenConverter = new JwtAccessTokenConverter();
+    jwtAccessTokenConverter.setVerifier(new RsaVerifier(verifierKey));
+    jwtAccessTokenConverter.setAccessTokenConverter(accessTokenConverter);
+
+    this.jwtTokenServices = new DefaultTokenServices();
+    this.jwtTokenServices.setTokenStore(new JwtTokenStore(jwtAccessTokenConverter));
+    this.opaqueTokenServices = opaqueTokenServices;
+  }
+
+  @Override
+  public OAuth2Authentication loadAuthentication(String accessToken)
+      throws AuthenticationException, InvalidTokenException {
+    return isJwt(accessToken)
+        ? jwtTokenServices.loadAuthentication(accessToken)
+        : opaqueTokenServices.loadAuthentication(accessToken);
+  }
+
+  @Override
+  public OAuth2AccessToken readAccessToken(String accessToken) {
+    return isJwt(accessToken)
+        ? jwtTokenServices.readAccessToken(accessToken)
+        : opaqueTokenServices.readAccessToken(accessToken);
+  }
+
+  private static boolean isJwt(String accessToken) {
+    return StringUtils.countMatches(accessToken, '.') == 2;
+  }
+}
@@ -16,16 +16,14 @@
 package org.openlmis.notification.service;
 
 import static org.apache.commons.lang3.BooleanUtils.isTrue;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.IMPORTANT_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.START_CHANNEL;
 
 import java.util.UUID;
-import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.annotation.Filter;
 import org.springframework.integration.annotation.MessageEndpoint;
 import org.springframework.messaging.handler.annotation.Header;
@@ -37,18 +35,14 @@ public class AllowNotifyFilter {
 
   static final String ALLOW_NOTIFY_CHANNEL = "notificationToSend.allowNotify";
 
-  @Autowired
-  private UserContactDetailsRepository userContactDetailsRepository;
-
   /**
    * Checks if user should get a notification.
    */
   @Filter(inputChannel = START_CHANNEL, outputChannel = ALLOW_NOTIFY_CHANNEL)
   public boolean accept(@Header(RECIPIENT_HEADER) UUID recipient,
-      @Header(value = IMPORTANT_HEADER, required = false) Boolean important) {
-    UserContactDetails userContactDetails = userContactDetailsRepository.findById(recipient)
-        .orElse(null);
-
+      @Header(value = IMPORTANT_HEADER, required = false) Boolean important,
+      @Header(value = CONTACT_DETAILS_HEADER, required = false)
+          UserContactDetailsSnapshot userContactDetails) {
     if (null == userContactDetails) {
       LOGGER.error("Can't send notification to a user with id {}"
           + " because user contact details does not exist", recipient);
@@ -0,0 +1,235 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_SEND_SMS_FAILURE;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Sends requests to the SMS provider without blocking the calling thread for the HTTP round
+ * trip. Requests are sent by a non-blocking HTTP client with a pool of keep-alive connections.
+ * The number of requests in flight is limited; if the limit is reached, the caller waits until
+ * one of the requests completes. Results are delivered by a small pool of completion threads,
+ * so acknowledging a message does not block the I/O threads of the client.
+ */
+@Component
+class AsyncSmsClient implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSmsClient.class);
+
+  private final CloseableHttpAsyncClient httpClient;
+  private final Semaphore inFlight;
+  private final ObjectMapper objectMapper;
+  private final Executor completionExecutor;
+
+  /**
+   * Creates a new instance. If the asynchronous mode is disabled, no HTTP client is created.
+   */
+  @Autowired
+  AsyncSmsClient(ObjectMapper objectMapper,
+      @Value("${sms.async.enabled}") boolean enabled,
+      @Value("${sms.async.maxInFlight}") int maxInFlight,
+      @Value("${sms.async.completionThreads}") int completionThreads,
+      @Value("${http.client.connectTimeout}") int connectTimeout,
+      @Value("${http.client.readTimeout}") int readTimeout,
+      @Value("${http.client.keepAlive}") long keepAlive) {
+    this(enabled ? createHttpClient(maxInFlight, connectTimeout, readTimeout, keepAlive) : null,
+        maxInFlight, objectMapper,
+        enabled ? createCompletionExecutor(completionThreads) : null);
+  }
+
+  @VisibleForTesting
+  AsyncSmsClient(CloseableHttpAsyncClient httpClient, int maxInFlight, ObjectMapper objectMapper,
+      Executor completionExecutor) {
+    this.httpClient = httpClient;
+    this.inFlight = new Semaphore(Math.max(maxInFlight, 1));
+    this.objectMapper = objectMapper;
+    this.completionExecutor = completionExecutor;
+  }
+
+  boolean isEnabled() {
+    return null != httpClient;
+  }
+
+  /**
+   * Posts the given request. The returned future completes when the SMS provider has accepted
+   * the request, or fails with {@link ServerException} if the request could not be sent.
+   */
+  CompletableFuture<Void> post(String url, HttpEntity<?> request) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    HttpPost post = new HttpPost(url);
+
+    request.getHeaders().forEach((name, values) -> values
+        .forEach(value -> post.addHeader(name, value)));
+
+    try {
+      post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(request.getBody()),
+          ContentType.APPLICATION_JSON));
+    } catch (JsonProcessingException exp) {
+      future.completeExceptionally(new ServerException(exp, ERROR_SEND_SMS_FAILURE));
+      return future;
+    }
+
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(new ServerException(exp, ERROR_SEND_SMS_FAILURE));
+      return future;
+    }
+
+    try {
+      httpClient.execute(post, new CompletingCallback(future));
+    } catch (RuntimeException exp) {
+      inFlight.release();
+      future.completeExceptionally(new ServerException(exp, ERROR_SEND_SMS_FAILURE));
+    }
+
+    return future;
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    if (null != httpClient) {
+      httpClient.close();
+    }
+
+    if (completionExecutor instanceof ThreadPoolTaskExecutor) {
+      ((ThreadPoolTaskExecutor) completionExecutor).shutdown();
+    }
+  }
+
+  private static CloseableHttpAsyncClient createHttpClient(int maxInFlight, int connectTimeout,
+      int readTimeout, long keepAlive) {
+    RequestConfig requestConfig = RequestConfig
+        .custom()
+        .setConnectTimeout(connectTimeout)
+        .setSocketTimeout(readTimeout)
+        .build();
+
+    CloseableHttpAsyncClient httpClient = HttpAsyncClients
+        .custom()
+        .setMaxConnTotal(maxInFlight)
+        .setMaxConnPerRoute(maxInFlight)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy((response, context) -> {
+          long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+              .getKeepAliveDuration(response, context);
+          return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        })
+        .useSystemProperties()
+        .build();
+    httpClient.start();
+
+    return httpClient;
+  }
+
+  private static ThreadPoolTaskExecutor createCompletionExecutor(int completionThreads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(completionThreads);
+    executor.setMaxPoolSize(completionThreads);
+    executor.setThreadNamePrefix("sms-async-");
+    executor.initialize();
+
+    return executor;
+  }
+
+  private final class CompletingCallback implements FutureCallback<HttpResponse> {
+    private final CompletableFuture<Void> future;
+
+    CompletingCallback(CompletableFuture<Void> future) {
+      this.future = future;
+    }
+
+    @Override
+    public void completed(HttpResponse response) {
+      inFlight.release();
+
+      int statusCode = response.getStatusLine().getStatusCode();
+      String body = null;
+
+      try {
+        body = null == response.getEntity()
+            ? null
+            : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+      } catch (IOException exp) {
+        LOGGER.debug("Can't read the response of the SMS provider", exp);
+      }
+
+      LOGGER.debug("Send finished, status code was {}, response = {}", statusCode, body);
+
+      if (statusCode >= 200 && statusCode < 300) {
+        complete(null);
+      } else {
+        complete(new RestClientResponseException("The SMS provider rejected the request",
+            statusCode, response.getStatusLine().getReasonPhrase(), null,
+            null == body ? null : body.getBytes(StandardCharsets.UTF_8),
+            StandardCharsets.UTF_8));
+      }
+    }
+
+    @Override
+    public void failed(Exception exp) {
+      inFlight.release();
+      complete(exp);
+    }
+
+    @Override
+    public void cancelled() {
+      inFlight.release();
+      complete(new CancellationException("The request to the SMS provider was cancelled"));
+    }
+
+    private void complete(Exception exp) {
+      completionExecutor.execute(() -> {
+        if (null == exp) {
+          future.complete(null);
+        } else {
+          future.completeExceptionally(new ServerException(exp, ERROR_SEND_SMS_FAILURE));
+        }
+      });
+    }
+  }
+
+}
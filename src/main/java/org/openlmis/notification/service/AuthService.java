@@ -17,23 +17,52 @@ package org.openlmis.notification.service;
 
 import static org.openlmis.notification.service.request.RequestHelper.createUri;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import java.time.Clock;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.codec.binary.Base64;
 import org.openlmis.notification.service.request.RequestParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * Obtains the service access token from the auth service and keeps it in memory. The token is
+ * refreshed in the background before it expires (based on the expires_in value of the token
+ * response), so callers do not have to wait for the auth service or to retry after a 401.
+ * Concurrent requests for a new token are coalesced into a single request. If a background
+ * refresh fails, the current token is used and the refresh is not retried for a short while.
+ */
 @Service
-public class AuthService {
+public class AuthService implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AuthService.class);
+
   private static final String ACCESS_TOKEN = "access_token";
+  private static final String EXPIRES_IN = "expires_in";
+
+  static final ParameterizedTypeReference<Map<String, Object>> TOKEN_RESPONSE_TYPE =
+      new ParameterizedTypeReference<Map<String, Object>>() {};
+
+  static final long REFRESH_RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
 
   @Value("${auth.server.clientId}")
   private String clientId;
@@ -44,15 +73,126 @@ public class AuthService {
   @Value("${auth.server.authorizationUrl}")
   private String authorizationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Value("${auth.server.accessToken.refreshBefore}")
+  private long refreshBefore;
+
+  @Autowired
+  private RestOperations restTemplate;
+
+  private final Executor executor;
+  private final Clock clock;
+  private final AtomicReference<CompletableFuture<AccessToken>> inFlight =
+      new AtomicReference<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  private volatile AccessToken accessToken;
+  private volatile long nextRefreshAttemptAt;
+
+  public AuthService() {
+    this(createExecutor(), Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  AuthService(Executor executor, Clock clock) {
+    this.executor = executor;
+    this.clock = clock;
+  }
 
   /**
-   * Retrieves access token from the auth service.
+   * Retrieves access token from the auth service. The token is retrieved only if there is no
+   * token yet or the current one has expired; if the current token expires soon, a new one is
+   * requested in the background and the current one is returned.
    *
    * @return token.
    */
-  @Cacheable("token")
   public String obtainAccessToken() {
+    AccessToken current = accessToken;
+    long now = clock.millis();
+
+    if (null == current || now >= current.expiresAt) {
+      return refresh(current).value;
+    }
+
+    if (now >= current.refreshAt && now >= nextRefreshAttemptAt) {
+      scheduleRefresh(current);
+    }
+
+    return current.value;
+  }
+
+  /**
+   * Removes the current token, so that the next call of {@link #obtainAccessToken()} requests
+   * a new one.
+   */
+  public void clearTokenCache() {
+    accessToken = null;
+  }
+
+  @Override
+  public void destroy() {
+    if (executor instanceof ThreadPoolTaskExecutor) {
+      ((ThreadPoolTaskExecutor) executor).shutdown();
+    }
+  }
+
+  private void scheduleRefresh(AccessToken stale) {
+    if (null != inFlight.get() || !refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          refresh(stale);
+        } catch (RuntimeException exp) {
+          postponeRefresh();
+          LOGGER.warn("Can't refresh the access token, the current one will be used", exp);
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    } catch (TaskRejectedException exp) {
+      refreshing.set(false);
+      postponeRefresh();
+      LOGGER.warn("Can't schedule a refresh of the access token", exp);
+    }
+  }
+
+  private void postponeRefresh() {
+    nextRefreshAttemptAt = clock.millis() + REFRESH_RETRY_DELAY;
+  }
+
+  private AccessToken refresh(AccessToken stale) {
+    CompletableFuture<AccessToken> future = new CompletableFuture<>();
+
+    while (!inFlight.compareAndSet(null, future)) {
+      CompletableFuture<AccessToken> existing = inFlight.get();
+
+      if (null != existing) {
+        return join(existing);
+      }
+    }
+
+    try {
+      AccessToken latest = accessToken;
+
+      // another thread could have replaced the stale token before this one started the refresh
+      AccessToken token = null != latest && latest != stale
+          ? latest
+          : requestAccessToken();
+      accessToken = token;
+      future.complete(token);
+
+      return token;
+    } catch (RuntimeException exp) {
+      future.completeExceptionally(exp);
+      throw exp;
+    } finally {
+      inFlight.set(null);
+    }
+  }
+
+  private AccessToken requestAccessToken() {
     String plainCreds = clientId + ":" + clientSecret;
     byte[] plainCredsBytes = plainCreds.getBytes();
     byte[] base64CredsBytes = Base64.encodeBase64(plainCredsBytes);
@@ -67,15 +207,56 @@ public class AuthService {
         .init()
         .set("grant_type", "client_credentials");
 
-    ResponseEntity<?> response = restTemplate.exchange(
-        createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
+    ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+        createUri(authorizationUrl, params), HttpMethod.POST, request, TOKEN_RESPONSE_TYPE
     );
 
-    return ((Map<String, String>) response.getBody()).get(ACCESS_TOKEN);
+    Map<String, Object> body = response.getBody();
+    Object expiresIn = body.get(EXPIRES_IN);
+
+    return new AccessToken((String) body.get(ACCESS_TOKEN), clock.millis(),
+        expiresIn instanceof Number
+            ? TimeUnit.SECONDS.toMillis(((Number) expiresIn).longValue())
+            : Long.MAX_VALUE,
+        refreshBefore);
   }
 
-  @CacheEvict(cacheNames = "token", allEntries = true)
-  public void clearTokenCache() {
-    // Intentionally blank
+  private static AccessToken join(CompletableFuture<AccessToken> future) {
+    try {
+      return future.join();
+    } catch (CompletionException exp) {
+      Throwables.throwIfUnchecked(exp.getCause());
+      throw exp;
+    }
+  }
+
+  private static ThreadPoolTaskExecutor createExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(1);
+    executor.setThreadNamePrefix("auth-token-refresh-");
+    executor.initialize();
+
+    return executor;
+  }
+
+  private static final class AccessToken {
+    private final String value;
+    private final long expiresAt;
+    private final long refreshAt;
+
+    // tokens without expires_in never expire here; they are only replaced after a 401
+    AccessToken(String value, long obtainedAt, long lifetime, long refreshBefore) {
+      this.value = value;
+
+      if (Long.MAX_VALUE == lifetime) {
+        this.expiresAt = Long.MAX_VALUE;
+        this.refreshAt = Long.MAX_VALUE;
+      } else {
+        this.expiresAt = obtainedAt + lifetime;
+        this.refreshAt = obtainedAt + Math.max(lifetime - refreshBefore, lifetime / 2);
+      }
+    }
   }
 }
@@ -61,6 +61,7 @@ public abstract class BaseCommunicationService<T> {
     return createUri(url);
   }
 
+  @Autowired
   public void setRestTemplate(RestOperations template) {
     this.restTemplate = template;
   }
@@ -19,11 +19,7 @@ import static org.openlmis.notification.service.NotificationToSendRetriever.RECI
 import static org.openlmis.notification.service.NotificationTransformer.CHANNEL_HEADER;
 import static org.openlmis.notification.service.NotificationTransformer.TAG_HEADER;
 
-import java.util.Optional;
 import java.util.UUID;
-import java.util.function.Predicate;
-import org.openlmis.notification.domain.DigestSubscription;
-import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,7 +37,7 @@ public class ChannelFilter {
   static final String FILTER_CHANNEL = "notificationToSend.filter";
 
   @Autowired
-  private DigestSubscriptionRepository repository;
+  private SubscriptionRouteCache subscriptionRouteCache;
 
   /**
    * Checks if user prefers the channel for the given notification.
@@ -52,22 +48,14 @@ public class ChannelFilter {
       @Header(value = TAG_HEADER, required = false) String messageTag) {
     XLOGGER.entry(recipient, channel, messageTag);
 
-    Optional<DigestSubscription> subscriptionForTag = repository.getUserSubscriptions(recipient)
-        .stream()
-        .filter(buildTagMatcher(messageTag))
-        .findFirst();
+    SubscriptionRoute route = subscriptionRouteCache.find(recipient, messageTag);
 
-    if (subscriptionForTag.isPresent()) {
-      XLOGGER.exit(subscriptionForTag.get().getPreferredChannel().equals(channel));
-      return subscriptionForTag.get().getPreferredChannel().equals(channel);
+    if (null != route) {
+      XLOGGER.exit(route.getPreferredChannel().equals(channel));
+      return route.getPreferredChannel().equals(channel);
     }
     XLOGGER.exit(NotificationChannel.EMAIL.equals(channel));
     return NotificationChannel.EMAIL.equals(channel);
   }
 
-  private Predicate<DigestSubscription> buildTagMatcher(String messageTag) {
-    return digestSubscription -> digestSubscription.getDigestConfiguration().getTag()
-      .equals(messageTag);
-  }
-
 }
@@ -0,0 +1,90 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationToSendRetriever.NOTIFICATION_ID_HEADER;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Acknowledges messages handled by channel lanes. When a message is handed off to a lane, the
+ * sender can't complete it, so the lane acknowledges the message after it has been sent: a sent
+ * notification is removed from the sending queue and a failed one is released to be sent again.
+ * A handler that sends the message later (for example in a batch) can defer the acknowledgment
+ * and acknowledge the message itself once it has been sent.
+ */
+@Component
+public class ChannelLaneInterceptor implements ExecutorChannelInterceptor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChannelLaneInterceptor.class);
+
+  private static final ThreadLocal<Boolean> DEFERRED = new ThreadLocal<>();
+
+  /**
+   * Marks the message handled by the current lane thread as one that will be acknowledged by
+   * the handler, so the lane does not acknowledge it when the handler returns.
+   */
+  static void deferAcknowledgment() {
+    DEFERRED.set(Boolean.TRUE);
+  }
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    AcknowledgmentCallback callback = StaticMessageHeaderAccessor
+        .getAcknowledgmentCallback(message);
+
+    if (null != callback) {
+      callback.noAutoAck();
+    }
+
+    return message;
+  }
+
+  @Override
+  public Message<?> beforeHandle(Message<?> message, MessageChannel channel,
+      MessageHandler handler) {
+    DEFERRED.remove();
+    return message;
+  }
+
+  @Override
+  public void afterMessageHandled(Message<?> message, MessageChannel channel,
+      MessageHandler handler, Exception ex) {
+    AcknowledgmentCallback callback = StaticMessageHeaderAccessor
+        .getAcknowledgmentCallback(message);
+    boolean deferred = Boolean.TRUE.equals(DEFERRED.get());
+    DEFERRED.remove();
+
+    if (null != ex) {
+      LOGGER.error("Can't send the notification {}",
+          message.getHeaders().get(NOTIFICATION_ID_HEADER), ex);
+    }
+
+    if (null != callback && (!deferred || null != ex)) {
+      callback.acknowledge(null == ex ? Status.ACCEPT : Status.REQUEUE);
+    }
+  }
+
+}
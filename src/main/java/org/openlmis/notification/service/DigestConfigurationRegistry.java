@@ -0,0 +1,110 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.openlmis.notification.domain.DigestConfiguration;
+import org.openlmis.notification.repository.DigestConfigurationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps all digest configurations in memory. Digest configurations are only added by database
+ * migrations, so they are loaded once (when the registry is used for the first time) and they
+ * are not retrieved from the database for every notification. If the digest_configurations
+ * table has been changed in the meantime, the configurations can be loaded again with the
+ * POST /api/digestConfiguration/reload endpoint, which calls the {@link #reload()} method.
+ */
+@Component
+public class DigestConfigurationRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DigestConfigurationRegistry.class);
+
+  private final DigestConfigurationRepository digestConfigurationRepository;
+
+  private volatile Configurations configurations;
+
+  @Autowired
+  public DigestConfigurationRegistry(DigestConfigurationRepository digestConfigurationRepository) {
+    this.digestConfigurationRepository = digestConfigurationRepository;
+  }
+
+  /**
+   * Finds a digest configuration with the given tag.
+   *
+   * @return the digest configuration or null if it does not exist.
+   */
+  public DigestConfiguration findByTag(String tag) {
+    return getConfigurations().byTag.get(tag);
+  }
+
+  /**
+   * Finds a digest configuration with the given id.
+   */
+  public Optional<DigestConfiguration> findById(UUID id) {
+    return Optional.ofNullable(getConfigurations().byId.get(id));
+  }
+
+  /**
+   * Loads all digest configurations from the database again.
+   */
+  public synchronized void reload() {
+    List<DigestConfiguration> all = digestConfigurationRepository.findAll();
+    ImmutableMap.Builder<String, DigestConfiguration> byTag = ImmutableMap.builder();
+    ImmutableMap.Builder<UUID, DigestConfiguration> byId = ImmutableMap.builder();
+
+    for (DigestConfiguration configuration : all) {
+      byTag.put(configuration.getTag(), configuration);
+      byId.put(configuration.getId(), configuration);
+    }
+
+    configurations = new Configurations(byTag.build(), byId.build());
+    LOGGER.info("Loaded {} digest configurations", all.size());
+  }
+
+  private Configurations getConfigurations() {
+    Configurations current = configurations;
+
+    if (null == current) {
+      synchronized (this) {
+        if (null == configurations) {
+          reload();
+        }
+
+        current = configurations;
+      }
+    }
+
+    return current;
+  }
+
+  private static final class Configurations {
+    private final ImmutableMap<String, DigestConfiguration> byTag;
+    private final ImmutableMap<UUID, DigestConfiguration> byId;
+
+    private Configurations(ImmutableMap<String, DigestConfiguration> byTag,
+        ImmutableMap<UUID, DigestConfiguration> byId) {
+      this.byTag = byTag;
+      this.byId = byId;
+    }
+  }
+
+}
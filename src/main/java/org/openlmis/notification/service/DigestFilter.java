@@ -24,11 +24,7 @@ import static org.openlmis.notification.service.NotificationTransformer.TAG_HEAD
 
 import java.util.UUID;
 import org.openlmis.notification.domain.DigestConfiguration;
-import org.openlmis.notification.domain.DigestSubscription;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
-import org.openlmis.notification.repository.DigestSubscriptionRepository;
-import org.openlmis.notification.service.referencedata.TogglzFeatureDto;
-import org.openlmis.notification.service.referencedata.TogglzReferenceDataService;
+import org.openlmis.notification.service.referencedata.TogglzFeatureCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,13 +43,13 @@ public class DigestFilter {
   static final String CONSOLIDATE_NOTIFICATIONS = "CONSOLIDATE_NOTIFICATIONS";
 
   @Autowired
-  private TogglzReferenceDataService togglzReferenceDataService;
+  private TogglzFeatureCache togglzFeatureCache;
 
   @Autowired
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
 
   @Autowired
-  private DigestSubscriptionRepository digestSubscriptionRepository;
+  private SubscriptionRouteCache subscriptionRouteCache;
 
   /**
    * Checks if the notification should be sent now or postpone for later.
@@ -67,7 +63,7 @@ public class DigestFilter {
       return SEND_NOW_PREPARE_CHANNEL;
     }
 
-    if (!isFeatureActive()) {
+    if (!togglzFeatureCache.isFeatureActive(CONSOLIDATE_NOTIFICATIONS)) {
       LOGGER.warn("Digest feature is disabled");
       return SEND_NOW_PREPARE_CHANNEL;
     }
@@ -77,21 +73,21 @@ public class DigestFilter {
       return SEND_NOW_PREPARE_CHANNEL;
     }
 
-    DigestConfiguration configuration = digestConfigurationRepository.findByTag(tag);
+    DigestConfiguration configuration = digestConfigurationRegistry.findByTag(tag);
 
     if (null == configuration) {
       LOGGER.info("Digest configuration for tag {} does not exist", tag);
       return SEND_NOW_PREPARE_CHANNEL;
     }
 
-    DigestSubscription subscription = digestSubscriptionRepository.findBy(recipient, configuration);
+    SubscriptionRoute route = subscriptionRouteCache.find(recipient, tag);
 
-    if (null == subscription) {
+    if (null == route) {
       LOGGER.info("A notification for a user {} with {} tag will be sent now", recipient, tag);
       return SEND_NOW_PREPARE_CHANNEL;
     }
 
-    if (!subscription.getUseDigest()) {
+    if (!route.isUseDigest()) {
       LOGGER.info("A notification for a user {} with {} tag will be sent now", recipient, tag);
       return SEND_NOW_PREPARE_CHANNEL;
     }
@@ -100,14 +96,4 @@ public class DigestFilter {
     return SEND_NOW_POSTPONE_CHANNEL;
   }
 
-  private boolean isFeatureActive() {
-    return togglzReferenceDataService
-        .findAll()
-        .stream()
-        .filter(feature -> CONSOLIDATE_NOTIFICATIONS.equals(feature.getName()))
-        .findFirst()
-        .map(TogglzFeatureDto::isEnabled)
-        .orElse(false);
-  }
-
 }
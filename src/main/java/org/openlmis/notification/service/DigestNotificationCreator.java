@@ -17,6 +17,7 @@ package org.openlmis.notification.service;
 
 import static org.openlmis.notification.service.DigestFilter.SEND_NOW_PREPARE_CHANNEL;
 import static org.openlmis.notification.service.DigestionService.AGGREGATE_POSTPONE_CHANNEL;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 import static org.openlmis.notification.service.NotificationTransformer.CHANNEL_HEADER;
 import static org.openlmis.notification.service.PostponeMessageRetriever.CONFIGURATION_ID_HEADER;
@@ -32,11 +33,13 @@ import org.openlmis.notification.domain.NotificationMessage;
 import org.openlmis.notification.domain.PostponeMessage;
 import org.openlmis.notification.i18n.Message;
 import org.openlmis.notification.i18n.MessageService;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
+import org.openlmis.notification.repository.PostponeMessageRepository;
+import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.annotation.MessageEndpoint;
 import org.springframework.integration.annotation.Transformer;
 import org.springframework.messaging.handler.annotation.Header;
@@ -48,16 +51,24 @@ public class DigestNotificationCreator {
   private static final Logger LOGGER = LoggerFactory.getLogger(DigestNotificationCreator.class);
 
   @Autowired
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
+
+  @Autowired
+  private UserContactDetailsRepository userContactDetailsRepository;
 
   @Autowired
   private MessageService messageService;
 
+  @Autowired
+  private PostponeMessageRepository postponeMessageRepository;
+
   @Value("${service.url}")
   private String serviceUrl;
 
   /**
-   * Creates a digest message based on postpone messages.
+   * Creates a digest message based on postpone messages. The postpone messages are removed once
+   * the digest has been handed off for sending, so the digest carries an acknowledgment callback
+   * that saves them again if the digest could not be sent.
    */
   @Transformer(inputChannel = AGGREGATE_POSTPONE_CHANNEL, outputChannel = SEND_NOW_PREPARE_CHANNEL)
   public org.springframework.messaging.Message createDigestNotification(
@@ -65,7 +76,7 @@ public class DigestNotificationCreator {
       @Header(RECIPIENT_HEADER) UUID recipient,
       @Header(CONFIGURATION_ID_HEADER) UUID configurationId,
       @Header(CHANNEL_HEADER) NotificationChannel channel) {
-    DigestConfiguration configuration = digestConfigurationRepository.findById(configurationId)
+    DigestConfiguration configuration = digestConfigurationRegistry.findById(configurationId)
         .orElse(null);
 
     if (Objects.isNull(configuration)) {
@@ -88,11 +99,19 @@ public class DigestNotificationCreator {
 
     NotificationMessage message = new NotificationMessage(channel, body, subject);
 
-    return MessageBuilder
+    MessageBuilder<NotificationMessage> builder = MessageBuilder
         .withPayload(message)
         .setHeader(RECIPIENT_HEADER, recipient)
         .setHeader(CHANNEL_HEADER, channel)
-        .build();
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK,
+            new PostponeMessageAcknowledgment(postponeMessageRepository, postponeMessages));
+
+    userContactDetailsRepository
+        .findById(recipient)
+        .map(UserContactDetailsSnapshot::new)
+        .ifPresent(contactDetails -> builder.setHeader(CONTACT_DETAILS_HEADER, contactDetails));
+
+    return builder.build();
   }
 
 
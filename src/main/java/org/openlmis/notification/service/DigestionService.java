@@ -29,11 +29,8 @@ import java.util.TimeZone;
 import java.util.UUID;
 import javax.persistence.EntityManager;
 import org.openlmis.notification.domain.DigestConfiguration;
-import org.openlmis.notification.domain.DigestSubscription;
 import org.openlmis.notification.domain.NotificationMessage;
 import org.openlmis.notification.domain.PostponeMessage;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
-import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.openlmis.notification.repository.PostponeMessageRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,10 +59,10 @@ public class DigestionService {
   private String timeZoneId;
 
   @Autowired
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
 
   @Autowired
-  private DigestSubscriptionRepository digestSubscriptionRepository;
+  private SubscriptionRouteCache subscriptionRouteCache;
 
   @Autowired
   private PostponeMessageRepository postponeMessageRepository;
@@ -97,21 +94,21 @@ public class DigestionService {
   public final void handleMessage(@Payload NotificationMessage message,
       @Header(CHANNEL_HEADER) NotificationChannel channel,
       @Header(RECIPIENT_HEADER) UUID recipient, @Header(TAG_HEADER) String tag) {
-    DigestConfiguration configuration = digestConfigurationRepository.findByTag(tag);
+    DigestConfiguration configuration = digestConfigurationRegistry.findByTag(tag);
 
     if (null == configuration) {
       LOGGER.warn("Digest configuration for tag {} does not exist", tag);
       return;
     }
 
-    DigestSubscription subscription = digestSubscriptionRepository.findBy(recipient, configuration);
+    SubscriptionRoute route = subscriptionRouteCache.find(recipient, tag);
 
-    if (null == subscription) {
+    if (null == route) {
       LOGGER.warn("Digest subscription for user {} and tag {} does not exist", recipient, tag);
       return;
     }
 
-    String sendTime = subscription.getCronExpression();
+    String sendTime = route.getCronExpression();
 
     postponeMessageRepository.saveAndFlush(
         new PostponeMessage(configuration, message.getBody(),
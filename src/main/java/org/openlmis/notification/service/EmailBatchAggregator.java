@@ -0,0 +1,232 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationChannelRouter.EMAIL_SEND_NOW_CHANNEL;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects email messages that are ready to be sent and sends them in batches, each batch in a
+ * single SMTP session. Each email lane has its own batch, and the batch is only ever sent by the
+ * thread of its lane, so messages of a single user are still sent in the order of the lane.
+ * A full batch is sent right away by the lane thread that completed it, so lanes wait while
+ * their batches are being sent. Once the flush interval passes, an incomplete batch is handed
+ * to its lane and sent after the messages that already wait there. After a batch has been sent,
+ * the pending notification of each message is acknowledged separately: sent messages are
+ * removed from the sending queue and failed ones are released to be sent again.
+ */
+@Component
+class EmailBatchAggregator implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmailBatchAggregator.class);
+
+  private final EmailSender emailSender;
+  private final PartitionedExecutorChannel lanes;
+  private final int batchSize;
+  private final ThreadPoolTaskScheduler scheduler;
+
+  private final Object lock = new Object();
+  private final List<List<BatchedEmail>> batches;
+
+  /**
+   * Creates a new instance. Batching is enabled if the batch size is greater than one. A single
+   * background thread hands incomplete batches to their lanes.
+   */
+  @Autowired
+  EmailBatchAggregator(EmailSender emailSender,
+      @Qualifier(EMAIL_SEND_NOW_CHANNEL) PartitionedExecutorChannel lanes,
+      @Value("${email.batch.size}") int batchSize,
+      @Value("${email.batch.flushInterval}") long flushInterval) {
+    this(emailSender, lanes, batchSize, batchSize > 1 ? createScheduler() : null);
+
+    if (null != scheduler) {
+      scheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+  }
+
+  @VisibleForTesting
+  EmailBatchAggregator(EmailSender emailSender, PartitionedExecutorChannel lanes, int batchSize,
+      ThreadPoolTaskScheduler scheduler) {
+    this.emailSender = emailSender;
+    this.lanes = lanes;
+    this.batchSize = batchSize;
+    this.scheduler = scheduler;
+    this.batches = new ArrayList<>(lanes.getLaneCount());
+
+    for (int lane = 0; lane < lanes.getLaneCount(); ++lane) {
+      batches.add(new ArrayList<>());
+    }
+  }
+
+  boolean isEnabled() {
+    return batchSize > 1;
+  }
+
+  /**
+   * Adds a message to the batch of the lane that handles messages of the given recipient. This
+   * method is called by the thread of that lane. If the batch is full, it is sent before this
+   * method returns. The given callback (if any) is acknowledged after the batch has been sent.
+   */
+  void add(UUID recipient, String to, String subject, String body,
+      AcknowledgmentCallback callback) {
+    BatchedEmail email = new BatchedEmail(emailSender.createMail(to, subject, body), callback);
+    // lanes are partitioned by the recipient
+    int lane = lanes.getLaneOfKey(recipient);
+    List<BatchedEmail> full = null;
+
+    synchronized (lock) {
+      List<BatchedEmail> batch = batches.get(lane);
+      batch.add(email);
+
+      if (batch.size() >= batchSize) {
+        full = takeBatch(lane);
+      }
+    }
+
+    if (null != full) {
+      send(full);
+    }
+  }
+
+  /**
+   * Hands each incomplete batch to its lane, which sends it after the messages that already
+   * wait there. If the queue of a lane is full, its batch is kept until the next flush.
+   */
+  void flush() {
+    for (int lane = 0; lane < batches.size(); ++lane) {
+      int current = lane;
+
+      synchronized (lock) {
+        if (batches.get(lane).isEmpty()) {
+          continue;
+        }
+      }
+
+      try {
+        lanes.execute(lane, () -> send(takeBatchOf(current)));
+      } catch (TaskRejectedException exp) {
+        LOGGER.debug("Email lane {} is full, its batch will be sent later", lane, exp);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (null != scheduler) {
+      scheduler.shutdown();
+    }
+
+    for (int lane = 0; lane < batches.size(); ++lane) {
+      send(takeBatchOf(lane));
+    }
+  }
+
+  private List<BatchedEmail> takeBatchOf(int lane) {
+    synchronized (lock) {
+      return takeBatch(lane);
+    }
+  }
+
+  // must be called while holding the lock
+  private List<BatchedEmail> takeBatch(int lane) {
+    List<BatchedEmail> emails = batches.get(lane);
+    batches.set(lane, new ArrayList<>(batchSize));
+
+    return emails;
+  }
+
+  private void send(List<BatchedEmail> emails) {
+    if (emails.isEmpty()) {
+      return;
+    }
+
+    List<MimeMessage> messages = emails
+        .stream()
+        .map(BatchedEmail::getMessage)
+        .collect(Collectors.toList());
+    Map<MimeMessage, Exception> failures;
+
+    try {
+      failures = emailSender.sendMails(messages);
+    } catch (RuntimeException exp) {
+      LOGGER.error("Can't send a batch of {} email messages", messages.size(), exp);
+      failures = messages
+          .stream()
+          .collect(Collectors.toMap(message -> message, message -> exp));
+    }
+
+    LOGGER.debug("Sent a batch of {} email messages, {} failed", messages.size(),
+        failures.size());
+
+    for (BatchedEmail email : emails) {
+      Exception failure = failures.get(email.getMessage());
+
+      if (null != failure) {
+        LOGGER.error("Can't send an email message", failure);
+      }
+
+      if (null != email.getCallback()) {
+        email.getCallback().acknowledge(null == failure ? Status.ACCEPT : Status.REQUEUE);
+      }
+    }
+  }
+
+  private static ThreadPoolTaskScheduler createScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setThreadNamePrefix("email-batch-");
+    scheduler.initialize();
+
+    return scheduler;
+  }
+
+  private static final class BatchedEmail {
+    private final MimeMessage message;
+    private final AcknowledgmentCallback callback;
+
+    BatchedEmail(MimeMessage message, AcknowledgmentCallback callback) {
+      this.message = message;
+      this.callback = callback;
+    }
+
+    MimeMessage getMessage() {
+      return message;
+    }
+
+    AcknowledgmentCallback getCallback() {
+      return callback;
+    }
+  }
+
+}
@@ -17,16 +17,17 @@ package org.openlmis.notification.service;
 
 import static org.apache.commons.lang3.BooleanUtils.isTrue;
 import static org.openlmis.notification.service.NotificationChannelRouter.EMAIL_SEND_NOW_CHANNEL;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.IMPORTANT_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 
 import java.util.UUID;
 import org.openlmis.notification.domain.NotificationMessage;
-import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
 import org.springframework.integration.annotation.MessageEndpoint;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.messaging.handler.annotation.Header;
@@ -37,28 +38,48 @@ public class EmailNotificationChannelHandler {
       .getLogger(EmailNotificationChannelHandler.class);
 
   @Autowired
-  private UserContactDetailsRepository userContactDetailsRepository;
+  private EmailSender emailSender;
 
   @Autowired
-  private EmailSender emailSender;
+  private EmailBatchAggregator emailBatchAggregator;
 
   /**
-   * Tries to send a notification to a user by using email channel.
+   * Tries to send a notification to a user by using email channel. If email batching is enabled,
+   * the message is added to the current batch and the pending notification is acknowledged
+   * after the batch has been sent.
    */
   @ServiceActivator(inputChannel = EMAIL_SEND_NOW_CHANNEL)
   public void handle(NotificationMessage payload,
       @Header(RECIPIENT_HEADER) UUID recipient,
-      @Header(value = IMPORTANT_HEADER, required = false) Boolean important) {
-    UserContactDetails contactDetails = userContactDetailsRepository.findById(recipient)
-        .orElse(null);
+      @Header(value = IMPORTANT_HEADER, required = false) Boolean important,
+      @Header(value = CONTACT_DETAILS_HEADER, required = false)
+          UserContactDetailsSnapshot contactDetails,
+      @Header(value = IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, required = false)
+          AcknowledgmentCallback callback) {
+    if (null == contactDetails) {
+      LOGGER.error("Can't send email because user with id {} has no contact details", recipient);
+      return;
+    }
+
+    if (!shouldSendMessage(contactDetails, important)) {
+      return;
+    }
+
+    if (emailBatchAggregator.isEnabled()) {
+      emailBatchAggregator.add(recipient, contactDetails.getEmailAddress(),
+          payload.getSubject(), payload.getBody(), callback);
 
-    if (null != contactDetails && shouldSendMessage(contactDetails, important)) {
+      if (null != callback) {
+        ChannelLaneInterceptor.deferAcknowledgment();
+      }
+    } else {
       emailSender.sendMail(contactDetails.getEmailAddress(),
           payload.getSubject(), payload.getBody());
     }
   }
 
-  private boolean shouldSendMessage(UserContactDetails contactDetails, Boolean important) {
+  private boolean shouldSendMessage(UserContactDetailsSnapshot contactDetails,
+      Boolean important) {
     if (!contactDetails.hasEmailAddress()) {
       LOGGER.error(
           "Can't send email because user with id {} has not email address",
@@ -17,12 +17,20 @@ package org.openlmis.notification.service;
 
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_SEND_MAIL_FAILURE;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Component;
@@ -32,12 +40,42 @@ class EmailSender {
 
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(EmailSender.class);
 
+  private static final String RATE_LIMITER_NAME = "email";
+
   @Autowired
   private JavaMailSender mailSender;
 
+  @Autowired
+  private SmtpTransportPool transportPool;
+
   @Value("${email.noreply}")
   private String from;
 
+  @Value("${email.rateLimit.permitsPerSecond}")
+  private double rateLimitPermitsPerSecond;
+
+  @Value("${email.rateLimit.burst}")
+  private int rateLimitBurst;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(RATE_LIMITER_NAME, 0, 1);
+
+  /**
+   * Creates a limiter of the rate at which messages are sent to the SMTP server. The limiter is
+   * enabled only if the rate is positive.
+   */
+  @PostConstruct
+  void initRateLimiter() {
+    rateLimiter = new TokenBucketRateLimiter(RATE_LIMITER_NAME, rateLimitPermitsPerSecond,
+        rateLimitBurst);
+
+    if (rateLimiter.isEnabled() && null != meterRegistry) {
+      rateLimiter.bindTo(meterRegistry);
+    }
+  }
+
   void sendMail(String to, String subject, String body) {
     XLOGGER.entry(to, subject, body);
     Profiler profiler = new Profiler("SEND_MAIL");
@@ -45,17 +83,17 @@ class EmailSender {
 
     try {
       profiler.start("CREATE_MAIL_MESSAGE");
-      MimeMessage mailMessage = mailSender.createMimeMessage();
+      MimeMessage mailMessage = createMimeMessage(to, subject, body);
 
-      profiler.start("CREATE_MESSAGE_HELPER");
-      MimeMessageHelper helper = new MimeMessageHelper(mailMessage, false);
-      helper.setFrom(from);
-      helper.setTo(to);
-      helper.setSubject(subject);
-      helper.setText(body);
+      profiler.start("ACQUIRE_PERMIT");
+      rateLimiter.acquire(1);
 
       profiler.start("SEND_MESSAGE");
-      mailSender.send(mailMessage);
+      if (transportPool.isEnabled()) {
+        transportPool.send(mailMessage);
+      } else {
+        mailSender.send(mailMessage);
+      }
 
       profiler.stop().log();
       XLOGGER.exit();
@@ -69,4 +107,67 @@ class EmailSender {
     }
   }
 
+  MimeMessage createMail(String to, String subject, String body) {
+    try {
+      return createMimeMessage(to, subject, body);
+    } catch (MessagingException exp) {
+      throw new ServerException(exp, ERROR_SEND_MAIL_FAILURE);
+    }
+  }
+
+  /**
+   * Sends the given messages in a single SMTP session. The result contains messages that could
+   * not be sent, with the reason of the failure; it is empty if all messages have been sent.
+   */
+  Map<MimeMessage, Exception> sendMails(List<MimeMessage> messages) {
+    XLOGGER.entry(messages.size());
+    Profiler profiler = new Profiler("SEND_MAILS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("ACQUIRE_PERMITS");
+    rateLimiter.acquire(messages.size());
+
+    profiler.start("SEND_MESSAGES");
+    Map<MimeMessage, Exception> failures = transportPool.isEnabled()
+        ? transportPool.sendAll(messages)
+        : sendAll(messages);
+
+    profiler.stop().log();
+    XLOGGER.exit(failures.size());
+
+    return failures;
+  }
+
+  private Map<MimeMessage, Exception> sendAll(List<MimeMessage> messages) {
+    Map<MimeMessage, Exception> failures = new HashMap<>();
+
+    try {
+      mailSender.send(messages.toArray(new MimeMessage[0]));
+    } catch (MailSendException exp) {
+      exp.getFailedMessages().forEach((message, cause) -> failures.put((MimeMessage) message,
+          cause));
+
+      if (failures.isEmpty()) {
+        messages.forEach(message -> failures.put(message, exp));
+      }
+    } catch (MailException exp) {
+      messages.forEach(message -> failures.put(message, exp));
+    }
+
+    return failures;
+  }
+
+  private MimeMessage createMimeMessage(String to, String subject, String body)
+      throws MessagingException {
+    MimeMessage mailMessage = mailSender.createMimeMessage();
+
+    MimeMessageHelper helper = new MimeMessageHelper(mailMessage, false);
+    helper.setFrom(from);
+    helper.setTo(to);
+    helper.setSubject(subject);
+    helper.setText(body);
+
+    return mailMessage;
+  }
+
 }
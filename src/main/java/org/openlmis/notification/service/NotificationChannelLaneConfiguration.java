@@ -0,0 +1,120 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationChannelRouter.EMAIL_SEND_NOW_CHANNEL;
+import static org.openlmis.notification.service.NotificationChannelRouter.SMS_SEND_NOW_CHANNEL;
+import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Defines a separate channel for each notification channel, so a slow email server does not
+ * delay SMS messages and the other way around. Each channel is split into lanes with their own
+ * thread and bounded queue. Messages are assigned to a lane by their recipient, so messages of
+ * a single user are sent in the order they were handed off to the lane, while messages of
+ * different users are sent in parallel. If the queue of a lane is full, the message is rejected
+ * and the pending notification is released to be sent again. The depth of each lane is
+ * published as the notification.lane.depth metric.
+ *
+ * <p>The order is kept only within the lanes of a single instance of the service. Messages of
+ * a single user can still be sent out of order when a failed message is retried after a
+ * backoff, when an important notification is claimed before older normal ones, when another
+ * instance claims newer pending notifications of the same user (rows locked by an instance are
+ * skipped), or when a lane rejects a message.
+ */
+@Configuration
+public class NotificationChannelLaneConfiguration implements DisposableBean {
+
+  static final String LANE_DEPTH_METRIC = "notification.lane.depth";
+
+  // executors are not exposed as beans so they are not picked up as the default async executor
+  private final List<ThreadPoolTaskExecutor> executors = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates lanes for email messages.
+   */
+  @Bean(name = EMAIL_SEND_NOW_CHANNEL)
+  public PartitionedExecutorChannel emailSendNowChannel(
+      ChannelLaneInterceptor laneInterceptor, MeterRegistry meterRegistry,
+      @Value("${notificationToSend.email.laneCount}") int laneCount,
+      @Value("${notificationToSend.email.queueCapacity}") int queueCapacity) {
+    return createLanes(NotificationChannel.EMAIL, laneCount, queueCapacity, laneInterceptor,
+        meterRegistry);
+  }
+
+  /**
+   * Creates lanes for SMS messages.
+   */
+  @Bean(name = SMS_SEND_NOW_CHANNEL)
+  public PartitionedExecutorChannel smsSendNowChannel(
+      ChannelLaneInterceptor laneInterceptor, MeterRegistry meterRegistry,
+      @Value("${notificationToSend.sms.laneCount}") int laneCount,
+      @Value("${notificationToSend.sms.queueCapacity}") int queueCapacity) {
+    return createLanes(NotificationChannel.SMS, laneCount, queueCapacity, laneInterceptor,
+        meterRegistry);
+  }
+
+  @Override
+  public void destroy() {
+    executors.forEach(ThreadPoolTaskExecutor::shutdown);
+  }
+
+  private PartitionedExecutorChannel createLanes(NotificationChannel channel, int laneCount,
+      int queueCapacity, ChannelLaneInterceptor laneInterceptor, MeterRegistry meterRegistry) {
+    String name = channel.name().toLowerCase();
+    List<ThreadPoolTaskExecutor> lanes = new ArrayList<>(laneCount);
+
+    for (int idx = 0; idx < laneCount; ++idx) {
+      ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+      executor.setCorePoolSize(1);
+      executor.setMaxPoolSize(1);
+      executor.setQueueCapacity(queueCapacity);
+      executor.setThreadNamePrefix("notification-" + name + "-" + idx + "-");
+      executor.initialize();
+
+      lanes.add(executor);
+    }
+
+    executors.addAll(lanes);
+
+    PartitionedExecutorChannel partitionedChannel = new PartitionedExecutorChannel(lanes,
+        message -> message.getHeaders().get(RECIPIENT_HEADER));
+    partitionedChannel.addInterceptor(laneInterceptor);
+
+    for (int idx = 0; idx < laneCount; ++idx) {
+      int lane = idx;
+      Gauge
+          .builder(LANE_DEPTH_METRIC, partitionedChannel, item -> item.getLaneDepth(lane))
+          .description("The number of messages handled or waiting in the lane")
+          .tag("channel", name)
+          .tag("lane", String.valueOf(lane))
+          .register(meterRegistry);
+    }
+
+    return partitionedChannel;
+  }
+
+}
@@ -33,7 +33,9 @@ public class NotificationChannelRouter {
   static final String SMS_SEND_NOW_CHANNEL = "notificationToSend.sendNow.readyToSend.sms";
 
   /**
-   * Defines which handler should be used for notification.
+   * Defines which handler should be used for notification. Each handler listens on its own
+   * executor channel (see {@link NotificationChannelLaneConfiguration}), so the message is
+   * handed off to a thread pool of the given notification channel.
    */
   @Router(inputChannel = SEND_NOW_PREPARE_CHANNEL)
   public String route(@Header(CHANNEL_HEADER) NotificationChannel channel) {
@@ -15,75 +15,237 @@
 
 package org.openlmis.notification.service;
 
+import static org.openlmis.notification.domain.PendingNotification.HIGH_PRIORITY;
+import static org.openlmis.notification.domain.PendingNotification.NORMAL_PRIORITY;
+
 import com.google.common.annotations.VisibleForTesting;
-import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 import org.openlmis.notification.domain.Notification;
 import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.repository.UserContactDetailsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
 import org.springframework.integration.annotation.InboundChannelAdapter;
 import org.springframework.integration.annotation.MessageEndpoint;
-import org.springframework.integration.jpa.core.JpaExecutor;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 
 @MessageEndpoint
 public class NotificationToSendRetriever {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationToSendRetriever.class);
+
+  static final String BATCH_CHANNEL = "notificationToSend.batch";
   static final String START_CHANNEL = "notificationToSend.start";
 
   static final String RECIPIENT_HEADER = "recipient";
   static final String IMPORTANT_HEADER = "important";
   static final String CHANNEL_TO_USE_HEADER = "channelToUse";
+  static final String NOTIFICATION_ID_HEADER = "notificationId";
+  static final String CONTACT_DETAILS_HEADER = "contactDetails";
+
+  private PendingNotificationRepository pendingNotificationRepository;
+  private PendingNotificationService pendingNotificationService;
+  private UserContactDetailsRepository userContactDetailsRepository;
+  private MessagingTemplate messagingTemplate;
+  private int batchSize;
+  private Duration leaseDuration;
+  private int priorityWeight;
+  private final AtomicLong slots = new AtomicLong();
 
-  private JpaExecutor jpaExecutor;
-
+  /**
+   * Creates a new instance of the retriever.
+   */
   @Autowired
-  public NotificationToSendRetriever(EntityManager entityManager) {
-    prepareJpaExecutor(entityManager);
-  }
-
-  @VisibleForTesting
-  NotificationToSendRetriever(JpaExecutor jpaExecutor) {
-    this.jpaExecutor = jpaExecutor;
+  public NotificationToSendRetriever(PendingNotificationRepository pendingNotificationRepository,
+      PendingNotificationService pendingNotificationService,
+      UserContactDetailsRepository userContactDetailsRepository,
+      MessagingTemplate messagingTemplate,
+      @Value("${notificationToSend.batchSize}") int batchSize,
+      @Value("${notificationToSend.leaseDuration}") long leaseDuration,
+      @Value("${notificationToSend.priorityWeight}") int priorityWeight) {
+    this.pendingNotificationRepository = pendingNotificationRepository;
+    this.pendingNotificationService = pendingNotificationService;
+    this.userContactDetailsRepository = userContactDetailsRepository;
+    this.messagingTemplate = messagingTemplate;
+    this.batchSize = batchSize;
+    this.leaseDuration = Duration.ofMillis(leaseDuration);
+    this.priorityWeight = priorityWeight;
   }
 
   /**
-   * Finds the first notification that should be sent.
+   * Claims a batch of notifications that should be sent. The size of the batch is limited by the
+   * notificationToSend.batchSize property. The claim is committed before the notifications are
+   * sent; each of them is completed separately by its acknowledgment callback.
+   *
+   * <p>Out of every notificationToSend.priorityWeight + 1 claimed notifications, up to
+   * notificationToSend.priorityWeight are important ones and at least one is a normal one, so
+   * important notifications are sent first but normal notifications are not starved. Slots that
+   * can't be used by one priority are given to the other one.
    */
   @InboundChannelAdapter(
-      channel = START_CHANNEL,
+      channel = BATCH_CHANNEL,
       autoStartup = "${notificationToSend.autoStartup:true}")
-  public Message<Notification> retrieve() {
-    Object item = jpaExecutor.poll();
+  public Message<List<PendingNotification>> retrieve() {
+    int highPrioritySlots = getHighPrioritySlots(batchSize);
 
-    if (!(item instanceof PendingNotification)) {
-      return null;
+    List<PendingNotification> claimed = new ArrayList<>(claim(HIGH_PRIORITY, highPrioritySlots));
+    boolean highPriorityLeft = claimed.size() == highPrioritySlots;
+
+    claimed.addAll(claim(NORMAL_PRIORITY, batchSize - claimed.size()));
+
+    if (highPriorityLeft) {
+      claimed.addAll(claim(HIGH_PRIORITY, batchSize - claimed.size()));
     }
 
-    PendingNotification pending = (PendingNotification) item;
-    Notification notification = pending.getNotification();
+    if (claimed.isEmpty()) {
+      return null;
+    }
 
     return MessageBuilder
+        .withPayload(claimed)
+        .build();
+  }
+
+  @VisibleForTesting
+  int getHighPrioritySlots(int count) {
+    // weighted round robin over consecutive slots: every (weight + 1)-th slot is a normal one
+    long first = slots.getAndAdd(count);
+    int highPrioritySlots = 0;
+
+    for (long slot = first; slot < first + count; ++slot) {
+      if (slot % (priorityWeight + 1) < priorityWeight) {
+        ++highPrioritySlots;
+      }
+    }
+
+    return highPrioritySlots;
+  }
+
+  private List<PendingNotification> claim(int priority, int limit) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+
+    return pendingNotificationRepository.claimPendingNotifications(priority, limit, leaseDuration);
+  }
+
+  /**
+   * Sends the retrieved batch to the sending flow, one notification at a time.
+   */
+  @ServiceActivator(inputChannel = BATCH_CHANNEL)
+  public void send(List<PendingNotification> pendingNotifications) {
+    sendOneByOne(messagingTemplate, split(pendingNotifications));
+  }
+
+  /**
+   * Splits the retrieved batch into single notifications. Contact details of all recipients in
+   * the batch are retrieved with a single query and passed to the sending flow in the
+   * {@link #CONTACT_DETAILS_HEADER} header.
+   */
+  public List<Message<Notification>> split(List<PendingNotification> pendingNotifications) {
+    Set<UUID> recipients = pendingNotifications
+        .stream()
+        .map(pending -> pending.getNotification().getUserId())
+        .collect(Collectors.toSet());
+
+    Map<UUID, UserContactDetailsSnapshot> contactDetails = StreamSupport
+        .stream(userContactDetailsRepository.findAllById(recipients).spliterator(), false)
+        .map(UserContactDetailsSnapshot::new)
+        .collect(Collectors.toMap(UserContactDetailsSnapshot::getReferenceDataUserId,
+            Function.identity()));
+
+    return pendingNotifications
+        .stream()
+        .map(pending -> createMessage(pending.getNotification(), pending,
+            contactDetails.get(pending.getNotification().getUserId()),
+            pendingNotificationService))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Sends the given messages to the sending flow. A message that can't be sent does not stop
+   * the remaining ones; its pending notification is retried, so it is not left leased until the
+   * lease expires. If a message is rejected because the sending lanes are full, the remaining
+   * messages are not sent and their pending notifications are released to be claimed later.
+   */
+  static void sendOneByOne(MessagingTemplate messagingTemplate,
+      List<Message<Notification>> messages) {
+    for (int idx = 0; idx < messages.size(); ++idx) {
+      Message<Notification> message = messages.get(idx);
+
+      try {
+        messagingTemplate.send(START_CHANNEL, message);
+      } catch (RuntimeException exp) {
+        if (PendingNotificationAcknowledgmentInterceptor.isRejected(exp)) {
+          LOGGER.warn("The sending lanes are full, {} notification(s) will be sent later",
+              messages.size() - idx);
+          messages.subList(idx, messages.size()).forEach(NotificationToSendRetriever::release);
+          return;
+        }
+
+        LOGGER.error("Can't send the notification {}", message.getPayload().getId(), exp);
+        retry(message);
+      }
+    }
+  }
+
+  static Message<Notification> createMessage(Notification notification,
+      PendingNotification pending, UserContactDetailsSnapshot contactDetails,
+      PendingNotificationService pendingNotificationService) {
+    MessageBuilder<Notification> builder = MessageBuilder
         .withPayload(notification)
         .setHeader(RECIPIENT_HEADER, notification.getUserId())
         .setHeader(IMPORTANT_HEADER, notification.getImportant())
         .setHeader(CHANNEL_TO_USE_HEADER, pending.getChannel())
-        .build();
-  }
+        .setHeader(NOTIFICATION_ID_HEADER, notification.getId())
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK,
+            new PendingNotificationAcknowledgment(pendingNotificationService, pending.getId(),
+                pending.getLeaseId()));
 
-  private void prepareJpaExecutor(EntityManager entityManager) {
-    jpaExecutor = new JpaExecutor(entityManager);
+    if (null != contactDetails) {
+      builder.setHeader(CONTACT_DETAILS_HEADER, contactDetails);
+    }
 
-    jpaExecutor.setEntityClass(PendingNotification.class);
-    jpaExecutor.setNamedQuery(PendingNotification.GET_PENDING_NOTIFICATIONS_NAMED_QUERY);
+    return builder.build();
+  }
 
-    jpaExecutor.setExpectSingleResult(true);
-    jpaExecutor.setMaxNumberOfResults(1);
+  private static void release(Message<?> message) {
+    AcknowledgmentCallback callback = StaticMessageHeaderAccessor
+        .getAcknowledgmentCallback(message);
 
-    jpaExecutor.setUsePayloadAsParameterSource(true);
+    if (callback instanceof PendingNotificationAcknowledgment) {
+      ((PendingNotificationAcknowledgment) callback).release();
+    } else {
+      retry(message);
+    }
+  }
 
-    jpaExecutor.setDeleteAfterPoll(true);
-    jpaExecutor.setFlush(true);
-    jpaExecutor.setClearOnFlush(true);
+  private static void retry(Message<?> message) {
+    // usually the message has been already acknowledged by the sending flow
+    AcknowledgmentCallback callback = StaticMessageHeaderAccessor
+        .getAcknowledgmentCallback(message);
+
+    if (null != callback && !callback.isAcknowledged()) {
+      callback.acknowledge(Status.REQUEUE);
+    }
   }
 }
@@ -0,0 +1,165 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.integration.channel.AbstractExecutorChannel;
+import org.springframework.integration.channel.ChannelUtils;
+import org.springframework.integration.dispatcher.AbstractDispatcher;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.integration.dispatcher.UnicastingDispatcher;
+import org.springframework.integration.util.ErrorHandlingTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A channel that hands messages off to a fixed number of lanes. Each lane is handled by its own
+ * single-threaded executor. A message is assigned to a lane by its partition key, so messages
+ * with the same key are handled one by one in the order they were sent to the channel, while
+ * messages with different keys are handled in parallel.
+ */
+public class PartitionedExecutorChannel extends AbstractExecutorChannel {
+
+  private final List<ThreadPoolTaskExecutor> lanes;
+  private final Function<Message<?>, Object> partitionKey;
+
+  /**
+   * Creates a new channel.
+   *
+   * @param lanes single-threaded executors that handle messages, one for each lane.
+   * @param partitionKey returns a key that is used to assign a message to a lane.
+   */
+  public PartitionedExecutorChannel(List<ThreadPoolTaskExecutor> lanes,
+      Function<Message<?>, Object> partitionKey) {
+    super(null);
+    Assert.notEmpty(lanes, "at least one lane is required");
+    this.lanes = lanes;
+    this.partitionKey = partitionKey;
+    this.dispatcher = new PartitionedDispatcher(lanes);
+  }
+
+  public int getLaneCount() {
+    return lanes.size();
+  }
+
+  /**
+   * Returns the number of messages that are handled or wait to be handled by the given lane.
+   */
+  public int getLaneDepth(int lane) {
+    ThreadPoolExecutor executor = lanes.get(lane).getThreadPoolExecutor();
+    return executor.getQueue().size() + executor.getActiveCount();
+  }
+
+  int getLane(Message<?> message) {
+    return getLaneOfKey(partitionKey.apply(message));
+  }
+
+  /**
+   * Returns the lane that handles messages with the given partition key.
+   */
+  int getLaneOfKey(Object key) {
+    return Math.floorMod(Objects.hashCode(key), lanes.size());
+  }
+
+  /**
+   * Runs the given task on the thread of the given lane, after the messages that already wait
+   * in the lane.
+   *
+   * @throws org.springframework.core.task.TaskRejectedException if the queue of the lane is full.
+   */
+  void execute(int lane, Runnable task) {
+    lanes.get(lane).execute(task);
+  }
+
+  @Override
+  protected MessageDispatcher getDispatcher() {
+    return dispatcher;
+  }
+
+  @Override
+  protected void onInit() {
+    Assert.state(dispatcher.getHandlerCount() == 0, "You cannot subscribe() until the channel "
+        + "bean is fully initialized by the framework. Do not subscribe in a @Bean definition");
+    super.onInit();
+
+    if (null == maxSubscribers) {
+      maxSubscribers = getIntegrationProperty(
+          "spring.integration.channels.maxUnicastSubscribers", Integer.class);
+    }
+
+    dispatcher = new PartitionedDispatcher(lanes.stream()
+        .map(lane -> new ErrorHandlingTaskExecutor(lane,
+            ChannelUtils.getErrorHandler(getBeanFactory())))
+        .collect(Collectors.toList()));
+    dispatcher.setMaxSubscribers(maxSubscribers);
+  }
+
+  private final class PartitionedDispatcher extends AbstractDispatcher {
+
+    private final List<UnicastingDispatcher> partitions;
+
+    PartitionedDispatcher(List<? extends Executor> executors) {
+      this.partitions = executors
+          .stream()
+          .map(this::createPartition)
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized boolean addHandler(MessageHandler handler) {
+      boolean added = super.addHandler(handler);
+
+      if (added) {
+        partitions.forEach(partition -> partition.addHandler(handler));
+      }
+
+      return added;
+    }
+
+    @Override
+    public synchronized boolean removeHandler(MessageHandler handler) {
+      boolean removed = super.removeHandler(handler);
+
+      if (removed) {
+        partitions.forEach(partition -> partition.removeHandler(handler));
+      }
+
+      return removed;
+    }
+
+    @Override
+    public boolean dispatch(Message<?> message) {
+      return partitions.get(getLane(message)).dispatch(message);
+    }
+
+    private UnicastingDispatcher createPartition(Executor executor) {
+      UnicastingDispatcher partition = new UnicastingDispatcher(executor);
+      partition.setMessageHandlingTaskDecorator(task -> executorInterceptorsSize > 0
+          ? new MessageHandlingTask(task)
+          : task);
+
+      return partition;
+    }
+  }
+
+}
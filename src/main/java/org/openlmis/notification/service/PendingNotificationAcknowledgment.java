@@ -0,0 +1,102 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+
+/**
+ * Completes a leased pending notification once its message has been handled. An accepted
+ * message is removed from the sending queue, a requeued message is retried later and a rejected
+ * message is moved to the dead letters. Only the first acknowledgment is taken into account, and
+ * only while the lease it was created for is still held.
+ */
+class PendingNotificationAcknowledgment implements AcknowledgmentCallback {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(PendingNotificationAcknowledgment.class);
+
+  private final PendingNotificationService pendingNotificationService;
+  private final PendingNotificationId id;
+  private final UUID leaseId;
+
+  private final AtomicBoolean acknowledged = new AtomicBoolean(false);
+  private volatile boolean autoAck = true;
+
+  PendingNotificationAcknowledgment(PendingNotificationService pendingNotificationService,
+      PendingNotificationId id, UUID leaseId) {
+    this.pendingNotificationService = pendingNotificationService;
+    this.id = id;
+    this.leaseId = leaseId;
+  }
+
+  @Override
+  public void acknowledge(Status status) {
+    if (!acknowledged.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      if (Status.ACCEPT == status) {
+        pendingNotificationService.complete(id, leaseId);
+      } else if (Status.REQUEUE == status) {
+        pendingNotificationService.retry(id, leaseId);
+      } else {
+        pendingNotificationService.reject(id, leaseId);
+      }
+    } catch (RuntimeException exp) {
+      // the lease will expire and the notification will be claimed again
+      LOGGER.error("Can't complete the pending notification {} with status {}", id, status, exp);
+    }
+  }
+
+  /**
+   * Releases the pending notification without counting a failed attempt. It is used instead of
+   * an acknowledgment when the message could not be handed off for sending.
+   */
+  void release() {
+    if (!acknowledged.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      pendingNotificationService.release(id, leaseId);
+    } catch (RuntimeException exp) {
+      // the lease will expire and the notification will be claimed again
+      LOGGER.error("Can't release the pending notification {}", id, exp);
+    }
+  }
+
+  @Override
+  public boolean isAcknowledged() {
+    return acknowledged.get();
+  }
+
+  @Override
+  public void noAutoAck() {
+    autoAck = false;
+  }
+
+  @Override
+  public boolean isAutoAck() {
+    return autoAck;
+  }
+
+}
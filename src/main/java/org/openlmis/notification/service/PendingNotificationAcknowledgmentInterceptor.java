@@ -0,0 +1,72 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationToSendRetriever.START_CHANNEL;
+
+import com.google.common.base.Throwables;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Acknowledges a pending notification message once the flow started by it has returned. If the
+ * message has been filtered out or postponed, the pending notification is removed from the
+ * sending queue. If the flow failed, it is released to be sent again. Messages handed off to a
+ * channel lane are acknowledged by the lane. A message rejected by a full lane has not been sent
+ * at all, so its pending notification is released without counting a failed attempt.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = START_CHANNEL)
+public class PendingNotificationAcknowledgmentInterceptor implements ChannelInterceptor {
+
+  @Override
+  public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent,
+      Exception ex) {
+    AcknowledgmentCallback callback = StaticMessageHeaderAccessor
+        .getAcknowledgmentCallback(message);
+
+    if (null == callback || callback.isAcknowledged()) {
+      return;
+    }
+
+    if (null != ex && isRejected(ex) && callback instanceof PendingNotificationAcknowledgment) {
+      ((PendingNotificationAcknowledgment) callback).release();
+    } else if (null != ex) {
+      callback.acknowledge(Status.REQUEUE);
+    } else if (callback.isAutoAck()) {
+      callback.acknowledge(Status.ACCEPT);
+    }
+  }
+
+  /**
+   * Checks if the given exception has been caused by an executor that rejected a message, for
+   * example because the queue of a channel lane is full.
+   */
+  static boolean isRejected(Throwable exp) {
+    return Throwables
+        .getCausalChain(exp)
+        .stream()
+        .anyMatch(RejectedExecutionException.class::isInstance);
+  }
+
+}
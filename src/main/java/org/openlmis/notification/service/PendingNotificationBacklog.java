@@ -0,0 +1,109 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_NOTIFICATION_QUEUE_FULL;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.BooleanUtils;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.web.TooManyRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of the number of pending notifications and rejects new notifications when there
+ * are too many of them. The number is counted in the database at most once per refresh interval
+ * and notifications added by this instance of the service are added to it in the meantime.
+ * Important notifications are always accepted.
+ */
+@Component
+public class PendingNotificationBacklog {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PendingNotificationBacklog.class);
+
+  private final PendingNotificationRepository pendingNotificationRepository;
+  private final long threshold;
+  private final long refreshInterval;
+  private final long retryAfter;
+
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicLong refreshedAt = new AtomicLong();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /**
+   * Creates a new instance.
+   */
+  @Autowired
+  public PendingNotificationBacklog(PendingNotificationRepository pendingNotificationRepository,
+      @Value("${notificationToSend.admission.backlogThreshold}") long threshold,
+      @Value("${notificationToSend.admission.refreshInterval}") long refreshInterval,
+      @Value("${notificationToSend.admission.retryAfter}") long retryAfter) {
+    this.pendingNotificationRepository = pendingNotificationRepository;
+    this.threshold = threshold;
+    this.refreshInterval = refreshInterval;
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * Checks if a new notification can be added to the sending queue.
+   *
+   * @param important the important flag of the notification.
+   * @throws TooManyRequestsException if the notification is not important and the number of
+   *                                  pending notifications has reached the threshold.
+   */
+  public void admit(Boolean important) {
+    if (BooleanUtils.isTrue(important) || threshold <= 0) {
+      return;
+    }
+
+    long current = getSize();
+
+    if (current >= threshold) {
+      LOGGER.warn("Rejecting a notification, there are {} pending notifications", current);
+      throw new TooManyRequestsException(retryAfter, ERROR_NOTIFICATION_QUEUE_FULL,
+          String.valueOf(retryAfter));
+    }
+  }
+
+  /**
+   * Records pending notifications that have been added to the sending queue.
+   */
+  public void added(int count) {
+    size.addAndGet(count);
+  }
+
+  long getSize() {
+    long now = System.currentTimeMillis();
+
+    // only one request counts pending notifications, the others use the last known number
+    if (now - refreshedAt.get() >= refreshInterval && refreshing.compareAndSet(false, true)) {
+      try {
+        size.set(pendingNotificationRepository.count());
+        refreshedAt.set(now);
+      } finally {
+        refreshing.set(false);
+      }
+    }
+
+    return size.get();
+  }
+
+}
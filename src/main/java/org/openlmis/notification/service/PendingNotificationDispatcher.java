@@ -0,0 +1,144 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationToSendRetriever.createMessage;
+import static org.openlmis.notification.service.NotificationToSendRetriever.sendOneByOne;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.openlmis.notification.domain.Notification;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.domain.UserContactDetails;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends a saved notification as soon as the transaction that added it to the sending queue has
+ * been committed. The pending notifications are still leased in the database, so a message is
+ * not sent twice, and if the fast path fails (or the service is stopped) the pending
+ * notifications stay in the queue and are sent by the poller.
+ */
+@Component
+public class PendingNotificationDispatcher implements DisposableBean {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(PendingNotificationDispatcher.class);
+
+  private final PendingNotificationRepository pendingNotificationRepository;
+  private final PendingNotificationService pendingNotificationService;
+  private final MessagingTemplate messagingTemplate;
+  private final ThreadPoolTaskExecutor executor;
+  private final Duration leaseDuration;
+  private final boolean enabled;
+
+  /**
+   * Creates a new instance of the dispatcher with a worker pool of the given size.
+   */
+  @Autowired
+  public PendingNotificationDispatcher(
+      PendingNotificationRepository pendingNotificationRepository,
+      PendingNotificationService pendingNotificationService, MessagingTemplate messagingTemplate,
+      @Value("${notificationToSend.leaseDuration}") long leaseDuration,
+      @Value("${notificationToSend.fastPath.enabled}") boolean enabled,
+      @Value("${notificationToSend.fastPath.poolSize}") int poolSize,
+      @Value("${notificationToSend.fastPath.queueCapacity}") int queueCapacity) {
+    this.pendingNotificationRepository = pendingNotificationRepository;
+    this.pendingNotificationService = pendingNotificationService;
+    this.messagingTemplate = messagingTemplate;
+    this.leaseDuration = Duration.ofMillis(leaseDuration);
+    this.enabled = enabled;
+
+    this.executor = new ThreadPoolTaskExecutor();
+    this.executor.setCorePoolSize(poolSize);
+    this.executor.setMaxPoolSize(poolSize);
+    this.executor.setQueueCapacity(queueCapacity);
+    this.executor.setThreadNamePrefix("pending-notification-dispatcher-");
+    this.executor.initialize();
+  }
+
+  /**
+   * Sends the given notification once the current transaction has been committed. If there is
+   * no active transaction, the notification is sent right away. Contact details that have
+   * already been retrieved for the recipient are reused by the sending flow.
+   *
+   * @param notification   the notification that has been added to the sending queue.
+   * @param contactDetails the contact details of the notification recipient.
+   */
+  public void dispatchAfterCommit(Notification notification, UserContactDetails contactDetails) {
+    if (!enabled) {
+      return;
+    }
+
+    UserContactDetailsSnapshot snapshot = new UserContactDetailsSnapshot(contactDetails);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager
+          .registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              submit(notification, snapshot);
+            }
+          });
+    } else {
+      submit(notification, snapshot);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  private void submit(Notification notification, UserContactDetailsSnapshot contactDetails) {
+    try {
+      executor.execute(() -> dispatch(notification, contactDetails));
+    } catch (TaskRejectedException exp) {
+      LOGGER.debug("The notification {} will be sent by the poller", notification.getId());
+    }
+  }
+
+  @VisibleForTesting
+  void dispatch(Notification notification, UserContactDetailsSnapshot contactDetails) {
+    try {
+      // rows that are already leased are being sent by the poller or the listener
+      List<PendingNotification> claimed = pendingNotificationRepository
+          .claimPendingNotifications(notification.getId(), leaseDuration);
+
+      sendOneByOne(messagingTemplate, claimed
+          .stream()
+          .map(pending -> createMessage(notification, pending, contactDetails,
+              pendingNotificationService))
+          .collect(Collectors.toList()));
+    } catch (RuntimeException exp) {
+      LOGGER.error("Can't send the notification {}, it will be sent by the poller",
+          notification.getId(), exp);
+    }
+  }
+
+}
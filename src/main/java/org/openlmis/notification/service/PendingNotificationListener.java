@@ -0,0 +1,177 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.service.NotificationToSendRetriever.BATCH_CHANNEL;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.openlmis.notification.domain.PendingNotification;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens for notifications sent by PostgreSQL when new rows are inserted into the
+ * pending_notifications table and sends them immediately instead of waiting for the next poll.
+ * The listener thread blocks until a notification arrives. If nothing arrives within the
+ * validation interval, the connection is checked and the listener waits again, so the thread
+ * also stops at the latest one validation interval after the listener has been stopped.
+ * The listener keeps one connection from the database connection pool for as long as it runs,
+ * so the pool must be one connection larger than the rest of the service needs.
+ */
+@Component
+@ConditionalOnProperty(name = "notificationToSend.listener.enabled", havingValue = "true")
+public class PendingNotificationListener implements SmartLifecycle {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PendingNotificationListener.class);
+
+  static final String PENDING_NOTIFICATIONS_CHANNEL = "pending_notifications";
+
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private NotificationToSendRetriever retriever;
+
+  @Autowired
+  private MessagingTemplate messagingTemplate;
+
+  @Value("${notificationToSend.autoStartup:true}")
+  private boolean autoStartup;
+
+  @Value("${notificationToSend.listener.validationInterval}")
+  private int validationInterval;
+
+  private volatile boolean running;
+  private Thread listenerThread;
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    listenerThread = new Thread(this::listen, "pending-notification-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    running = false;
+
+    if (null != listenerThread) {
+      listenerThread.interrupt();
+      listenerThread = null;
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return autoStartup;
+  }
+
+  private void listen() {
+    while (running) {
+      try (Connection connection = dataSource.getConnection()) {
+        listen(connection);
+      } catch (SQLException | RuntimeException exp) {
+        LOGGER.error("Can't listen for pending notifications", exp);
+        pause(validationInterval);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void listen(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("LISTEN " + PENDING_NOTIFICATIONS_CHANNEL);
+    }
+
+    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+    LOGGER.info("Listening for pending notifications");
+
+    // notifications could have been added while the listener was not connected
+    drain();
+
+    while (running) {
+      // returns as soon as a notification arrives or after the validation interval
+      PGNotification[] notifications = pgConnection.getNotifications(validationInterval);
+
+      if (null != notifications && notifications.length > 0) {
+        LOGGER.debug("Received {} notification(s) about new pending notifications",
+            notifications.length);
+        drain();
+      } else if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+        throw new SQLException("The listener connection is no longer valid");
+      }
+    }
+  }
+
+  /**
+   * Sends pending notifications until there is nothing left to send. Each batch is claimed and
+   * sent the same way as it is done by the default poller.
+   */
+  @VisibleForTesting
+  void drain() {
+    while (running && sendBatch()) {
+      LOGGER.debug("Sent a batch of pending notifications");
+    }
+  }
+
+  private boolean sendBatch() {
+    Message<List<PendingNotification>> batch = retriever.retrieve();
+
+    if (null == batch) {
+      return false;
+    }
+
+    messagingTemplate.send(BATCH_CHANNEL, batch);
+    return true;
+  }
+
+  private void pause(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+
+}
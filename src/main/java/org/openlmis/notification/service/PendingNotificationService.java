@@ -0,0 +1,209 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.openlmis.notification.repository.DeadLetterNotificationRepository;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.web.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Completes pending notifications after an attempt to send them. A notification that could not
+ * be sent is retried with an exponential backoff, so a single failing message does not block
+ * the sending queue. After the maximum number of attempts it is moved to the dead letters.
+ */
+@Service
+public class PendingNotificationService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PendingNotificationService.class);
+
+  private final PendingNotificationRepository pendingNotificationRepository;
+  private final DeadLetterNotificationRepository deadLetterNotificationRepository;
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+
+  /**
+   * Creates a new instance of the service.
+   */
+  @Autowired
+  public PendingNotificationService(
+      PendingNotificationRepository pendingNotificationRepository,
+      DeadLetterNotificationRepository deadLetterNotificationRepository,
+      @Value("${notificationToSend.retry.maxAttempts}") int maxAttempts,
+      @Value("${notificationToSend.retry.initialBackoff}") long initialBackoff,
+      @Value("${notificationToSend.retry.maxBackoff}") long maxBackoff) {
+    this.pendingNotificationRepository = pendingNotificationRepository;
+    this.deadLetterNotificationRepository = deadLetterNotificationRepository;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = Duration.ofMillis(initialBackoff);
+    this.maxBackoff = Duration.ofMillis(maxBackoff);
+  }
+
+  /**
+   * Removes the pending notification from the sending queue. Nothing is removed if the lease
+   * has been taken over, for example after it expired and the notification was claimed again.
+   */
+  @Transactional
+  public void complete(PendingNotificationId id, UUID leaseId) {
+    if (0 == pendingNotificationRepository.removePendingNotification(id, leaseId)) {
+      LOGGER.warn("The lease {} of the pending notification {} is no longer held", leaseId, id);
+    }
+  }
+
+  /**
+   * Records a failed attempt to send the pending notification. The notification will be sent
+   * again after a delay that grows with each attempt, or it is moved to the dead letters if the
+   * maximum number of attempts has been reached.
+   */
+  @Transactional
+  public void retry(PendingNotificationId id, UUID leaseId) {
+    PendingNotification pending = findLeased(id, leaseId);
+
+    if (null == pending) {
+      return;
+    }
+
+    ZonedDateTime now = ZonedDateTime.now();
+    pending.failed(now, getBackoff(pending.getAttemptCount() + 1));
+
+    if (pending.getAttemptCount() >= maxAttempts) {
+      moveToDeadLetters(pending, now);
+    } else {
+      LOGGER.info("The pending notification {} will be sent again after {}",
+          id, pending.getNextAttemptAt());
+      pendingNotificationRepository.save(pending);
+    }
+  }
+
+  /**
+   * Releases the pending notification that could not be handed off for sending, because the
+   * sending lanes are full. This is not counted as a failed attempt; the notification is claimed
+   * again after the initial backoff.
+   */
+  @Transactional
+  public void release(PendingNotificationId id, UUID leaseId) {
+    PendingNotification pending = findLeased(id, leaseId);
+
+    if (null != pending) {
+      pending.release(ZonedDateTime.now(), initialBackoff);
+      pendingNotificationRepository.save(pending);
+    }
+  }
+
+  /**
+   * Moves the pending notification to the dead letters without retrying it.
+   */
+  @Transactional
+  public void reject(PendingNotificationId id, UUID leaseId) {
+    PendingNotification pending = findLeased(id, leaseId);
+
+    if (null != pending) {
+      ZonedDateTime now = ZonedDateTime.now();
+      pending.failed(now, Duration.ZERO);
+      moveToDeadLetters(pending, now);
+    }
+  }
+
+  /**
+   * Adds dead letters of the given notification back to the sending queue.
+   *
+   * @param notificationId the notification ID.
+   * @param channel the notification channel; if null, dead letters of all channels are requeued.
+   * @throws NotFoundException if there are no matching dead letters.
+   */
+  @Transactional
+  public void requeue(UUID notificationId, NotificationChannel channel) {
+    List<DeadLetterNotification> deadLetters = deadLetterNotificationRepository
+        .findByNotificationId(notificationId)
+        .stream()
+        .filter(deadLetter -> null == channel || channel == deadLetter.getChannel())
+        .collect(Collectors.toList());
+
+    if (deadLetters.isEmpty()) {
+      throw new NotFoundException(ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND);
+    }
+
+    requeueDeadLetters(deadLetters);
+  }
+
+  /**
+   * Adds all dead letters back to the sending queue.
+   *
+   * @return the number of requeued notifications.
+   */
+  @Transactional
+  public int requeueAll() {
+    List<DeadLetterNotification> deadLetters = deadLetterNotificationRepository.findAll();
+    requeueDeadLetters(deadLetters);
+
+    return deadLetters.size();
+  }
+
+  @VisibleForTesting
+  Duration getBackoff(int attemptCount) {
+    // initialBackoff * 2^(attemptCount - 1) without overflowing for big attempt counts
+    int exponent = Math.min(Math.max(attemptCount - 1, 0), 30);
+    Duration backoff = initialBackoff.multipliedBy(1L << exponent);
+
+    return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+  }
+
+  private PendingNotification findLeased(PendingNotificationId id, UUID leaseId) {
+    PendingNotification pending = pendingNotificationRepository
+        .findByIdAndLeaseId(id, leaseId)
+        .orElse(null);
+
+    if (null == pending) {
+      LOGGER.warn("The lease {} of the pending notification {} is no longer held", leaseId, id);
+    }
+
+    return pending;
+  }
+
+  private void moveToDeadLetters(PendingNotification pending, ZonedDateTime now) {
+    LOGGER.warn("The pending notification {} could not be sent after {} attempt(s)",
+        pending.getId(), pending.getAttemptCount());
+
+    deadLetterNotificationRepository.save(new DeadLetterNotification(pending, now));
+    pendingNotificationRepository.delete(pending);
+  }
+
+  private void requeueDeadLetters(List<DeadLetterNotification> deadLetters) {
+    pendingNotificationRepository.saveAll(deadLetters
+        .stream()
+        .map(DeadLetterNotification::requeue)
+        .collect(Collectors.toList()));
+    deadLetterNotificationRepository.deleteAll(deadLetters);
+  }
+
+}
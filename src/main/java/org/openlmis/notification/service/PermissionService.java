@@ -17,7 +17,12 @@ package org.openlmis.notification.service;
 
 import static org.apache.commons.lang3.BooleanUtils.isNotTrue;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.notification.service.referencedata.RightDto;
 import org.openlmis.notification.service.referencedata.UserDto;
 import org.openlmis.notification.service.referencedata.UserReferenceDataService;
@@ -43,6 +48,30 @@ public class PermissionService {
   @Value("${auth.server.clientId}")
   private String serviceTokenClientId;
 
+  @Value("${referencedata.permissions.cacheMaximumSize}")
+  private long permissionCacheMaximumSize;
+
+  @Value("${referencedata.permissions.cacheTimeToLive}")
+  private long permissionCacheTimeToLive;
+
+  // (user id, right id) -> whether the user has the right
+  private Cache<Pair<UUID, UUID>, Boolean> permissions;
+
+  /**
+   * Creates the cache of user permissions. Permissions are not cached if the maximum size or
+   * the time to live is not positive.
+   */
+  @PostConstruct
+  public void initCache() {
+    if (permissionCacheMaximumSize > 0 && permissionCacheTimeToLive > 0) {
+      permissions = CacheBuilder
+          .newBuilder()
+          .maximumSize(permissionCacheMaximumSize)
+          .expireAfterWrite(permissionCacheTimeToLive, TimeUnit.MILLISECONDS)
+          .build();
+    }
+  }
+
   /**
    * Checks whether current request has access to viewing contact details of user with the given
    * userId.
@@ -73,6 +102,24 @@ public class PermissionService {
     }
   }
 
+  /**
+   * Checks whether current request has access to notifications that could not be sent.
+   */
+  public void canManageDeadLetterNotifications() {
+    if (hasNoPermission(USERS_MANAGE, true)) {
+      throw new MissingPermissionException(USERS_MANAGE);
+    }
+  }
+
+  /**
+   * Checks whether current request can manage digest configurations.
+   */
+  public void canManageDigestConfigurations() {
+    if (hasNoPermission(USERS_MANAGE, true)) {
+      throw new MissingPermissionException(USERS_MANAGE);
+    }
+  }
+
   private boolean isCurrentUser(UUID userId) {
     if (null == userId) {
       return false;
@@ -106,11 +153,35 @@ public class PermissionService {
   private boolean isNotValidUserToken(String rightName) {
     UserDto user = authenticationHelper.getCurrentUser();
     RightDto right = authenticationHelper.getRight(rightName);
-    ResultDto<Boolean> result =  userReferenceDataService.hasRight(
-        user.getId(), right.getId(), null, null, null
+
+    if (null == permissions) {
+      return isNotTrue(hasRight(user.getId(), right.getId()));
+    }
+
+    // the referencedata service is called outside of the cache, so no lock is held meanwhile
+    Pair<UUID, UUID> key = Pair.of(user.getId(), right.getId());
+    Boolean cached = permissions.getIfPresent(key);
+
+    if (null != cached) {
+      return !cached;
+    }
+
+    Boolean result = hasRight(user.getId(), right.getId());
+
+    if (null != result) {
+      permissions.put(key, result);
+    }
+
+    return isNotTrue(result);
+  }
+
+  // returns null (not cached) if the referencedata service did not return a result
+  private Boolean hasRight(UUID userId, UUID rightId) {
+    ResultDto<Boolean> result = userReferenceDataService.hasRight(
+        userId, rightId, null, null, null
     );
 
-    return null == result || isNotTrue(result.getResult());
+    return null == result ? null : result.getResult();
   }
 
   private boolean isNotValidServiceToken(OAuth2Authentication authentication) {
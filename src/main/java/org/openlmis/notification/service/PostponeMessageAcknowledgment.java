@@ -0,0 +1,84 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.openlmis.notification.domain.PostponeMessage;
+import org.openlmis.notification.repository.PostponeMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+
+/**
+ * Acknowledges a digest message once it has been handled by a channel lane. The postponed
+ * messages of a digest are removed when the digest is handed off to a lane, so if the digest
+ * could not be sent, they are saved again and become part of the next digest of the user.
+ * Only the first acknowledgment is taken into account.
+ */
+class PostponeMessageAcknowledgment implements AcknowledgmentCallback {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(PostponeMessageAcknowledgment.class);
+
+  private final PostponeMessageRepository postponeMessageRepository;
+  private final List<PostponeMessage> messages;
+
+  private final AtomicBoolean acknowledged = new AtomicBoolean(false);
+  private volatile boolean autoAck = true;
+
+  PostponeMessageAcknowledgment(PostponeMessageRepository postponeMessageRepository,
+      List<PostponeMessage> messages) {
+    this.postponeMessageRepository = postponeMessageRepository;
+    // copies are created right away, while the lazy configuration can still be resolved
+    this.messages = messages
+        .stream()
+        .map(message -> new PostponeMessage(message.getConfiguration(), message.getBody(),
+            message.getSubject(), message.getUserId(), message.getChannel()))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void acknowledge(Status status) {
+    if (!acknowledged.compareAndSet(false, true) || Status.REQUEUE != status) {
+      return;
+    }
+
+    try {
+      postponeMessageRepository.saveAll(messages);
+    } catch (RuntimeException exp) {
+      LOGGER.error("Can't restore {} postponed messages of a digest that was not sent",
+          messages.size(), exp);
+    }
+  }
+
+  @Override
+  public boolean isAcknowledged() {
+    return acknowledged.get();
+  }
+
+  @Override
+  public void noAutoAck() {
+    autoAck = false;
+  }
+
+  @Override
+  public boolean isAutoAck() {
+    return autoAck;
+  }
+
+}
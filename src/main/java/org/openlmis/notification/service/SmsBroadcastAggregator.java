@@ -0,0 +1,252 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges SMS messages with identical bodies into a single broadcast. The first message with a
+ * given body opens a short window; messages with the same body that arrive before the window
+ * closes are sent together, in one request to the SMS provider. A broadcast is sent earlier if
+ * it reaches the maximum number of recipients. If the total number of recipients of all open
+ * broadcasts reaches its limit, all of them are sent right away by the calling lane thread, so
+ * the number of messages that wait in memory is bounded. A phone number is never added twice to
+ * one broadcast: if it is already there, that broadcast is sent and a new one is opened. The
+ * pending notification of each recipient is acknowledged separately after the broadcast has been
+ * sent. If the asynchronous SMS mode is enabled, broadcasts are sent without waiting for the
+ * response of the SMS provider.
+ */
+@Component
+class SmsBroadcastAggregator implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SmsBroadcastAggregator.class);
+
+  private final SmsSender smsSender;
+  private final long window;
+  private final int maxRecipients;
+  private final int maxPending;
+  private final TaskScheduler scheduler;
+
+  private final Object lock = new Object();
+  private final Map<String, List<Recipient>> broadcasts = new LinkedHashMap<>();
+  private int pending;
+
+  /**
+   * Creates a new instance. Broadcasts are merged only if the window is greater than zero; they
+   * are sent by a single background thread when the window closes.
+   */
+  @Autowired
+  SmsBroadcastAggregator(SmsSender smsSender,
+      @Value("${sms.broadcast.window}") long window,
+      @Value("${sms.broadcast.maxRecipients}") int maxRecipients,
+      @Value("${sms.broadcast.maxPending}") int maxPending) {
+    this(smsSender, window, maxRecipients, maxPending, window > 0 ? createScheduler() : null);
+  }
+
+  @VisibleForTesting
+  SmsBroadcastAggregator(SmsSender smsSender, long window, int maxRecipients, int maxPending,
+      TaskScheduler scheduler) {
+    this.smsSender = smsSender;
+    this.window = window;
+    this.maxRecipients = Math.max(maxRecipients, 1);
+    this.maxPending = Math.max(maxPending, 1);
+    this.scheduler = scheduler;
+  }
+
+  boolean isEnabled() {
+    return window > 0;
+  }
+
+  /**
+   * Adds a recipient to the broadcast of the given message. If the broadcast reaches the maximum
+   * number of recipients, it is sent by the calling thread. If all open broadcasts together
+   * reach the maximum number of pending recipients, all of them are sent by the calling thread.
+   * If the phone number is already a recipient of the broadcast, the broadcast is sent by the
+   * calling thread and a new one is opened. The given callback (if any) is acknowledged after the
+   * broadcast has been sent.
+   */
+  void add(String phoneNumber, String body, AcknowledgmentCallback callback) {
+    List<Recipient> closed = null;
+    List<Recipient> full = null;
+    Map<String, List<Recipient>> overflow = null;
+    List<Recipient> opened = null;
+
+    synchronized (lock) {
+      List<Recipient> recipients = broadcasts.get(body);
+
+      // the provider could merge both messages into one SMS, but both would be acknowledged
+      if (null != recipients && containsPhoneNumber(recipients, phoneNumber)) {
+        closed = broadcasts.remove(body);
+        pending -= closed.size();
+        recipients = null;
+      }
+
+      if (null == recipients) {
+        recipients = new ArrayList<>();
+        broadcasts.put(body, recipients);
+        opened = recipients;
+      }
+
+      recipients.add(new Recipient(phoneNumber, callback));
+      ++pending;
+
+      if (recipients.size() >= maxRecipients) {
+        full = broadcasts.remove(body);
+        pending -= full.size();
+      } else if (pending >= maxPending) {
+        overflow = new LinkedHashMap<>(broadcasts);
+        broadcasts.clear();
+        pending = 0;
+      }
+    }
+
+    if (null != closed) {
+      send(body, closed);
+    }
+
+    if (null != full) {
+      send(body, full);
+    } else if (null != overflow) {
+      LOGGER.debug("Too many SMS recipients are waiting, sending {} broadcasts", overflow.size());
+      overflow.forEach(this::send);
+    } else if (null != opened) {
+      scheduleFlush(body, opened);
+    }
+  }
+
+  /**
+   * Sends all open broadcasts.
+   */
+  void flush() {
+    Map<String, List<Recipient>> open;
+
+    synchronized (lock) {
+      open = new LinkedHashMap<>(broadcasts);
+      broadcasts.clear();
+      pending = 0;
+    }
+
+    open.forEach(this::send);
+  }
+
+  private void flush(String body, List<Recipient> recipients) {
+    synchronized (lock) {
+      // the broadcast could have been sent already and a new one with the same body opened
+      if (broadcasts.get(body) != recipients) {
+        return;
+      }
+
+      broadcasts.remove(body);
+      pending -= recipients.size();
+    }
+
+    send(body, recipients);
+  }
+
+  private void scheduleFlush(String body, List<Recipient> recipients) {
+    try {
+      scheduler.schedule(() -> flush(body, recipients), Instant.now().plusMillis(window));
+    } catch (TaskRejectedException exp) {
+      LOGGER.warn("Can't schedule an SMS broadcast, it will be sent immediately", exp);
+      flush(body, recipients);
+    }
+  }
+
+  private void send(String body, List<Recipient> recipients) {
+    List<String> phoneNumbers = recipients
+        .stream()
+        .map(Recipient::getPhoneNumber)
+        .collect(Collectors.toList());
+
+    smsSender
+        .sendMessageAsync(phoneNumbers, body)
+        .whenComplete((result, exp) -> acknowledge(recipients, exp));
+  }
+
+  private void acknowledge(List<Recipient> recipients, Throwable exp) {
+    if (null == exp) {
+      LOGGER.debug("Sent an SMS broadcast to {} recipients", recipients.size());
+    } else {
+      LOGGER.error("Can't send an SMS broadcast to {} recipients", recipients.size(), exp);
+    }
+
+    for (Recipient recipient : recipients) {
+      if (null != recipient.getCallback()) {
+        recipient.getCallback().acknowledge(null == exp ? Status.ACCEPT : Status.REQUEUE);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler instanceof ThreadPoolTaskScheduler) {
+      ((ThreadPoolTaskScheduler) scheduler).shutdown();
+    }
+
+    flush();
+  }
+
+  private static boolean containsPhoneNumber(List<Recipient> recipients, String phoneNumber) {
+    return recipients
+        .stream()
+        .anyMatch(recipient -> recipient.getPhoneNumber().equals(phoneNumber));
+  }
+
+  private static ThreadPoolTaskScheduler createScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setThreadNamePrefix("sms-broadcast-");
+    scheduler.initialize();
+
+    return scheduler;
+  }
+
+  private static final class Recipient {
+    private final String phoneNumber;
+    private final AcknowledgmentCallback callback;
+
+    Recipient(String phoneNumber, AcknowledgmentCallback callback) {
+      this.phoneNumber = phoneNumber;
+      this.callback = callback;
+    }
+
+    String getPhoneNumber() {
+      return phoneNumber;
+    }
+
+    AcknowledgmentCallback getCallback() {
+      return callback;
+    }
+  }
+
+}
@@ -17,15 +17,21 @@ package org.openlmis.notification.service;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.openlmis.notification.service.NotificationChannelRouter.SMS_SEND_NOW_CHANNEL;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 
+import java.util.Collections;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.openlmis.notification.domain.NotificationMessage;
-import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
 import org.springframework.integration.annotation.MessageEndpoint;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.messaging.handler.annotation.Header;
@@ -36,26 +42,84 @@ public class SmsNotificationChannelHandler {
       .getLogger(SmsNotificationChannelHandler.class);
 
   @Autowired
-  private UserContactDetailsRepository userContactDetailsRepository;
+  private SmsSender smsSender;
 
   @Autowired
-  private SmsSender smsSender;
+  private SmsBroadcastAggregator smsBroadcastAggregator;
+
+  // the asynchronous request in flight for each recipient
+  private final ConcurrentMap<UUID, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
 
   /**
-   * Tries to send a notification to a user by using email channel.
+   * Tries to send a notification to a user by using SMS channel. If broadcast merging is enabled,
+   * the user is added to the broadcast of the message and the pending notification is
+   * acknowledged after the broadcast has been sent. If the asynchronous SMS mode is enabled, the
+   * lane does not wait for the response and the pending notification is acknowledged when the
+   * request completes. Only one request for a given user is in flight at a time: a message is
+   * sent after the previous request of the same user has completed, so messages of a user are
+   * still sent in order while the lane goes on with messages of other users.
    */
   @ServiceActivator(inputChannel = SMS_SEND_NOW_CHANNEL)
   public void handle(NotificationMessage payload,
-      @Header(RECIPIENT_HEADER) UUID recipient) {
-    UserContactDetails contactDetails = userContactDetailsRepository.findById(recipient)
-        .orElse(null);
+      @Header(RECIPIENT_HEADER) UUID recipient,
+      @Header(value = CONTACT_DETAILS_HEADER, required = false)
+          UserContactDetailsSnapshot contactDetails,
+      @Header(value = IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, required = false)
+          AcknowledgmentCallback callback) {
+    if (null == contactDetails) {
+      LOGGER.error("Can't send SMS because user with id {} has no contact details", recipient);
+      return;
+    }
+
+    if (!shouldSendMessage(contactDetails)) {
+      return;
+    }
+
+    if (smsBroadcastAggregator.isEnabled()) {
+      smsBroadcastAggregator.add(contactDetails.getPhoneNumber(), payload.getBody(), callback);
+
+      if (null != callback) {
+        ChannelLaneInterceptor.deferAcknowledgment();
+      }
+    } else if (smsSender.isAsync()) {
+      // messages of a user are handled by a single lane, so there is no race for the same key
+      CompletableFuture<Void> previous = inFlight.get(recipient);
+      CompletableFuture<Void> response = null == previous
+          ? sendAsync(contactDetails.getPhoneNumber(), payload.getBody())
+          : previous
+              .handle((result, exp) -> null)
+              .thenCompose(ignored -> sendAsync(contactDetails.getPhoneNumber(),
+                  payload.getBody()));
+      inFlight.put(recipient, response);
+      response.whenComplete((result, exp) -> {
+        inFlight.remove(recipient, response);
+        acknowledge(recipient, callback, exp);
+      });
 
-    if (null != contactDetails && shouldSendMessage(contactDetails)) {
+      if (null != callback) {
+        ChannelLaneInterceptor.deferAcknowledgment();
+      }
+    } else {
       smsSender.sendMessage(contactDetails.getPhoneNumber(), payload.getBody());
     }
   }
 
-  private boolean shouldSendMessage(UserContactDetails contactDetails) {
+  // a failure of the previous request is handled by the acknowledgment of its own message
+  private CompletableFuture<Void> sendAsync(String phoneNumber, String body) {
+    return smsSender.sendMessageAsync(Collections.singletonList(phoneNumber), body);
+  }
+
+  private void acknowledge(UUID recipient, AcknowledgmentCallback callback, Throwable exp) {
+    if (null != exp) {
+      LOGGER.error("Can't send SMS to user with id {}", recipient, exp);
+    }
+
+    if (null != callback) {
+      callback.acknowledge(null == exp ? Status.ACCEPT : Status.REQUEUE);
+    }
+  }
+
+  private boolean shouldSendMessage(UserContactDetailsSnapshot contactDetails) {
     if (isBlank(contactDetails.getPhoneNumber())) {
       LOGGER.error(
           "Can't send SMS because user with id {} has no phone number",
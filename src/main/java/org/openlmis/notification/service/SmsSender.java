@@ -17,7 +17,12 @@ package org.openlmis.notification.service;
 
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_SEND_SMS_FAILURE;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
@@ -36,27 +41,62 @@ public class SmsSender {
 
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(SmsSender.class);
 
+  private static final String RATE_LIMITER_NAME = "sms";
+
   @Autowired
   RestTemplate restTemplate;
 
+  @Autowired
+  private AsyncSmsClient asyncSmsClient;
+
   @Value("${sms.send.api.url}")
   private String smsSendApiUrl;
 
   @Value("${sms.send.api.token}")
   private String smsSendApiToken;
 
+  @Value("${sms.rateLimit.permitsPerSecond}")
+  private double rateLimitPermitsPerSecond;
+
+  @Value("${sms.rateLimit.burst}")
+  private int rateLimitBurst;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(RATE_LIMITER_NAME, 0, 1);
+
+  /**
+   * Creates a limiter of the rate at which requests are sent to the SMS provider. The limiter
+   * is enabled only if the rate is positive.
+   */
+  @PostConstruct
+  void initRateLimiter() {
+    rateLimiter = new TokenBucketRateLimiter(RATE_LIMITER_NAME, rateLimitPermitsPerSecond,
+        rateLimitBurst);
+
+    if (rateLimiter.isEnabled() && null != meterRegistry) {
+      rateLimiter.bindTo(meterRegistry);
+    }
+  }
+
   void sendMessage(String toPhoneNumber, String message) {
-    XLOGGER.entry(toPhoneNumber, message);
+    sendMessage(Collections.singletonList(toPhoneNumber), message);
+  }
+
+  /**
+   * Sends the message to all given phone numbers in a single broadcast.
+   */
+  void sendMessage(List<String> toPhoneNumbers, String message) {
+    XLOGGER.entry(toPhoneNumbers, message);
     Profiler profiler = new Profiler("SEND_SMS_MESSAGE");
     profiler.setLogger(XLOGGER);
 
+    profiler.start("ACQUIRE_PERMIT");
+    rateLimiter.acquire(1);
+
     profiler.start("PREPARE_HTTP_REQUEST");
-    String toUrn = "tel:" + toPhoneNumber;
-    SmsRequestDto payload = new SmsRequestDto(message, Collections.singletonList(toUrn));
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_JSON);
-    headers.set("Authorization", "Token " + smsSendApiToken);
-    HttpEntity<SmsRequestDto> request = new HttpEntity<>(payload, headers);
+    HttpEntity<SmsRequestDto> request = createRequest(toPhoneNumbers, message);
 
     profiler.start("POST_TO_SMS_SEND_API");
     SmsRequestDto requestBody = request.getBody();
@@ -84,4 +124,47 @@ public class SmsSender {
     profiler.stop().log();
     XLOGGER.exit();
   }
+
+  boolean isAsync() {
+    return asyncSmsClient.isEnabled();
+  }
+
+  /**
+   * Sends the message to all given phone numbers in a single broadcast, without waiting for the
+   * response if the asynchronous mode is enabled. The returned future completes when the
+   * message has been sent, or fails with {@link ServerException} if it could not be sent.
+   */
+  CompletableFuture<Void> sendMessageAsync(List<String> toPhoneNumbers, String message) {
+    if (!asyncSmsClient.isEnabled()) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+
+      try {
+        sendMessage(toPhoneNumbers, message);
+        future.complete(null);
+      } catch (RuntimeException exp) {
+        future.completeExceptionally(exp);
+      }
+
+      return future;
+    }
+
+    HttpEntity<SmsRequestDto> request = createRequest(toPhoneNumbers, message);
+    XLOGGER.debug("async request, url = {}, body = {}", smsSendApiUrl, request.getBody());
+    rateLimiter.acquire(1);
+
+    return asyncSmsClient.post(smsSendApiUrl, request);
+  }
+
+  private HttpEntity<SmsRequestDto> createRequest(List<String> toPhoneNumbers, String message) {
+    List<String> toUrns = toPhoneNumbers
+        .stream()
+        .map(toPhoneNumber -> "tel:" + toPhoneNumber)
+        .collect(Collectors.toList());
+    SmsRequestDto payload = new SmsRequestDto(message, toUrns);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.set("Authorization", "Token " + smsSendApiToken);
+
+    return new HttpEntity<>(payload, headers);
+  }
 }
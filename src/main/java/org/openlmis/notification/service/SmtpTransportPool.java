@@ -0,0 +1,253 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps connected and authenticated SMTP transports, so that sending an email does not require
+ * a new connection, STARTTLS and authentication every time. At most the configured number of
+ * transports is open at the same time. A transport is checked before it is reused; transports
+ * that are broken, that have been idle for too long or that have sent the maximum number of
+ * messages are closed and replaced with new ones.
+ */
+@Component
+class SmtpTransportPool implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+  private final TransportFactory transportFactory;
+  private final long idleTimeout;
+  private final int maxMessagesPerConnection;
+  private final Semaphore permits;
+  private final Deque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Creates a pool that connects transports in the same way as the given mail sender. The pool
+   * is disabled if the size is not positive or the mail sender is not a
+   * {@link JavaMailSenderImpl}.
+   */
+  @Autowired
+  SmtpTransportPool(JavaMailSender mailSender,
+      @Value("${email.pool.size}") int size,
+      @Value("${email.pool.idleTimeout}") long idleTimeout,
+      @Value("${email.pool.maxMessagesPerConnection}") int maxMessagesPerConnection) {
+    this(mailSender instanceof JavaMailSenderImpl
+            ? createTransportFactory((JavaMailSenderImpl) mailSender)
+            : null,
+        size, idleTimeout, maxMessagesPerConnection);
+  }
+
+  @VisibleForTesting
+  SmtpTransportPool(TransportFactory transportFactory, int size, long idleTimeout,
+      int maxMessagesPerConnection) {
+    this.transportFactory = size > 0 ? transportFactory : null;
+    this.idleTimeout = idleTimeout;
+    this.maxMessagesPerConnection = maxMessagesPerConnection;
+    this.permits = new Semaphore(Math.max(size, 0), true);
+  }
+
+  boolean isEnabled() {
+    return null != transportFactory;
+  }
+
+  /**
+   * Sends the given message with one of the pooled transports. If all transports are in use,
+   * waits until one of them is released.
+   */
+  void send(MimeMessage message) throws MessagingException {
+    Exception failure = sendAll(Collections.singletonList(message)).get(message);
+
+    if (failure instanceof MessagingException) {
+      throw (MessagingException) failure;
+    }
+
+    if (null != failure) {
+      Throwables.throwIfUnchecked(failure);
+      throw new MessagingException(failure.getMessage(), failure);
+    }
+  }
+
+  /**
+   * Sends the given messages one after another with a single pooled transport. If a message
+   * can't be sent, the transport is replaced and the remaining messages are sent with a new one.
+   * The result contains messages that could not be sent, with the reason of the failure.
+   */
+  Map<MimeMessage, Exception> sendAll(List<MimeMessage> messages) {
+    Map<MimeMessage, Exception> failures = new HashMap<>();
+
+    try {
+      permits.acquire();
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      MessagingException failure =
+          new MessagingException("Interrupted while waiting for an SMTP connection", exp);
+      messages.forEach(message -> failures.put(message, failure));
+
+      return failures;
+    }
+
+    PooledTransport pooled = null;
+
+    try {
+      for (int idx = 0; idx < messages.size(); ++idx) {
+        MimeMessage message = messages.get(idx);
+
+        if (null == pooled) {
+          try {
+            pooled = borrow();
+          } catch (MessagingException exp) {
+            // without a connection none of the remaining messages can be sent
+            messages.subList(idx, messages.size()).forEach(item -> failures.put(item, exp));
+            break;
+          }
+        }
+
+        try {
+          sendMessage(pooled, message);
+        } catch (MessagingException | RuntimeException exp) {
+          failures.put(message, exp);
+          close(pooled);
+          pooled = null;
+          continue;
+        }
+
+        if (pooled.sentMessages >= maxMessagesPerConnection) {
+          close(pooled);
+          pooled = null;
+        }
+      }
+    } finally {
+      if (null != pooled) {
+        release(pooled);
+      }
+
+      permits.release();
+    }
+
+    return failures;
+  }
+
+  @Override
+  public void destroy() {
+    closed = true;
+
+    PooledTransport pooled;
+    while (null != (pooled = idle.pollFirst())) {
+      close(pooled);
+    }
+  }
+
+  private PooledTransport borrow() throws MessagingException {
+    PooledTransport pooled;
+
+    // the most recently used transport is the least likely to be closed by the server
+    while (null != (pooled = idle.pollFirst())) {
+      if (System.currentTimeMillis() - pooled.lastUsedAt < idleTimeout
+          && pooled.transport.isConnected()) {
+        return pooled;
+      }
+
+      LOGGER.debug("Closing an idle or broken SMTP connection");
+      close(pooled);
+    }
+
+    return new PooledTransport(transportFactory.connect());
+  }
+
+  private static void sendMessage(PooledTransport pooled, MimeMessage message)
+      throws MessagingException {
+    if (null == message.getSentDate()) {
+      message.setSentDate(new Date());
+    }
+
+    message.saveChanges();
+    pooled.transport.sendMessage(message, message.getAllRecipients());
+    pooled.sentMessages++;
+  }
+
+  private void release(PooledTransport pooled) {
+    pooled.lastUsedAt = System.currentTimeMillis();
+
+    if (closed) {
+      close(pooled);
+    } else {
+      idle.offerFirst(pooled);
+    }
+  }
+
+  private static void close(PooledTransport pooled) {
+    try {
+      pooled.transport.close();
+    } catch (MessagingException exp) {
+      LOGGER.debug("Can't close an SMTP connection", exp);
+    }
+  }
+
+  private static TransportFactory createTransportFactory(JavaMailSenderImpl mailSender) {
+    return () -> {
+      String protocol = mailSender.getProtocol();
+      Transport transport = mailSender
+          .getSession()
+          .getTransport(null == protocol ? JavaMailSenderImpl.DEFAULT_PROTOCOL : protocol);
+
+      transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(),
+          mailSender.getPassword());
+
+      return transport;
+    };
+  }
+
+  @FunctionalInterface
+  interface TransportFactory {
+
+    Transport connect() throws MessagingException;
+
+  }
+
+  private static final class PooledTransport {
+    private final Transport transport;
+    private int sentMessages;
+    private long lastUsedAt;
+
+    PooledTransport(Transport transport) {
+      this.transport = transport;
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.apache.commons.lang3.BooleanUtils.isTrue;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.notification.domain.DigestSubscription;
+
+/**
+ * An immutable copy of the settings of a digest subscription that are used to route
+ * notifications with the subscription tag.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class SubscriptionRoute {
+
+  private final NotificationChannel preferredChannel;
+  private final boolean useDigest;
+  private final String cronExpression;
+
+  /**
+   * Creates a route based on the given subscription.
+   */
+  public SubscriptionRoute(DigestSubscription subscription) {
+    this.preferredChannel = subscription.getPreferredChannel();
+    this.useDigest = isTrue(subscription.getUseDigest());
+    this.cronExpression = subscription.getCronExpression();
+  }
+
+}
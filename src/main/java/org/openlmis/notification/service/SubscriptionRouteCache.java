@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openlmis.notification.domain.DigestSubscription;
+import org.openlmis.notification.repository.DigestSubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps routing tables (tag to subscription settings) of recently notified users, so all filters
+ * of the sending flow can check user subscriptions without querying the database. The number of
+ * cached users is limited and the least recently used tables are removed first. A table has to be
+ * invalidated when subscriptions of the user are changed; tables older than the TTL are loaded
+ * again, so changes made by other instances of the service are also picked up.
+ */
+@Component
+public class SubscriptionRouteCache {
+
+  private final LoadingCache<UUID, Map<String, SubscriptionRoute>> routes;
+
+  /**
+   * Creates a new instance of the cache.
+   */
+  @Autowired
+  public SubscriptionRouteCache(DigestSubscriptionRepository digestSubscriptionRepository,
+      @Value("${notificationToSend.routing.cacheSize}") long cacheSize,
+      @Value("${notificationToSend.routing.cacheTimeToLive}") long cacheTimeToLive) {
+    this.routes = CacheBuilder
+        .newBuilder()
+        .maximumSize(cacheSize)
+        .expireAfterWrite(cacheTimeToLive, TimeUnit.MILLISECONDS)
+        .build(CacheLoader.from(userId -> load(digestSubscriptionRepository, userId)));
+  }
+
+  /**
+   * Finds settings of the user subscription for the given tag.
+   *
+   * @return the subscription settings or null if the user is not subscribed for the tag.
+   */
+  public SubscriptionRoute find(UUID userId, String tag) {
+    if (null == tag) {
+      return null;
+    }
+
+    return routes.getUnchecked(userId).get(tag);
+  }
+
+  /**
+   * Removes the routing table of the given user. If there is an active transaction, the table is
+   * removed again after the transaction has been committed, so a table loaded in the meantime
+   * from the old subscriptions is not used.
+   */
+  public void invalidate(UUID userId) {
+    routes.invalidate(userId);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager
+          .registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              routes.invalidate(userId);
+            }
+          });
+    }
+  }
+
+  private static Map<String, SubscriptionRoute> load(
+      DigestSubscriptionRepository digestSubscriptionRepository, UUID userId) {
+    Map<String, SubscriptionRoute> routes = new HashMap<>();
+
+    for (DigestSubscription subscription : digestSubscriptionRepository
+        .getUserSubscriptions(userId)) {
+      routes.putIfAbsent(subscription.getDigestConfiguration().getTag(),
+          new SubscriptionRoute(subscription));
+    }
+
+    return ImmutableMap.copyOf(routes);
+  }
+
+}
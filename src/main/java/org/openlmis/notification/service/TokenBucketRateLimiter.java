@@ -0,0 +1,142 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of requests to a delivery provider (SMTP relay, SMS gateway) with a token
+ * bucket. The bucket is refilled at a fixed rate and holds at most the configured burst of
+ * permits; a caller that takes more permits than are available waits until they are refilled.
+ * The state of the bucket is a single timestamp updated with compare-and-set, so the limiter
+ * does not lock. The number of available permits and the time spent waiting for permits are
+ * published as the notification.rateLimiter.permits and notification.rateLimiter.wait metrics.
+ */
+class TokenBucketRateLimiter implements MeterBinder {
+
+  static final String PERMITS_METRIC = "notification.rateLimiter.permits";
+  static final String WAIT_METRIC = "notification.rateLimiter.wait";
+
+  private final String provider;
+  private final long interval;
+  private final long capacity;
+  private final Ticker ticker;
+
+  // the time at which the bucket was (or will be) empty; tokens accumulate from this point
+  private final AtomicLong emptyAt;
+
+  private volatile Timer waitTimer;
+
+  /**
+   * Creates a new instance. The limiter is disabled if the rate is not positive.
+   */
+  TokenBucketRateLimiter(String provider, double permitsPerSecond, int burst) {
+    this(provider, permitsPerSecond, burst, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  TokenBucketRateLimiter(String provider, double permitsPerSecond, int burst, Ticker ticker) {
+    this.provider = provider;
+    this.interval = permitsPerSecond > 0
+        ? Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1)
+        : 0;
+    this.capacity = interval * Math.max(burst, 1);
+    this.ticker = ticker;
+    this.emptyAt = new AtomicLong(ticker.read() - capacity);
+  }
+
+  boolean isEnabled() {
+    return interval > 0;
+  }
+
+  /**
+   * Takes the given number of permits, waiting until they are available.
+   */
+  void acquire(int permits) {
+    long wait = reserve(permits);
+
+    if (wait > 0) {
+      Uninterruptibles.sleepUninterruptibly(wait, TimeUnit.NANOSECONDS);
+    }
+
+    Timer timer = waitTimer;
+
+    if (null != timer) {
+      timer.record(wait, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Takes the given number of permits and returns how long (in nanoseconds) the caller has to
+   * wait before they are available.
+   */
+  long reserve(int permits) {
+    if (!isEnabled()) {
+      return 0;
+    }
+
+    long cost = interval * permits;
+
+    while (true) {
+      long now = ticker.read();
+      long current = emptyAt.get();
+      // a bucket can't hold more than the burst, so older tokens are dropped
+      long next = Math.max(current, now - capacity) + cost;
+
+      if (emptyAt.compareAndSet(current, next)) {
+        return Math.max(next - now, 0);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of permits that can be taken without waiting.
+   */
+  double getAvailablePermits() {
+    if (!isEnabled()) {
+      return Double.NaN;
+    }
+
+    long now = ticker.read();
+    long tokens = now - Math.max(emptyAt.get(), now - capacity);
+
+    return Math.max(tokens, 0) / (double) interval;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge
+        .builder(PERMITS_METRIC, this, TokenBucketRateLimiter::getAvailablePermits)
+        .description("The number of permits that can be taken without waiting")
+        .tag("provider", provider)
+        .register(registry);
+
+    waitTimer = Timer
+        .builder(WAIT_METRIC)
+        .description("The time spent waiting for permits")
+        .tag("provider", provider)
+        .register(registry);
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.util.UUID;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.notification.domain.UserContactDetails;
+
+/**
+ * An immutable copy of user contact details. It is resolved once when a notification enters the
+ * sending flow and it is passed in a message header to all endpoints that need it, so they don't
+ * have to retrieve contact details from the database again.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class UserContactDetailsSnapshot {
+
+  private final UUID referenceDataUserId;
+  private final String phoneNumber;
+  private final boolean allowNotify;
+  private final String emailAddress;
+  private final boolean emailAddressVerified;
+
+  /**
+   * Creates a copy of the given user contact details.
+   */
+  public UserContactDetailsSnapshot(UserContactDetails contactDetails) {
+    this.referenceDataUserId = contactDetails.getReferenceDataUserId();
+    this.phoneNumber = contactDetails.getPhoneNumber();
+    this.allowNotify = contactDetails.isAllowNotify();
+    this.emailAddress = contactDetails.getEmailAddress();
+    this.emailAddressVerified = contactDetails.isEmailAddressVerified();
+  }
+
+  public boolean hasEmailAddress() {
+    return isNotBlank(emailAddress);
+  }
+
+}
@@ -17,11 +17,21 @@ package org.openlmis.notification.service.referencedata;
 
 import static org.openlmis.notification.service.request.RequestHelper.createUri;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import org.openlmis.notification.service.BaseCommunicationService;
 import org.openlmis.notification.service.request.RequestParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -34,13 +44,85 @@ public abstract class BaseReferenceDataService<T> extends BaseCommunicationServi
   @Value("${referencedata.url}")
   private String referenceDataUrl;
 
+  @Value("${referencedata.cache.maximumSize}")
+  private long cacheMaximumSize;
+
+  @Value("${referencedata.cache.timeToLive}")
+  private long cacheTimeToLive;
+
+  @Value("${referencedata.cache.notFoundTimeToLive}")
+  private long cacheNotFoundTimeToLive;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private Cache<UUID, CachedResource<T>> cache;
+
+  /**
+   * Creates a cache for objects returned by the {@link #findOne(UUID)} method if the service
+   * has a cache name. The hit, miss and eviction counts of the cache are published as the cache.*
+   * metrics tagged with the cache name.
+   */
+  @PostConstruct
+  public void initCache() {
+    String cacheName = getCacheName();
+
+    if (null == cacheName || cacheMaximumSize <= 0 || cacheTimeToLive <= 0) {
+      return;
+    }
+
+    cache = CacheBuilder
+        .newBuilder()
+        .maximumSize(cacheMaximumSize)
+        .expireAfterWrite(cacheTimeToLive, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+
+    if (null != meterRegistry) {
+      GuavaCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    }
+  }
+
   /**
-   * Return one object from Reference data service.
+   * Return one object from Reference data service. If the service has a cache, the object is
+   * returned from the cache; objects that do not exist are also cached, but for a shorter time.
    *
    * @param id UUID of requesting object.
    * @return Requesting reference data object.
    */
   public T findOne(UUID id) {
+    if (null == cache) {
+      return retrieveOne(id);
+    }
+
+    CachedResource<T> cached = getCached(id);
+
+    if (cached.isExpired()) {
+      // only objects that do not exist are cached for a shorter time than the cache TTL
+      cache.asMap().remove(id, cached);
+      cached = getCached(id);
+    }
+
+    return cached.resource;
+  }
+
+  private CachedResource<T> getCached(UUID id) {
+    try {
+      return cache.get(id, () -> {
+        T resource = retrieveOne(id);
+        long expiresAt = null == resource
+            ? System.currentTimeMillis() + cacheNotFoundTimeToLive
+            : Long.MAX_VALUE;
+
+        return new CachedResource<>(resource, expiresAt);
+      });
+    } catch (ExecutionException | UncheckedExecutionException exp) {
+      Throwables.throwIfUnchecked(exp.getCause());
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  private T retrieveOne(UUID id) {
     String url = getServiceUrl() + getUrl() + id;
 
     try {
@@ -76,4 +158,26 @@ public abstract class BaseReferenceDataService<T> extends BaseCommunicationServi
   protected abstract Class<T> getResultClass();
 
   protected abstract Class<T[]> getArrayResultClass();
+
+  /**
+   * Returns the name of the cache for objects returned by the {@link #findOne(UUID)} method.
+   * By default objects are not cached.
+   */
+  protected String getCacheName() {
+    return null;
+  }
+
+  private static final class CachedResource<T> {
+    private final T resource;
+    private final long expiresAt;
+
+    private CachedResource(T resource, long expiresAt) {
+      this.resource = resource;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
 }
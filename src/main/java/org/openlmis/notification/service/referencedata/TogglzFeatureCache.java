@@ -0,0 +1,156 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service.referencedata;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the state of Togglz features retrieved from the referencedata service. The state is loaded
+ * in the background when the application is ready and refreshed in the background after it gets
+ * older than the TTL, so callers never wait for the referencedata service. If the state can't be
+ * refreshed, the last known state is used until the next successful refresh. Until the state has
+ * been loaded for the first time, callers get an exception instead of a guessed value.
+ */
+@Component
+public class TogglzFeatureCache implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TogglzFeatureCache.class);
+
+  private final TogglzReferenceDataService togglzReferenceDataService;
+  private final long timeToLive;
+  private final Executor executor;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  private volatile Map<String, Boolean> features;
+  private volatile long refreshedAt;
+
+  /**
+   * Creates a new instance of the cache that refreshes the state of features in a single
+   * background thread.
+   */
+  @Autowired
+  public TogglzFeatureCache(TogglzReferenceDataService togglzReferenceDataService,
+      @Value("${referencedata.togglz.cacheTimeToLive}") long timeToLive) {
+    this(togglzReferenceDataService, timeToLive, createExecutor());
+  }
+
+  @VisibleForTesting
+  TogglzFeatureCache(TogglzReferenceDataService togglzReferenceDataService, long timeToLive,
+      Executor executor) {
+    this.togglzReferenceDataService = togglzReferenceDataService;
+    this.timeToLive = timeToLive;
+    this.executor = executor;
+  }
+
+  /**
+   * Loads the state of features in the background once the application is ready.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    scheduleRefresh();
+  }
+
+  /**
+   * Checks if the feature with the given name is enabled. The cached state is returned and, if it
+   * is older than the TTL, a background refresh is scheduled. Unknown features are treated as
+   * disabled.
+   *
+   * @throws IllegalStateException if the state of features has not been loaded yet; a new
+   *     attempt to load it is scheduled.
+   */
+  public boolean isFeatureActive(String name) {
+    Map<String, Boolean> current = features;
+
+    if (null == current) {
+      scheduleRefresh();
+      throw new IllegalStateException("The state of Togglz features has not been loaded yet");
+    }
+
+    if (System.currentTimeMillis() - refreshedAt >= timeToLive) {
+      scheduleRefresh();
+    }
+
+    return current.getOrDefault(name, false);
+  }
+
+  @Override
+  public void destroy() {
+    if (executor instanceof ThreadPoolTaskExecutor) {
+      ((ThreadPoolTaskExecutor) executor).shutdown();
+    }
+  }
+
+  private void scheduleRefresh() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          refresh();
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    } catch (TaskRejectedException exp) {
+      refreshing.set(false);
+      LOGGER.warn("Can't schedule a refresh of Togglz features", exp);
+    }
+  }
+
+  private void refresh() {
+    try {
+      features = Collections.unmodifiableMap(togglzReferenceDataService
+          .findAll()
+          .stream()
+          .collect(Collectors.toMap(TogglzFeatureDto::getName, TogglzFeatureDto::isEnabled,
+              (left, right) -> right)));
+    } catch (RuntimeException exp) {
+      LOGGER.warn("Can't refresh Togglz features, the last known state will be used", exp);
+    }
+
+    // a failed refresh is not repeated before the TTL passes, unless nothing has been loaded
+    refreshedAt = System.currentTimeMillis();
+  }
+
+  private static ThreadPoolTaskExecutor createExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(1);
+    executor.setThreadNamePrefix("togglz-feature-cache-");
+    executor.initialize();
+
+    return executor;
+  }
+
+}
@@ -39,6 +39,11 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
     return UserDto[].class;
   }
 
+  @Override
+  protected String getCacheName() {
+    return "referencedata.users";
+  }
+
   /**
    * Check if user has a right with certain criteria.
    *
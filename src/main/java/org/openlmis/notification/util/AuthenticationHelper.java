@@ -17,7 +17,9 @@ package org.openlmis.notification.util;
 
 import static org.openlmis.notification.i18n.MessageKeys.USER_NOT_FOUND;
 
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.openlmis.notification.service.referencedata.RightDto;
 import org.openlmis.notification.service.referencedata.RightReferenceDataService;
 import org.openlmis.notification.service.referencedata.UserDto;
@@ -36,6 +38,9 @@ public class AuthenticationHelper {
   @Autowired
   private RightReferenceDataService rightReferenceDataService;
 
+  // rights are predefined in the referencedata service, so their ids do not change
+  private final Map<String, RightDto> rights = new ConcurrentHashMap<>();
+
   /**
    * Method returns current user based on Spring context
    * and fetches his data from reference-data service.
@@ -61,19 +66,28 @@ public class AuthenticationHelper {
   }
 
   /**
-   * Method returns a correct right and fetches his data from reference-data service.
+   * Method returns a correct right and fetches his data from reference-data service. A right is
+   * retrieved only once and then it is kept in memory.
    *
    * @param name right name
    * @return RightDto entity of right.
    * @throws AuthenticationException if right cannot be found.
    */
   public RightDto getRight(String name) {
-    RightDto right = rightReferenceDataService.findRight(name);
+    RightDto right = rights.get(name);
+
+    if (null != right) {
+      return right;
+    }
+
+    right = rightReferenceDataService.findRight(name);
 
     if (null == right) {
       throw new AuthenticationException("Right with name \"" + name + "\" not found");
     }
 
+    rights.put(name, right);
+
     return right;
   }
 }
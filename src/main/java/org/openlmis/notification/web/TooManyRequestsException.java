@@ -0,0 +1,34 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.web;
+
+import lombok.Getter;
+import org.openlmis.notification.service.NotificationException;
+
+/**
+ * Exception for indicating that the service can't accept the request at the moment. This should
+ * result in a TOO MANY REQUESTS api response with the Retry-After header.
+ */
+@Getter
+public class TooManyRequestsException extends NotificationException {
+
+  private final long retryAfter;
+
+  public TooManyRequestsException(long retryAfter, String messageKey, String... params) {
+    super(messageKey, params);
+    this.retryAfter = retryAfter;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.web.deadletter;
+
+import static org.openlmis.notification.web.deadletter.DeadLetterNotificationController.RESOURCE_URL;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.repository.DeadLetterNotificationRepository;
+import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.service.PendingNotificationService;
+import org.openlmis.notification.service.PermissionService;
+import org.openlmis.notification.util.Pagination;
+import org.openlmis.notification.web.BaseController;
+import org.slf4j.profiler.Profiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@Transactional
+@RestController
+@RequestMapping(RESOURCE_URL)
+public class DeadLetterNotificationController extends BaseController {
+
+  public static final String RESOURCE_URL = API_PREFIX + "/deadLetterNotifications";
+
+  @Autowired
+  private DeadLetterNotificationRepository deadLetterNotificationRepository;
+
+  @Autowired
+  private PendingNotificationService pendingNotificationService;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  /**
+   * Gets a page of notifications that could not be sent.
+   */
+  @GetMapping
+  public Page<DeadLetterNotificationDto> getDeadLetterNotifications(Pageable pageable) {
+    Profiler profiler = getProfiler("GET_DEAD_LETTER_NOTIFICATIONS", pageable);
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.canManageDeadLetterNotifications();
+
+    profiler.start("CALL_DB");
+    Page<DeadLetterNotification> page = deadLetterNotificationRepository.findAll(pageable);
+
+    profiler.start("CONVERT_TO_DTO");
+    List<DeadLetterNotificationDto> content = page
+        .getContent()
+        .stream()
+        .map(DeadLetterNotificationDto::newInstance)
+        .collect(Collectors.toList());
+
+    profiler.start("CREATE_PAGE");
+    Page<DeadLetterNotificationDto> pageDto = Pagination
+        .getPage(content, pageable, page.getTotalElements());
+
+    return stopProfilerAndReturnValue(profiler, pageDto);
+  }
+
+  /**
+   * Adds all notifications that could not be sent back to the sending queue.
+   */
+  @PostMapping("/requeue")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void requeueDeadLetterNotifications() {
+    Profiler profiler = getProfiler("REQUEUE_DEAD_LETTER_NOTIFICATIONS");
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.canManageDeadLetterNotifications();
+
+    profiler.start("REQUEUE");
+    pendingNotificationService.requeueAll();
+
+    stopProfilerAndReturnValue(profiler, null);
+  }
+
+  /**
+   * Adds the given notification back to the sending queue. If the channel is not given, the
+   * notification is requeued for all channels that failed.
+   */
+  @PostMapping("/{notificationId}/requeue")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void requeueDeadLetterNotification(@PathVariable("notificationId") UUID notificationId,
+      @RequestParam(value = "channel", required = false) NotificationChannel channel) {
+    Profiler profiler = getProfiler("REQUEUE_DEAD_LETTER_NOTIFICATION", notificationId, channel);
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.canManageDeadLetterNotifications();
+
+    profiler.start("REQUEUE");
+    pendingNotificationService.requeue(notificationId, channel);
+
+    stopProfilerAndReturnValue(profiler, null);
+  }
+
+}
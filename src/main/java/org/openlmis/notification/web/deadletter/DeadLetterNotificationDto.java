@@ -0,0 +1,51 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.web.deadletter;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.service.NotificationChannel;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public final class DeadLetterNotificationDto implements DeadLetterNotification.Exporter {
+  private UUID notificationId;
+  private NotificationChannel channel;
+  private ZonedDateTime createdDate;
+  private int attemptCount;
+  private ZonedDateTime deadLetteredDate;
+
+  /**
+   * Creates new instance based on domain object.
+   */
+  public static DeadLetterNotificationDto newInstance(DeadLetterNotification domain) {
+    DeadLetterNotificationDto dto = new DeadLetterNotificationDto();
+    domain.export(dto);
+
+    return dto;
+  }
+}
@@ -23,6 +23,8 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import org.openlmis.notification.domain.DigestConfiguration;
 import org.openlmis.notification.repository.DigestConfigurationRepository;
+import org.openlmis.notification.service.DigestConfigurationRegistry;
+import org.openlmis.notification.service.PermissionService;
 import org.openlmis.notification.util.Pagination;
 import org.openlmis.notification.web.BaseController;
 import org.openlmis.notification.web.NotFoundException;
@@ -30,10 +32,13 @@ import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 @Transactional
@@ -46,6 +51,12 @@ public class DigestConfigurationController extends BaseController {
   @Autowired
   private DigestConfigurationRepository digestConfigurationRepository;
 
+  @Autowired
+  private DigestConfigurationRegistry digestConfigurationRegistry;
+
+  @Autowired
+  private PermissionService permissionService;
+
   /**
    * Gets a page of {@link DigestConfigurationDto}.
    */
@@ -91,4 +102,22 @@ public class DigestConfigurationController extends BaseController {
     return stopProfilerAndReturnValue(profiler, dto);
   }
 
+  /**
+   * Loads digest configurations into memory again. It should be called after the
+   * digest_configurations table has been changed outside of database migrations.
+   */
+  @PostMapping("/reload")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void reloadDigestConfigurations() {
+    Profiler profiler = getProfiler("RELOAD_DIGEST_CONFIGURATIONS");
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.canManageDigestConfigurations();
+
+    profiler.start("RELOAD");
+    digestConfigurationRegistry.reload();
+
+    stopProfilerAndReturnValue(profiler, null);
+  }
+
 }
@@ -24,13 +24,16 @@ import static org.openlmis.notification.i18n.MessageKeys.ERROR_VERIFICATION_EMAI
 import java.util.HashMap;
 import java.util.Map;
 import javax.persistence.PersistenceException;
+import javax.servlet.http.HttpServletResponse;
 import org.hibernate.exception.ConstraintViolationException;
 import org.openlmis.notification.i18n.Message;
 import org.openlmis.notification.service.ServerException;
 import org.openlmis.notification.web.MissingPermissionException;
 import org.openlmis.notification.web.NotFoundException;
+import org.openlmis.notification.web.TooManyRequestsException;
 import org.openlmis.notification.web.ValidationException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -95,6 +98,21 @@ public class WebErrorHandling extends AbstractErrorHandling {
     return getLocalizedMessage(ex.asMessage());
   }
 
+  /**
+   * Handles the {@link TooManyRequestsException} which signals that the request should be sent
+   * again later.
+   *
+   * @return the localized message
+   */
+  @ExceptionHandler(TooManyRequestsException.class)
+  @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+  @ResponseBody
+  public Message.LocalizedMessage handleTooManyRequestsException(TooManyRequestsException ex,
+      HttpServletResponse response) {
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()));
+    return getLocalizedMessage(ex.asMessage());
+  }
+
   @ExceptionHandler(NotFoundException.class)
   @ResponseStatus(HttpStatus.NOT_FOUND)
   @ResponseBody
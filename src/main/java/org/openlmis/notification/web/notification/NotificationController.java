@@ -28,6 +28,8 @@ import org.openlmis.notification.domain.UserContactDetails;
 import org.openlmis.notification.repository.NotificationRepository;
 import org.openlmis.notification.repository.PendingNotificationRepository;
 import org.openlmis.notification.repository.UserContactDetailsRepository;
+import org.openlmis.notification.service.PendingNotificationBacklog;
+import org.openlmis.notification.service.PendingNotificationDispatcher;
 import org.openlmis.notification.service.PermissionService;
 import org.openlmis.notification.service.referencedata.UserDto;
 import org.openlmis.notification.service.referencedata.UserReferenceDataService;
@@ -41,6 +43,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
@@ -79,18 +82,27 @@ public class NotificationController {
   @Autowired
   private PendingNotificationRepository pendingNotificationRepository;
 
+  @Autowired
+  private PendingNotificationDispatcher pendingNotificationDispatcher;
+
+  @Autowired
+  private PendingNotificationBacklog pendingNotificationBacklog;
+
   @InitBinder
   private void initBinder(WebDataBinder binder) {
     binder.setValidator(notificationValidator);
   }
 
   /**
-   * Send an email notification.
+   * Send an email notification. The notification is added to the sending queue and it is sent
+   * right after the transaction has been committed. If there are too many notifications in the
+   * sending queue, a notification that is not important is rejected.
    *
    * @param notificationDto details of the message
    */
   @PostMapping("/notifications")
   @ResponseStatus(HttpStatus.OK)
+  @Transactional
   public void sendNotification(@RequestBody @Validated NotificationDto notificationDto,
       BindingResult bindingResult) {
     XLOGGER.entry(notificationDto);
@@ -105,6 +117,9 @@ public class NotificationController {
       throw new ValidationException(fieldError.getDefaultMessage(), fieldError.getField());
     }
 
+    profiler.start("CHECK_BACKLOG");
+    pendingNotificationBacklog.admit(notificationDto.getImportant());
+
     profiler.start("FIND_USER_CONTACT_DETAILS_BY_ID");
     UserContactDetails contactDetails = userContactDetailsRepository
         .findById(notificationDto.getUserId())
@@ -130,6 +145,10 @@ public class NotificationController {
         .collect(Collectors.toSet());
 
     pendingNotificationRepository.saveAll(pendingNotifications);
+    pendingNotificationBacklog.added(pendingNotifications.size());
+
+    profiler.start("DISPATCH_AFTER_COMMIT");
+    pendingNotificationDispatcher.dispatchAfterCommit(notification, contactDetails);
 
     profiler.stop().log();
     XLOGGER.exit();
@@ -35,6 +35,7 @@ import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.service.DigestionService;
 import org.openlmis.notification.service.PermissionService;
+import org.openlmis.notification.service.SubscriptionRouteCache;
 import org.openlmis.notification.web.BaseController;
 import org.openlmis.notification.web.NotFoundException;
 import org.openlmis.notification.web.ValidationException;
@@ -71,6 +72,9 @@ public class DigestSubscriptionController extends BaseController {
   @Autowired
   private DigestionService digestionService;
 
+  @Autowired
+  private SubscriptionRouteCache subscriptionRouteCache;
+
   @Value("${service.url}")
   private String serviceUrl;
 
@@ -136,6 +140,9 @@ public class DigestSubscriptionController extends BaseController {
     profiler.start("STOP_EXISTING_MESSAGE_SOURCES");
     digestionService.dropExistingPollingAdapters(userId);
 
+    profiler.start("INVALIDATE_USER_ROUTES");
+    subscriptionRouteCache.invalidate(userId);
+
     List<DigestSubscriptionDto> subscriptionDtos = toDto(digestSubscriptions, profiler);
     return stopProfilerAndReturnValue(profiler, subscriptionDtos);
   }
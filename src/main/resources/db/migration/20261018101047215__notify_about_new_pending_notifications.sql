@@ -0,0 +1,16 @@
+-- WHEN COMMITTING OR REVIEWING THIS FILE: Make sure that the timestamp in the file name (that serves as a version) is the latest timestamp, and that no new migration have been added in the meanwhile.
+-- Adding migrations out of order may cause this migration to never execute or behave in an unexpected way.
+-- Migrations should NOT BE EDITED. Add a new migration to apply changes.
+
+CREATE OR REPLACE FUNCTION notify_pending_notifications()
+  RETURNS trigger AS $$
+BEGIN
+  PERFORM pg_notify('pending_notifications', '');
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER pending_notifications_notify_trigger
+  AFTER INSERT ON pending_notifications
+  FOR EACH STATEMENT
+  EXECUTE PROCEDURE notify_pending_notifications();
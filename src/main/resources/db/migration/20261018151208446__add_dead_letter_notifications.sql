@@ -0,0 +1,21 @@
+-- WHEN COMMITTING OR REVIEWING THIS FILE: Make sure that the timestamp in the file name (that serves as a version) is the latest timestamp, and that no new migration have been added in the meanwhile.
+-- Adding migrations out of order may cause this migration to never execute or behave in an unexpected way.
+-- Migrations should NOT BE EDITED. Add a new migration to apply changes.
+
+ALTER TABLE pending_notifications ADD COLUMN attemptCount INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE dead_letter_notifications (
+  notificationId UUID NOT NULL,
+  channel VARCHAR(255) NOT NULL,
+  createdDate timestamptz NOT NULL,
+  attemptCount INTEGER NOT NULL,
+  deadLetteredDate timestamptz NOT NULL,
+  CONSTRAINT pKey_dead_letter_notifications
+    PRIMARY KEY (notificationId, channel),
+  CONSTRAINT fKey_dead_letter_notifications_notifications
+    FOREIGN KEY (notificationId)
+    REFERENCES notifications(id)
+);
+
+CREATE INDEX dead_letter_notifications_deadlettereddate_idx
+  ON dead_letter_notifications (deadLetteredDate);
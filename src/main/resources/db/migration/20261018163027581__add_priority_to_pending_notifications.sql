@@ -0,0 +1,17 @@
+-- WHEN COMMITTING OR REVIEWING THIS FILE: Make sure that the timestamp in the file name (that serves as a version) is the latest timestamp, and that no new migration have been added in the meanwhile.
+-- Adding migrations out of order may cause this migration to never execute or behave in an unexpected way.
+-- Migrations should NOT BE EDITED. Add a new migration to apply changes.
+
+ALTER TABLE pending_notifications
+  ADD COLUMN priority INTEGER NOT NULL DEFAULT 0;
+
+UPDATE pending_notifications AS p
+  SET priority = 1
+  FROM notifications AS n
+  WHERE n.id = p.notificationId
+    AND n.important = TRUE;
+
+DROP INDEX pending_notifications_createddate_idx;
+
+CREATE INDEX pending_notifications_priority_createddate_idx
+  ON pending_notifications (priority, createdDate);
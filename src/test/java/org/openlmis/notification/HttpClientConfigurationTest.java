@@ -0,0 +1,80 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+public class HttpClientConfigurationTest {
+
+  private static final int MAX_CONNECTIONS = 50;
+  private static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+
+  private HttpClientConfiguration configuration = new HttpClientConfiguration();
+
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient httpClient;
+
+  @Before
+  public void setUp() {
+    connectionManager = configuration
+        .httpClientConnectionManager(MAX_CONNECTIONS, MAX_CONNECTIONS_PER_ROUTE);
+    httpClient = configuration.httpClient(connectionManager, 1000, 1000, 1000, 30000);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    httpClient.close();
+  }
+
+  @Test
+  public void shouldLimitConnections() {
+    assertThat(connectionManager.getMaxTotal()).isEqualTo(MAX_CONNECTIONS);
+    assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(MAX_CONNECTIONS_PER_ROUTE);
+  }
+
+  @Test
+  public void shouldCreateRequestFactoryWithGivenClient() {
+    ClientHttpRequestFactory requestFactory = configuration.clientHttpRequestFactory(httpClient);
+
+    assertThat(requestFactory).isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+    assertThat(((HttpComponentsClientHttpRequestFactory) requestFactory).getHttpClient())
+        .isSameAs(httpClient);
+  }
+
+  @Test
+  public void shouldPublishConnectionPoolMetrics() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    configuration.httpClientConnectionPoolMetrics(connectionManager).bindTo(registry);
+
+    assertThat(registry
+        .get("httpcomponents.httpclient.pool.total.max")
+        .tag("httpclient", HttpClientConfiguration.HTTP_CLIENT_NAME)
+        .gauge()
+        .value())
+        .isEqualTo(MAX_CONNECTIONS);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import nl.jqno.equalsverifier.EqualsVerifier;
+import org.junit.Test;
+import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
+import org.openlmis.notification.testutils.ToStringTestUtils;
+import org.openlmis.notification.util.NotificationDataBuilder;
+
+public class DeadLetterNotificationTest {
+
+  private PendingNotification pending = new PendingNotificationDataBuilder()
+      .withChannel(NotificationChannel.EMAIL)
+      .build();
+
+  @Test
+  public void equalsContract() {
+    Notification left = new NotificationDataBuilder().buildAsNew();
+    Notification right = new NotificationDataBuilder().build();
+
+    EqualsVerifier
+        .forClass(DeadLetterNotification.class)
+        .withPrefabValues(Notification.class, left, right)
+        .withOnlyTheseFields("id")
+        .verify();
+  }
+
+  @Test
+  public void shouldImplementToString() {
+    ToStringTestUtils.verify(DeadLetterNotification.class, new DeadLetterNotification(),
+        "notification");
+  }
+
+  @Test
+  public void shouldCreateInstanceBasedOnPendingNotification() {
+    // given
+    ZonedDateTime now = ZonedDateTime.now();
+    pending.failed(now, Duration.ZERO);
+
+    // when
+    DeadLetterNotification deadLetter = new DeadLetterNotification(pending, now);
+
+    // then
+    assertThat(deadLetter.getNotificationId()).isEqualTo(pending.getNotificationId());
+    assertThat(deadLetter.getChannel()).isEqualTo(pending.getChannel());
+    assertThat(deadLetter.getNotification()).isEqualTo(pending.getNotification());
+    assertThat(deadLetter.getCreatedDate()).isEqualTo(pending.getCreatedDate());
+    assertThat(deadLetter.getAttemptCount()).isEqualTo(1);
+    assertThat(deadLetter.getDeadLetteredDate()).isEqualTo(now);
+  }
+
+  @Test
+  public void shouldCreatePendingNotificationWhenRequeued() {
+    // given
+    DeadLetterNotification deadLetter = new DeadLetterNotification(pending, ZonedDateTime.now());
+
+    // when
+    PendingNotification requeued = deadLetter.requeue();
+
+    // then
+    assertThat(requeued.getId()).isEqualTo(pending.getId());
+    assertThat(requeued.getAttemptCount()).isZero();
+    assertThat(requeued.getNextAttemptAt()).isNull();
+  }
+
+}
@@ -15,8 +15,11 @@
 
 package org.openlmis.notification.domain;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.Test;
+import org.openlmis.notification.service.NotificationChannel;
 import org.openlmis.notification.testutils.ToStringTestUtils;
 import org.openlmis.notification.util.NotificationDataBuilder;
 
@@ -39,4 +42,20 @@ public class PendingNotificationTest {
     ToStringTestUtils.verify(PendingNotification.class, new PendingNotification(), "notification");
   }
 
+  @Test
+  public void shouldSetHighPriorityForImportantNotification() {
+    Notification notification = new NotificationDataBuilder().withImportant(true).build();
+
+    assertThat(new PendingNotification(notification, NotificationChannel.EMAIL).getPriority())
+        .isEqualTo(PendingNotification.HIGH_PRIORITY);
+  }
+
+  @Test
+  public void shouldSetNormalPriorityForNotImportantNotification() {
+    Notification notification = new NotificationDataBuilder().withImportant(false).build();
+
+    assertThat(new PendingNotification(notification, NotificationChannel.EMAIL).getPriority())
+        .isEqualTo(PendingNotification.NORMAL_PRIORITY);
+  }
+
 }
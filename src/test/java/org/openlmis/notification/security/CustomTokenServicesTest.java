@@ -16,9 +16,13 @@
 package org.openlmis.notification.security;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Clock;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Before;
@@ -43,15 +47,22 @@ public class CustomTokenServicesTest {
   private static final String CLIENT_CHECK_TOKEN_ENDPOINT_URI = "/oauth/check_token";
   private static final String ACCESS_TOKEN = "access-token-1234";
   private static final int INVALID_TOKEN_RETRY_LIMIT = 3;
+  private static final long CACHE_MAXIMUM_SIZE = 10;
+  private static final long CACHE_TIME_TO_LIVE = 60000;
+  private static final long NOW = 1600000000000L;
 
   @Mock
   private RestTemplate restTemplate;
 
+  @Mock
+  private Clock clock;
+
   private CustomTokenServices customTokenServices;
 
   @Before
   public void setUp() {
-    this.customTokenServices = new CustomTokenServices(INVALID_TOKEN_RETRY_LIMIT);
+    this.customTokenServices = new CustomTokenServices(INVALID_TOKEN_RETRY_LIMIT,
+        CACHE_MAXIMUM_SIZE, CACHE_TIME_TO_LIVE, clock);
     this.customTokenServices.setClientId(CLIENT_ID);
     this.customTokenServices.setClientSecret(CLIENT_SECRET);
     this.customTokenServices.setCheckTokenEndpointUrl(CLIENT_CHECK_TOKEN_ENDPOINT_URI);
@@ -69,6 +80,7 @@ public class CustomTokenServicesTest {
         Matchers.any(Class.class)
     )).thenReturn(response);
     this.customTokenServices.setRestTemplate(restTemplate);
+    when(clock.millis()).thenReturn(NOW);
 
     OAuth2Authentication authentication = this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
     assertNotNull(authentication);
@@ -88,4 +100,90 @@ public class CustomTokenServicesTest {
     this.customTokenServices.setRestTemplate(restTemplate);
     this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
   }
+
+  @Test
+  public void shouldUseCachedResultForTheSameToken() {
+    mockActiveTokenResponse(null);
+    when(clock.millis()).thenReturn(NOW);
+
+    OAuth2Authentication first = this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    OAuth2Authentication second = this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    assertNotNull(second);
+    assertNotSame(first, second);
+    verifyTokenChecked(1);
+  }
+
+  @Test
+  public void shouldCheckTokenAgainAfterCacheTimeToLive() {
+    mockActiveTokenResponse(null);
+    when(clock.millis()).thenReturn(NOW, NOW, NOW + CACHE_TIME_TO_LIVE);
+
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    verifyTokenChecked(2);
+  }
+
+  @Test
+  public void shouldNotCacheResultLongerThanTokenExpiry() {
+    mockActiveTokenResponse(NOW / 1000 + 5);
+    when(clock.millis()).thenReturn(NOW, NOW, NOW + 5000);
+
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    verifyTokenChecked(2);
+  }
+
+  @Test
+  public void shouldCheckTokenAgainAfterEviction() {
+    mockActiveTokenResponse(null);
+    when(clock.millis()).thenReturn(NOW);
+
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    this.customTokenServices.evict(ACCESS_TOKEN);
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    this.customTokenServices.evictAll();
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    verifyTokenChecked(3);
+  }
+
+  @Test
+  public void shouldNotCacheResultsIfCacheIsDisabled() {
+    this.customTokenServices = new CustomTokenServices(INVALID_TOKEN_RETRY_LIMIT,
+        0, CACHE_TIME_TO_LIVE, clock);
+    this.customTokenServices.setCheckTokenEndpointUrl(CLIENT_CHECK_TOKEN_ENDPOINT_URI);
+    mockActiveTokenResponse(null);
+
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    verifyTokenChecked(2);
+  }
+
+  private void mockActiveTokenResponse(Long expiry) {
+    Map<String, Object> responseAttributes = new HashMap<>();
+    responseAttributes.put("active", true);
+    responseAttributes.put("client_id", CLIENT_ID);
+
+    if (null != expiry) {
+      responseAttributes.put("exp", expiry);
+    }
+
+    ResponseEntity<Map> response = new ResponseEntity<>(responseAttributes, HttpStatus.OK);
+
+    when(restTemplate.exchange(
+        anyString(), Matchers.any(HttpMethod.class), Matchers.any(HttpEntity.class),
+        Matchers.any(Class.class)
+    )).thenReturn(response);
+    this.customTokenServices.setRestTemplate(restTemplate);
+  }
+
+  private void verifyTokenChecked(int times) {
+    verify(restTemplate, times(times)).exchange(
+        anyString(), Matchers.any(HttpMethod.class), Matchers.any(HttpEntity.class),
+        Matchers.any(Class.class));
+  }
 }
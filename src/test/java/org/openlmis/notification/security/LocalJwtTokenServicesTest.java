@@ -0,0 +1,131 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+public class LocalJwtTokenServicesTest {
+
+  private static final String CLIENT_ID = "user-client";
+  private static final String OPAQUE_TOKEN = UUID.randomUUID().toString();
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private ResourceServerTokenServices opaqueTokenServices;
+
+  @Mock
+  private OAuth2Authentication opaqueAuthentication;
+
+  private KeyPair keyPair;
+  private LocalJwtTokenServices tokenServices;
+
+  @Before
+  public void setUp() throws Exception {
+    keyPair = generateKeyPair();
+
+    DefaultAccessTokenConverter accessTokenConverter = new DefaultAccessTokenConverter();
+    accessTokenConverter.setUserTokenConverter(new CustomUserAuthenticationConverter());
+
+    tokenServices = new LocalJwtTokenServices(toPem(keyPair), accessTokenConverter,
+        opaqueTokenServices);
+  }
+
+  @Test
+  public void shouldVerifyJwtLocally() {
+    // given
+    UUID userId = UUID.randomUUID();
+    String token = sign(keyPair, userId, expiresIn(60));
+
+    // when
+    OAuth2Authentication authentication = tokenServices.loadAuthentication(token);
+
+    // then
+    assertThat(authentication.getPrincipal()).isEqualTo(userId);
+    assertThat(authentication.getOAuth2Request().getClientId()).isEqualTo(CLIENT_ID);
+    verifyZeroInteractions(opaqueTokenServices);
+  }
+
+  @Test
+  public void shouldPassOpaqueTokensToGivenTokenServices() {
+    // given
+    given(opaqueTokenServices.loadAuthentication(OPAQUE_TOKEN)).willReturn(opaqueAuthentication);
+
+    // when
+    OAuth2Authentication authentication = tokenServices.loadAuthentication(OPAQUE_TOKEN);
+
+    // then
+    assertThat(authentication).isSameAs(opaqueAuthentication);
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void shouldRejectJwtSignedWithOtherKey() throws Exception {
+    tokenServices.loadAuthentication(sign(generateKeyPair(), UUID.randomUUID(), expiresIn(60)));
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void shouldRejectExpiredJwt() {
+    tokenServices.loadAuthentication(sign(keyPair, UUID.randomUUID(), expiresIn(-60)));
+  }
+
+  private static long expiresIn(long seconds) {
+    return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds;
+  }
+
+  private static String sign(KeyPair keyPair, UUID userId, long expiry) {
+    String claims = String.format(
+        "{\"referenceDataUserId\":\"%s\",\"client_id\":\"%s\",\"exp\":%d}",
+        userId, CLIENT_ID, expiry);
+
+    return JwtHelper
+        .encode(claims, new RsaSigner((RSAPrivateKey) keyPair.getPrivate()))
+        .getEncoded();
+  }
+
+  private static KeyPair generateKeyPair() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    return generator.generateKeyPair();
+  }
+
+  private static String toPem(KeyPair keyPair) {
+    return "-----BEGIN PUBLIC KEY-----\n"
+        + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        + "\n-----END PUBLIC KEY-----";
+  }
+}
@@ -16,19 +16,10 @@
 package org.openlmis.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.BDDMockito.given;
 
-import java.util.Optional;
 import java.util.UUID;
-import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.MockitoJUnit;
-import org.mockito.junit.MockitoRule;
 import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
 
 public class AllowNotifyFilterTest {
@@ -36,28 +27,15 @@ public class AllowNotifyFilterTest {
   private static final boolean IMPORTANT = true;
   private static final boolean UNIMPORTANT = false;
 
-  @Rule
-  public MockitoRule mockitoRule = MockitoJUnit.rule();
-
-  @Mock
-  private UserContactDetailsRepository userContactDetailsRepository;
-
-  @InjectMocks
-  private AllowNotifyFilter filter;
+  private AllowNotifyFilter filter = new AllowNotifyFilter();
 
   private UserContactDetails contactDetails = new UserContactDetailsDataBuilder().build();
   private UUID recipient = contactDetails.getId();
 
-  @Before
-  public void setUp() {
-    given(userContactDetailsRepository.findById(contactDetails.getId()))
-        .willReturn(Optional.of(contactDetails));
-  }
-
   @Test
   public void shouldAcceptImportantMessage() {
     // when
-    boolean accepted = filter.accept(recipient, IMPORTANT);
+    boolean accepted = filter.accept(recipient, IMPORTANT, snapshot());
 
     // then
     assertThat(accepted).isTrue();
@@ -69,7 +47,7 @@ public class AllowNotifyFilterTest {
     contactDetails.setAllowNotify(true);
 
     // when
-    boolean accepted = filter.accept(recipient, UNIMPORTANT);
+    boolean accepted = filter.accept(recipient, UNIMPORTANT, snapshot());
 
     // then
     assertThat(accepted).isTrue();
@@ -81,7 +59,7 @@ public class AllowNotifyFilterTest {
     contactDetails.setAllowNotify(false);
 
     // when
-    boolean accepted = filter.accept(recipient, UNIMPORTANT);
+    boolean accepted = filter.accept(recipient, UNIMPORTANT, snapshot());
 
     // then
     assertThat(accepted).isFalse();
@@ -89,14 +67,14 @@ public class AllowNotifyFilterTest {
 
   @Test
   public void shouldDeclineStandardMessageWhenUserDoesNotExist() {
-    // given
-    given(userContactDetailsRepository.findById(contactDetails.getId()))
-        .willReturn(Optional.empty());
-
     // when
-    boolean accepted = filter.accept(recipient, UNIMPORTANT);
+    boolean accepted = filter.accept(recipient, UNIMPORTANT, null);
 
     // then
     assertThat(accepted).isFalse();
   }
+
+  private UserContactDetailsSnapshot snapshot() {
+    return new UserContactDetailsSnapshot(contactDetails);
+  }
 }
@@ -0,0 +1,175 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+
+public class AsyncSmsClientTest {
+
+  private static final String URL = "http://localhost/api/send";
+  private static final int MAX_IN_FLIGHT = 2;
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private CloseableHttpAsyncClient httpClient;
+
+  @Captor
+  private ArgumentCaptor<HttpPost> postCaptor;
+
+  @Captor
+  private ArgumentCaptor<FutureCallback<HttpResponse>> callbackCaptor;
+
+  private AsyncSmsClient client;
+
+  private HttpEntity<SmsRequestDto> request;
+
+  @Before
+  public void setUp() {
+    client = new AsyncSmsClient(httpClient, MAX_IN_FLIGHT, new ObjectMapper(), Runnable::run);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("Authorization", "Token token");
+    request = new HttpEntity<>(
+        new SmsRequestDto("message", Collections.singletonList("tel:12065551234")), headers);
+  }
+
+  @Test
+  public void shouldPostRequestWithoutWaitingForResponse() throws IOException {
+    // when
+    CompletableFuture<Void> future = client.post(URL, request);
+
+    // then
+    assertThat(future).isNotDone();
+    verify(httpClient).execute(postCaptor.capture(), callbackCaptor.capture());
+
+    HttpPost post = postCaptor.getValue();
+    assertThat(post.getURI().toString()).isEqualTo(URL);
+    assertThat(post.getFirstHeader("Authorization").getValue()).isEqualTo("Token token");
+    assertThat(EntityUtils.toString(post.getEntity()))
+        .contains("\"text\":\"message\"")
+        .contains("tel:12065551234");
+  }
+
+  @Test
+  public void shouldCompleteWhenProviderAcceptsRequest() {
+    // given
+    CompletableFuture<Void> future = client.post(URL, request);
+    verify(httpClient).execute(any(HttpPost.class), callbackCaptor.capture());
+
+    // when
+    callbackCaptor.getValue().completed(response(201));
+
+    // then
+    assertThat(future).isCompleted();
+    assertThat(future).isNotCompletedExceptionally();
+  }
+
+  @Test
+  public void shouldFailWhenProviderRejectsRequest() {
+    // given
+    CompletableFuture<Void> future = client.post(URL, request);
+    verify(httpClient).execute(any(HttpPost.class), callbackCaptor.capture());
+
+    // when
+    callbackCaptor.getValue().completed(response(400));
+
+    // then
+    assertThat(future).isCompletedExceptionally();
+  }
+
+  @Test
+  public void shouldFailWhenRequestFails() {
+    // given
+    CompletableFuture<Void> future = client.post(URL, request);
+    verify(httpClient).execute(any(HttpPost.class), callbackCaptor.capture());
+
+    // when
+    callbackCaptor.getValue().failed(new IOException("test"));
+
+    // then
+    assertThat(future)
+        .hasFailedWithThrowableThat()
+        .isInstanceOf(ServerException.class);
+  }
+
+  @Test
+  public void shouldLimitRequestsInFlight() throws Exception {
+    // given
+    client.post(URL, request);
+    client.post(URL, request);
+
+    // when
+    CompletableFuture<Void> blocked = CompletableFuture
+        .runAsync(() -> client.post(URL, request));
+
+    // then
+    try {
+      blocked.get(200, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException exp) {
+      // expected, the third request waits for a free slot
+    }
+    assertThat(blocked).isNotDone();
+
+    verify(httpClient, times(MAX_IN_FLIGHT)).execute(any(HttpPost.class),
+        callbackCaptor.capture());
+    List<FutureCallback<HttpResponse>> callbacks = callbackCaptor.getAllValues();
+    callbacks.get(0).completed(response(201));
+
+    blocked.get(5, TimeUnit.SECONDS);
+    verify(httpClient, times(MAX_IN_FLIGHT + 1)).execute(any(HttpPost.class), any());
+  }
+
+  @Test
+  public void shouldBeDisabledWithoutHttpClient() {
+    assertThat(new AsyncSmsClient(null, MAX_IN_FLIGHT, new ObjectMapper(), Runnable::run)
+        .isEnabled()).isFalse();
+    assertThat(client.isEnabled()).isTrue();
+  }
+
+  private HttpResponse response(int statusCode) {
+    return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+  }
+}
@@ -22,13 +22,22 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.notification.service.AuthService.REFRESH_RETRY_DELAY;
+import static org.openlmis.notification.service.AuthService.TOKEN_RESPONSE_TYPE;
 
 import com.google.common.collect.ImmutableMap;
 import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,11 +49,16 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AuthServiceTest {
   private static final String TOKEN = UUID.randomUUID().toString();
+  private static final String NEW_TOKEN = UUID.randomUUID().toString();
+  private static final long NOW = 1600000000000L;
+  private static final long REFRESH_BEFORE = 60000;
+  private static final int EXPIRES_IN = 3600;
   private static final String AUTHORIZATION_URL = "http://localhost/auth/oauth/token";
   private static final URI AUTHORIZATION_URI = URI.create(
       AUTHORIZATION_URL + "?grant_type=client_credentials"
@@ -53,28 +67,34 @@ public class AuthServiceTest {
   @Mock
   private RestTemplate restTemplate;
 
+  @Mock
+  private Clock clock;
+
   @Captor
   private ArgumentCaptor<HttpEntity<String>> entityStringCaptor;
 
+  private List<Runnable> scheduledTasks = new ArrayList<>();
+
   private AuthService authService;
 
   @Before
   public void setUp() throws Exception {
-    authService = new AuthService();
+    authService = new AuthService(scheduledTasks::add, clock);
     ReflectionTestUtils.setField(authService, "restTemplate", restTemplate);
 
     ReflectionTestUtils.setField(authService, "clientId", "trusted-client");
     ReflectionTestUtils.setField(authService, "clientSecret", "secret");
     ReflectionTestUtils.setField(authService, "authorizationUrl", AUTHORIZATION_URL);
+    ReflectionTestUtils.setField(authService, "refreshBefore", REFRESH_BEFORE);
   }
 
   @Test
   public void shouldObtainAccessToken() throws Exception {
-    ResponseEntity<Object> response = mock(ResponseEntity.class);
-    Map<String, String> body = ImmutableMap.of("access_token", TOKEN);
+    ResponseEntity<Map<String, Object>> response = mock(ResponseEntity.class);
+    Map<String, Object> body = ImmutableMap.of("access_token", TOKEN);
 
     when(restTemplate.exchange(
-        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(TOKEN_RESPONSE_TYPE)
     )).thenReturn(response);
 
     when(response.getBody()).thenReturn(body);
@@ -83,7 +103,8 @@ public class AuthServiceTest {
     assertThat(token, is(equalTo(TOKEN)));
 
     verify(restTemplate).exchange(
-        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), entityStringCaptor.capture(), eq(Object.class)
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), entityStringCaptor.capture(),
+        eq(TOKEN_RESPONSE_TYPE)
     );
 
     HttpEntity<String> entity = entityStringCaptor.getValue();
@@ -92,4 +113,134 @@ public class AuthServiceTest {
         contains("Basic dHJ1c3RlZC1jbGllbnQ6c2VjcmV0")
     );
   }
+
+  @Test
+  public void shouldReuseAccessTokenUntilItHasToBeRefreshed() {
+    mockTokenResponses(ImmutableMap.of("access_token", TOKEN, "expires_in", EXPIRES_IN));
+    when(clock.millis()).thenReturn(NOW);
+
+    authService.obtainAccessToken();
+    String token = authService.obtainAccessToken();
+
+    assertThat(token, is(equalTo(TOKEN)));
+    assertThat(scheduledTasks.isEmpty(), is(true));
+    verifyTokenRequested(1);
+  }
+
+  @Test
+  public void shouldRefreshAccessTokenInBackgroundBeforeItExpires() {
+    mockTokenResponses(
+        ImmutableMap.of("access_token", TOKEN, "expires_in", EXPIRES_IN),
+        ImmutableMap.of("access_token", NEW_TOKEN, "expires_in", EXPIRES_IN));
+    long refreshAt = NOW + TimeUnit.SECONDS.toMillis(EXPIRES_IN) - REFRESH_BEFORE;
+    when(clock.millis()).thenReturn(NOW, NOW, refreshAt, refreshAt, refreshAt);
+
+    authService.obtainAccessToken();
+
+    // the current token is returned while the new one is requested in the background
+    assertThat(authService.obtainAccessToken(), is(equalTo(TOKEN)));
+    assertThat(scheduledTasks.size(), is(1));
+
+    scheduledTasks.get(0).run();
+
+    assertThat(authService.obtainAccessToken(), is(equalTo(NEW_TOKEN)));
+    verifyTokenRequested(2);
+  }
+
+  @Test
+  public void shouldNotRetryFailedBackgroundRefreshRightAway() {
+    ResponseEntity<Map<String, Object>> response = mock(ResponseEntity.class);
+
+    when(restTemplate.exchange(
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(TOKEN_RESPONSE_TYPE)
+    )).thenReturn(response).thenThrow(new RestClientException("test"));
+    when(response.getBody())
+        .thenReturn(ImmutableMap.of("access_token", TOKEN, "expires_in", EXPIRES_IN));
+    long refreshAt = NOW + TimeUnit.SECONDS.toMillis(EXPIRES_IN) - REFRESH_BEFORE;
+    when(clock.millis()).thenReturn(NOW, NOW, refreshAt);
+
+    authService.obtainAccessToken();
+    authService.obtainAccessToken();
+    authService.obtainAccessToken();
+    assertThat(scheduledTasks.size(), is(1));
+
+    scheduledTasks.get(0).run();
+
+    assertThat(authService.obtainAccessToken(), is(equalTo(TOKEN)));
+    assertThat(scheduledTasks.size(), is(1));
+
+    when(clock.millis()).thenReturn(refreshAt + REFRESH_RETRY_DELAY);
+
+    assertThat(authService.obtainAccessToken(), is(equalTo(TOKEN)));
+    assertThat(scheduledTasks.size(), is(2));
+  }
+
+  @Test
+  public void shouldRequestNewAccessTokenAfterItExpired() {
+    mockTokenResponses(
+        ImmutableMap.of("access_token", TOKEN, "expires_in", EXPIRES_IN),
+        ImmutableMap.of("access_token", NEW_TOKEN, "expires_in", EXPIRES_IN));
+    long expiresAt = NOW + TimeUnit.SECONDS.toMillis(EXPIRES_IN);
+    when(clock.millis()).thenReturn(NOW, NOW, expiresAt, expiresAt);
+
+    authService.obtainAccessToken();
+
+    assertThat(authService.obtainAccessToken(), is(equalTo(NEW_TOKEN)));
+    assertThat(scheduledTasks.isEmpty(), is(true));
+    verifyTokenRequested(2);
+  }
+
+  @Test
+  public void shouldRequestNewAccessTokenAfterCacheWasCleared() {
+    mockTokenResponses(ImmutableMap.of("access_token", TOKEN));
+    when(clock.millis()).thenReturn(NOW);
+
+    authService.obtainAccessToken();
+    authService.clearTokenCache();
+    authService.obtainAccessToken();
+
+    verifyTokenRequested(2);
+  }
+
+  @Test
+  public void shouldCoalesceConcurrentTokenRequests() throws Exception {
+    CountDownLatch requested = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ResponseEntity<Map<String, Object>> response = mock(ResponseEntity.class);
+
+    when(restTemplate.exchange(
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(TOKEN_RESPONSE_TYPE)
+    )).thenAnswer(invocation -> {
+      requested.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      return response;
+    });
+    when(response.getBody()).thenReturn(ImmutableMap.of("access_token", TOKEN));
+    when(clock.millis()).thenReturn(NOW);
+
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(authService::obtainAccessToken);
+    requested.await(10, TimeUnit.SECONDS);
+    CompletableFuture<String> second = CompletableFuture
+        .supplyAsync(authService::obtainAccessToken);
+    release.countDown();
+
+    assertThat(first.get(10, TimeUnit.SECONDS), is(equalTo(TOKEN)));
+    assertThat(second.get(10, TimeUnit.SECONDS), is(equalTo(TOKEN)));
+    verifyTokenRequested(1);
+  }
+
+  private void mockTokenResponses(Map<String, Object> body, Map<String, Object>... next) {
+    ResponseEntity<Map<String, Object>> response = mock(ResponseEntity.class);
+
+    when(restTemplate.exchange(
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(TOKEN_RESPONSE_TYPE)
+    )).thenReturn(response);
+
+    when(response.getBody()).thenReturn(body, next);
+  }
+
+  private void verifyTokenRequested(int times) {
+    verify(restTemplate, times(times)).exchange(
+        eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(TOKEN_RESPONSE_TYPE));
+  }
 }
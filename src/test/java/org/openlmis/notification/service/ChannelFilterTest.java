@@ -17,6 +17,8 @@ package org.openlmis.notification.service;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
@@ -24,7 +26,6 @@ import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.notification.domain.DigestSubscription;
@@ -32,6 +33,7 @@ import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ChannelFilterTest {
@@ -43,8 +45,7 @@ public class ChannelFilterTest {
   @Mock
   private DigestSubscriptionRepository repository;
 
-  @InjectMocks
-  private ChannelFilter channelFilter;
+  private ChannelFilter channelFilter = new ChannelFilter();
 
   private UUID userId;
 
@@ -52,6 +53,9 @@ public class ChannelFilterTest {
   public void setUp() {
     userId = UUID.randomUUID();
 
+    ReflectionTestUtils.setField(channelFilter, "subscriptionRouteCache",
+        new SubscriptionRouteCache(repository, 10, 60000));
+
     DigestSubscription digestSubscriptionForSmsChannel = new DigestSubscriptionDataBuilder()
         .withPreferredChannel(NotificationChannel.SMS)
         .withDigestConfiguration(
@@ -105,4 +109,12 @@ public class ChannelFilterTest {
     assertTrue(channelFilter.accept(userId, NotificationChannel.EMAIL, null));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void acceptShouldRetrieveUserSubscriptionsOnlyOnce() {
+    channelFilter.accept(userId, NotificationChannel.EMAIL, MESSAGE_TAG);
+    channelFilter.accept(userId, NotificationChannel.SMS, MESSAGE_TAG_TWO);
+
+    verify(repository, times(1)).getUserSubscriptions(userId);
+  }
+
+}
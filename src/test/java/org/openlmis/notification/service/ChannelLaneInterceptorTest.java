@@ -0,0 +1,127 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+
+public class ChannelLaneInterceptorTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private AcknowledgmentCallback callback;
+
+  @Mock
+  private MessageChannel channel;
+
+  @Mock
+  private MessageHandler handler;
+
+  private ChannelLaneInterceptor interceptor = new ChannelLaneInterceptor();
+
+  @Test
+  public void shouldDisableAutoAckWhenMessageIsHandedOffToLane() {
+    // when
+    interceptor.preSend(createMessage(), channel);
+
+    // then
+    verify(callback).noAutoAck();
+  }
+
+  @Test
+  public void shouldAcceptMessageIfItHasBeenSent() {
+    // when
+    interceptor.afterMessageHandled(createMessage(), channel, handler, null);
+
+    // then
+    verify(callback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldRequeueMessageIfItCouldNotBeSent() {
+    // when
+    interceptor.afterMessageHandled(createMessage(), channel, handler,
+        new IllegalStateException());
+
+    // then
+    verify(callback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldNotAcknowledgeMessageIfAcknowledgmentWasDeferred() {
+    // given
+    Message<String> message = createMessage();
+    interceptor.beforeHandle(message, channel, handler);
+    ChannelLaneInterceptor.deferAcknowledgment();
+
+    // when
+    interceptor.afterMessageHandled(message, channel, handler, null);
+    interceptor.afterMessageHandled(message, channel, handler, null);
+
+    // then
+    verify(callback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldRequeueMessageIfHandlerFailedAfterDeferringAcknowledgment() {
+    // given
+    ChannelLaneInterceptor.deferAcknowledgment();
+
+    // when
+    interceptor.afterMessageHandled(createMessage(), channel, handler,
+        new IllegalStateException());
+
+    // then
+    verify(callback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldIgnoreMessagesWithoutAcknowledgmentCallback() {
+    // given
+    Message<String> message = MessageBuilder.withPayload("payload").build();
+
+    // when
+    interceptor.preSend(message, channel);
+    interceptor.afterMessageHandled(message, channel, handler, new IllegalStateException());
+
+    // then
+    verify(callback, never()).noAutoAck();
+    verify(callback, never()).acknowledge(any());
+  }
+
+  private Message<String> createMessage() {
+    return MessageBuilder
+        .withPayload("payload")
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, callback)
+        .build();
+  }
+}
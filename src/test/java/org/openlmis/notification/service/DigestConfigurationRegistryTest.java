@@ -0,0 +1,94 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.UUID;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.DigestConfiguration;
+import org.openlmis.notification.repository.DigestConfigurationRepository;
+import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
+
+public class DigestConfigurationRegistryTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private DigestConfigurationRepository digestConfigurationRepository;
+
+  private DigestConfigurationRegistry registry;
+
+  private DigestConfiguration configuration = new DigestConfigurationDataBuilder().build();
+
+  @Before
+  public void setUp() {
+    given(digestConfigurationRepository.findAll())
+        .willReturn(Lists.newArrayList(configuration));
+
+    registry = new DigestConfigurationRegistry(digestConfigurationRepository);
+  }
+
+  @Test
+  public void shouldFindConfigurationByTag() {
+    assertThat(registry.findByTag(configuration.getTag())).isEqualTo(configuration);
+    assertThat(registry.findByTag("unknown-tag")).isNull();
+  }
+
+  @Test
+  public void shouldFindConfigurationById() {
+    assertThat(registry.findById(configuration.getId())).contains(configuration);
+    assertThat(registry.findById(UUID.randomUUID())).isEmpty();
+  }
+
+  @Test
+  public void shouldLoadConfigurationsOnlyOnce() {
+    // when
+    registry.findByTag(configuration.getTag());
+    registry.findById(configuration.getId());
+
+    // then
+    verify(digestConfigurationRepository).findAll();
+  }
+
+  @Test
+  public void shouldReloadConfigurations() {
+    // given
+    registry.findByTag(configuration.getTag());
+
+    DigestConfiguration newConfiguration = new DigestConfigurationDataBuilder().build();
+    given(digestConfigurationRepository.findAll())
+        .willReturn(Lists.newArrayList(newConfiguration));
+
+    // when
+    registry.reload();
+
+    // then
+    assertThat(registry.findByTag(newConfiguration.getTag())).isEqualTo(newConfiguration);
+    assertThat(registry.findByTag(configuration.getTag())).isNull();
+    verify(digestConfigurationRepository, times(2)).findAll();
+  }
+}
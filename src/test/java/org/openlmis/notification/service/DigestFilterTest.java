@@ -19,7 +19,6 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 
 import java.util.UUID;
-import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -29,10 +28,7 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.openlmis.notification.domain.DigestConfiguration;
 import org.openlmis.notification.domain.DigestSubscription;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
-import org.openlmis.notification.repository.DigestSubscriptionRepository;
-import org.openlmis.notification.service.referencedata.TogglzFeatureDto;
-import org.openlmis.notification.service.referencedata.TogglzReferenceDataService;
+import org.openlmis.notification.service.referencedata.TogglzFeatureCache;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
 
@@ -52,13 +48,13 @@ public class DigestFilterTest {
   public MockitoRule mockitoRule = MockitoJUnit.rule();
 
   @Mock
-  private TogglzReferenceDataService togglzReferenceDataService;
+  private TogglzFeatureCache togglzFeatureCache;
 
   @Mock
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
 
   @Mock
-  private DigestSubscriptionRepository digestSubscriptionRepository;
+  private SubscriptionRouteCache subscriptionRouteCache;
 
   @InjectMocks
   private DigestFilter filter = new DigestFilter();
@@ -81,19 +77,17 @@ public class DigestFilterTest {
       .withUseDigest(false)
       .build();
 
-  private TogglzFeatureDto digestFeature =
-      new TogglzFeatureDto(DigestFilter.CONSOLIDATE_NOTIFICATIONS, true, null, null);
-
   @Before
   public void setUp() {
-    given(togglzReferenceDataService.findAll()).willReturn(Lists.newArrayList(digestFeature));
-    given(digestConfigurationRepository.findByTag(CORRECT_TAG)).willReturn(digestConfiguration);
-    given(digestConfigurationRepository.findByTag(CORRECT_NON_DIGEST_TAG))
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(true);
+    given(digestConfigurationRegistry.findByTag(CORRECT_TAG)).willReturn(digestConfiguration);
+    given(digestConfigurationRegistry.findByTag(CORRECT_NON_DIGEST_TAG))
         .willReturn(nonDigestConfiguration);
-    given(digestSubscriptionRepository.findBy(RECIPIENT, digestConfiguration))
-        .willReturn(digestSubscription);
-    given(digestSubscriptionRepository.findBy(RECIPIENT, nonDigestConfiguration))
-        .willReturn(nonDigestSubscription);
+    given(subscriptionRouteCache.find(RECIPIENT, CORRECT_TAG))
+        .willReturn(new SubscriptionRoute(digestSubscription));
+    given(subscriptionRouteCache.find(RECIPIENT, CORRECT_NON_DIGEST_TAG))
+        .willReturn(new SubscriptionRoute(nonDigestSubscription));
   }
 
   @Test
@@ -108,7 +102,8 @@ public class DigestFilterTest {
   @Test
   public void shouldReturnSendNowChannelIfDigestFeatureIsOff() {
     // given
-    digestFeature.setEnabled(false);
+    given(togglzFeatureCache.isFeatureActive(DigestFilter.CONSOLIDATE_NOTIFICATIONS))
+        .willReturn(false);
 
     // when
     String channelName = filter.route(RECIPIENT, UNIMPORTANT, CORRECT_TAG);
@@ -138,9 +133,7 @@ public class DigestFilterTest {
   @Test
   public void shouldReturnSendNowChannelIfUserIsNotSubscribedForTag() {
     // given
-    given(digestSubscriptionRepository
-        .findBy(RECIPIENT, digestConfiguration))
-        .willReturn(null);
+    given(subscriptionRouteCache.find(RECIPIENT, CORRECT_TAG)).willReturn(null);
 
     // when
     String channelName = filter.route(RECIPIENT, UNIMPORTANT, CORRECT_TAG);
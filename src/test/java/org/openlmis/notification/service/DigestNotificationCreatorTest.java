@@ -17,6 +17,7 @@ package org.openlmis.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
 import static org.openlmis.notification.service.NotificationTransformer.CHANNEL_HEADER;
 
@@ -33,10 +34,14 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.openlmis.notification.domain.DigestConfiguration;
 import org.openlmis.notification.domain.PostponeMessage;
+import org.openlmis.notification.domain.UserContactDetails;
 import org.openlmis.notification.i18n.MessageService;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
+import org.openlmis.notification.repository.PostponeMessageRepository;
+import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.PostponeMessageDataBuilder;
+import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.messaging.Message;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -51,11 +56,17 @@ public class DigestNotificationCreatorTest {
   public MockitoRule mockitoRule = MockitoJUnit.rule();
 
   @Mock
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
+
+  @Mock
+  private UserContactDetailsRepository userContactDetailsRepository;
 
   @Mock
   private MessageService messageService;
 
+  @Mock
+  private PostponeMessageRepository postponeMessageRepository;
+
   @InjectMocks
   private DigestNotificationCreator creator;
 
@@ -65,7 +76,8 @@ public class DigestNotificationCreatorTest {
   private List<PostponeMessage> postpones = Lists.newArrayList(
       new PostponeMessageDataBuilder().build(),
       new PostponeMessageDataBuilder().build());
-  private UUID recipient = UUID.randomUUID();
+  private UserContactDetails contactDetails = new UserContactDetailsDataBuilder().build();
+  private UUID recipient = contactDetails.getReferenceDataUserId();
   private UUID configurationId = configuration.getId();
   private NotificationChannel channel = NotificationChannel.EMAIL;
 
@@ -74,8 +86,10 @@ public class DigestNotificationCreatorTest {
 
   @Before
   public void setUp() {
-    given(digestConfigurationRepository.findById(configurationId))
+    given(digestConfigurationRegistry.findById(configurationId))
         .willReturn(Optional.of(configuration));
+    given(userContactDetailsRepository.findById(recipient))
+        .willReturn(Optional.of(contactDetails));
     given(messageService.localize(message)).willReturn(message.localMessage(MSG_TEMPLATE));
 
     ReflectionTestUtils.setField(creator, "serviceUrl", SERVICE_URL);
@@ -84,7 +98,7 @@ public class DigestNotificationCreatorTest {
   @Test
   public void shouldReturnNullIfConfigurationDoesNotExist() {
     // given
-    given(digestConfigurationRepository.findById(configurationId)).willReturn(Optional.empty());
+    given(digestConfigurationRegistry.findById(configurationId)).willReturn(Optional.empty());
 
     // when
     Message message = creator
@@ -108,6 +122,9 @@ public class DigestNotificationCreatorTest {
         .hasFieldOrPropertyWithValue("subject", postpones.get(0).getSubject());
     assertThat(message.getHeaders())
         .containsEntry(RECIPIENT_HEADER, recipient)
-        .containsEntry(CHANNEL_HEADER, channel);
+        .containsEntry(CHANNEL_HEADER, channel)
+        .containsEntry(CONTACT_DETAILS_HEADER, new UserContactDetailsSnapshot(contactDetails));
+    assertThat(StaticMessageHeaderAccessor.getAcknowledgmentCallback(message))
+        .isInstanceOf(PostponeMessageAcknowledgment.class);
   }
 }
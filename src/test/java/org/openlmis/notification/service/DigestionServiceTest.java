@@ -43,8 +43,6 @@ import org.openlmis.notification.domain.DigestConfiguration;
 import org.openlmis.notification.domain.DigestSubscription;
 import org.openlmis.notification.domain.NotificationMessage;
 import org.openlmis.notification.domain.PostponeMessage;
-import org.openlmis.notification.repository.DigestConfigurationRepository;
-import org.openlmis.notification.repository.DigestSubscriptionRepository;
 import org.openlmis.notification.repository.PostponeMessageRepository;
 import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
 import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
@@ -59,10 +57,10 @@ public class DigestionServiceTest {
   public MockitoRule mockitoRule = MockitoJUnit.rule();
 
   @Mock
-  private DigestConfigurationRepository digestConfigurationRepository;
+  private DigestConfigurationRegistry digestConfigurationRegistry;
 
   @Mock
-  private DigestSubscriptionRepository digestSubscriptionRepository;
+  private SubscriptionRouteCache subscriptionRouteCache;
 
   @Mock
   private PostponeMessageRepository postponeMessageRepository;
@@ -88,9 +86,10 @@ public class DigestionServiceTest {
         .given(service)
         .setPollingAdapter(any(), any(), any(), any());
 
-    given(digestConfigurationRepository.findByTag(tag)).willReturn(configuration);
+    given(digestConfigurationRegistry.findByTag(tag)).willReturn(configuration);
 
-    given(digestSubscriptionRepository.findBy(recipient, configuration)).willReturn(subscription);
+    given(subscriptionRouteCache.find(recipient, tag))
+        .willReturn(new SubscriptionRoute(subscription));
   }
 
   @After
@@ -101,19 +100,19 @@ public class DigestionServiceTest {
   @Test
   public void shouldDoNothingIfDigestConfigurationDoesNotExist() {
     // given
-    given(digestConfigurationRepository.findByTag(tag)).willReturn(null);
+    given(digestConfigurationRegistry.findByTag(tag)).willReturn(null);
 
     // when
     service.handleMessage(message, channel, recipient, tag);
 
     // then
-    verifyZeroInteractions(digestSubscriptionRepository, postponeMessageRepository);
+    verifyZeroInteractions(subscriptionRouteCache, postponeMessageRepository);
   }
 
   @Test
   public void shouldDoNothingIfDigestSubscriptionDoesNotExist() {
     // given
-    given(digestSubscriptionRepository.findBy(recipient, configuration)).willReturn(null);
+    given(subscriptionRouteCache.find(recipient, tag)).willReturn(null);
 
     // when
     service.handleMessage(message, channel, recipient, tag);
@@ -137,10 +136,10 @@ public class DigestionServiceTest {
   public void shouldNotSetAnotherAdapterForSameSettings() {
     // given
     DigestConfiguration anotherConfiguration = new DigestConfigurationDataBuilder().build();
-    given(digestConfigurationRepository.findByTag(anotherConfiguration.getTag()))
+    given(digestConfigurationRegistry.findByTag(anotherConfiguration.getTag()))
         .willReturn(anotherConfiguration);
-    given(digestSubscriptionRepository.findBy(recipient, anotherConfiguration))
-        .willReturn(subscription);
+    given(subscriptionRouteCache.find(recipient, anotherConfiguration.getTag()))
+        .willReturn(new SubscriptionRoute(subscription));
 
     // when
     service.handleMessage(message, channel, recipient, tag);
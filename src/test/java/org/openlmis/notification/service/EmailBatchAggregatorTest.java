@@ -0,0 +1,252 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.mail.MailSendException;
+
+public class EmailBatchAggregatorTest {
+
+  private static final int BATCH_SIZE = 2;
+  private static final String TO = "user@example.org";
+  private static final String SUBJECT = "subject";
+  private static final String BODY = "body";
+  private static final UUID RECIPIENT = UUID.randomUUID();
+  private static final UUID OTHER_RECIPIENT = UUID.randomUUID();
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private EmailSender emailSender;
+
+  @Mock
+  private AcknowledgmentCallback firstCallback;
+
+  @Mock
+  private AcknowledgmentCallback secondCallback;
+
+  @Mock
+  private PartitionedExecutorChannel lanes;
+
+  private List<Runnable> laneTasks = Lists.newArrayList();
+
+  private MimeMessage first = new MimeMessage((Session) null);
+  private MimeMessage second = new MimeMessage((Session) null);
+  private MimeMessage third = new MimeMessage((Session) null);
+
+  private EmailBatchAggregator aggregator;
+
+  @Before
+  public void setUp() {
+    given(lanes.getLaneCount()).willReturn(2);
+    given(lanes.getLaneOfKey(RECIPIENT)).willReturn(0);
+    given(lanes.getLaneOfKey(OTHER_RECIPIENT)).willReturn(1);
+    willAnswer(invocation -> laneTasks.add(invocation.getArgument(1)))
+        .given(lanes).execute(anyInt(), any(Runnable.class));
+
+    aggregator = new EmailBatchAggregator(emailSender, lanes, BATCH_SIZE, null);
+
+    given(emailSender.createMail(TO, SUBJECT, BODY)).willReturn(first, second, third);
+    given(emailSender.sendMails(anyList())).willReturn(Collections.emptyMap());
+  }
+
+  @Test
+  public void shouldSendBatchWhenItIsFull() {
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+
+    // then
+    verify(emailSender).sendMails(Arrays.asList(first, second));
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldSendFullBatchOnCallingThread() {
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+
+    // then
+    verify(emailSender).sendMails(Arrays.asList(first, second));
+    assertThat(laneTasks).isEmpty();
+  }
+
+  @Test
+  public void shouldKeepSeparateBatchForEachLane() {
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(OTHER_RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+
+    // then
+    verify(emailSender, never()).sendMails(anyList());
+
+    aggregator.flush();
+    verify(lanes).execute(0, laneTasks.get(0));
+    verify(lanes).execute(1, laneTasks.get(1));
+  }
+
+  @Test
+  public void shouldNotSendMoreMessagesThanBatchSizeAtOnce() {
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, null);
+    aggregator.flush();
+    runLaneTasks();
+
+    // then
+    verify(emailSender).sendMails(Arrays.asList(first, second));
+    verify(emailSender).sendMails(Collections.singletonList(third));
+  }
+
+  @Test
+  public void shouldHandIncompleteBatchOffToItsLaneOnFlush() {
+    // given
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+
+    // when
+    aggregator.flush();
+
+    // then
+    assertThat(laneTasks).hasSize(1);
+    verify(lanes).execute(0, laneTasks.get(0));
+    verify(emailSender, never()).sendMails(anyList());
+  }
+
+  @Test
+  public void shouldKeepBatchUntilNextFlushIfLaneIsFull() {
+    // given
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    willThrow(new TaskRejectedException("test"))
+        .given(lanes).execute(anyInt(), any(Runnable.class));
+
+    // when
+    aggregator.flush();
+
+    // then
+    verify(emailSender, never()).sendMails(anyList());
+    verifyZeroInteractions(firstCallback);
+
+    aggregator.destroy();
+    verify(emailSender).sendMails(Collections.singletonList(first));
+  }
+
+  @Test
+  public void shouldNotSendBatchBeforeItIsFull() {
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+
+    // then
+    verify(emailSender, never()).sendMails(anyList());
+    verifyZeroInteractions(firstCallback);
+  }
+
+  @Test
+  public void shouldSendIncompleteBatchOnFlush() {
+    // given
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+
+    // when
+    aggregator.flush();
+    runLaneTasks();
+
+    // then
+    verify(emailSender).sendMails(Collections.singletonList(first));
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldRequeueOnlyFailedMessages() {
+    // given
+    given(emailSender.sendMails(anyList()))
+        .willReturn(Collections.singletonMap(second, new IllegalStateException()));
+
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+
+    // then
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(secondCallback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldRequeueAllMessagesIfBatchCouldNotBeSent() {
+    // given
+    given(emailSender.sendMails(anyList())).willThrow(new MailSendException("test"));
+
+    // when
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, secondCallback);
+
+    // then
+    verify(firstCallback).acknowledge(Status.REQUEUE);
+    verify(secondCallback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldSendRemainingMessagesOnDestroy() {
+    // given
+    aggregator.add(RECIPIENT, TO, SUBJECT, BODY, firstCallback);
+
+    // when
+    aggregator.destroy();
+
+    // then
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldBeDisabledIfBatchSizeIsOne() {
+    assertThat(new EmailBatchAggregator(emailSender, lanes, 1, null).isEnabled()).isFalse();
+    assertThat(aggregator.isEnabled()).isTrue();
+  }
+
+  private void runLaneTasks() {
+    List<Runnable> tasks = Lists.newArrayList(laneTasks);
+    laneTasks.clear();
+    tasks.forEach(Runnable::run);
+  }
+}
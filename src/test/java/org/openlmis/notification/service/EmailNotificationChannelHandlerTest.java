@@ -20,9 +20,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.openlmis.notification.service.NotificationChannel.EMAIL;
 
-import java.util.Optional;
 import java.util.UUID;
-import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -32,9 +30,11 @@ import org.mockito.junit.MockitoRule;
 import org.openlmis.notification.domain.Notification;
 import org.openlmis.notification.domain.NotificationMessage;
 import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.util.NotificationDataBuilder;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.support.MessageBuilder;
 
 public class EmailNotificationChannelHandlerTest {
 
@@ -42,10 +42,13 @@ public class EmailNotificationChannelHandlerTest {
   public MockitoRule mockitoRule = MockitoJUnit.rule();
 
   @Mock
-  private UserContactDetailsRepository userContactDetailsRepository;
+  private EmailSender emailSender;
 
   @Mock
-  private EmailSender emailSender;
+  private EmailBatchAggregator emailBatchAggregator;
+
+  @Mock
+  private AcknowledgmentCallback callback;
 
   @InjectMocks
   private EmailNotificationChannelHandler handler;
@@ -58,29 +61,44 @@ public class EmailNotificationChannelHandlerTest {
 
   private UUID recipient = contactDetails.getId();
 
-  @Before
-  public void setUp() {
-    given(userContactDetailsRepository.findById(recipient))
-        .willReturn(Optional.of(contactDetails));
-  }
-
   @Test
   public void shouldSendMessage() {
     // when
-    handler.handle(message, recipient, false);
+    handler.handle(message, recipient, false, snapshot(), null);
 
     // then
     verify(emailSender)
         .sendMail(contactDetails.getEmailAddress(), message.getSubject(), message.getBody());
   }
 
+  @Test
+  public void shouldAddMessageToBatchIfBatchingIsEnabled() {
+    // given
+    given(emailBatchAggregator.isEnabled()).willReturn(true);
+
+    // when
+    handler.handle(message, recipient, false, snapshot(), callback);
+
+    // then
+    verify(emailBatchAggregator).add(recipient, contactDetails.getEmailAddress(),
+        message.getSubject(), message.getBody(), callback);
+    verifyZeroInteractions(emailSender);
+
+    // and the lane leaves the acknowledgment to the batch
+    new ChannelLaneInterceptor().afterMessageHandled(MessageBuilder
+        .withPayload(message)
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, callback)
+        .build(), null, null, null);
+    verifyZeroInteractions(callback);
+  }
+
   @Test
   public void shouldNotSendMessageIfUserEmailIsNotSet() {
     // given
     contactDetails.getEmailDetails().setEmail(null);
 
     // when
-    handler.handle(message, recipient, false);
+    handler.handle(message, recipient, false, snapshot(), null);
 
     // then
     verifyZeroInteractions(emailSender);
@@ -92,7 +110,7 @@ public class EmailNotificationChannelHandlerTest {
     contactDetails.getEmailDetails().setEmailVerified(false);
 
     // when
-    handler.handle(message, recipient, false);
+    handler.handle(message, recipient, false, snapshot(), null);
 
     // then
     verifyZeroInteractions(emailSender);
@@ -104,11 +122,24 @@ public class EmailNotificationChannelHandlerTest {
     contactDetails.getEmailDetails().setEmailVerified(false);
 
     // when
-    handler.handle(message, recipient, true);
+    handler.handle(message, recipient, true, snapshot(), null);
 
     // then
     verify(emailSender)
         .sendMail(contactDetails.getEmailAddress(), message.getSubject(), message.getBody());
   }
 
+  @Test
+  public void shouldNotSendMessageIfUserContactDetailsDoNotExist() {
+    // when
+    handler.handle(message, recipient, true, null, null);
+
+    // then
+    verifyZeroInteractions(emailSender);
+  }
+
+  private UserContactDetailsSnapshot snapshot() {
+    return new UserContactDetailsSnapshot(contactDetails);
+  }
+
 }
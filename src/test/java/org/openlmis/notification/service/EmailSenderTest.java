@@ -16,13 +16,20 @@
 package org.openlmis.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_SEND_MAIL_FAILURE;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
@@ -56,6 +63,9 @@ public class EmailSenderTest {
   @Mock
   private JavaMailSender mailSender;
 
+  @Mock
+  private SmtpTransportPool transportPool;
+
   @InjectMocks
   private EmailSender sender;
 
@@ -84,6 +94,76 @@ public class EmailSenderTest {
     assertThat(value.getContent().toString()).isEqualTo(BODY);
   }
 
+  @Test
+  public void shouldSendMessageWithPooledTransportIfPoolIsEnabled() throws MessagingException {
+    // given
+    given(transportPool.isEnabled()).willReturn(true);
+
+    // when
+    sender.sendMail(TO, SUBJECT, BODY);
+
+    // then
+    verify(transportPool).send(mimeMessageCaptor.capture());
+    verify(mailSender, never()).send(any(MimeMessage.class));
+
+    assertThat(mimeMessageCaptor.getValue().getAllRecipients()[0].toString()).isEqualTo(TO);
+  }
+
+  @Test
+  public void shouldReturnFailedMessagesOfBatch() {
+    // given
+    given(mailSender.createMimeMessage())
+        .willReturn(new MimeMessage((Session) null), new MimeMessage((Session) null));
+
+    MimeMessage sent = sender.createMail(TO, SUBJECT, BODY);
+    MimeMessage failed = sender.createMail(TO, SUBJECT, BODY);
+    MessagingException cause = new MessagingException("test-exception");
+
+    willThrow(new MailSendException(Collections.singletonMap(failed, cause)))
+        .given(mailSender)
+        .send(sent, failed);
+
+    // when
+    Map<MimeMessage, Exception> failures = sender.sendMails(Arrays.asList(sent, failed));
+
+    // then
+    assertThat(failures).containsOnly(entry(failed, cause));
+  }
+
+  @Test
+  public void shouldSendBatchWithPooledTransportIfPoolIsEnabled() {
+    // given
+    List<MimeMessage> messages = Collections.singletonList(sender.createMail(TO, SUBJECT, BODY));
+
+    given(transportPool.isEnabled()).willReturn(true);
+    given(transportPool.sendAll(messages)).willReturn(Collections.emptyMap());
+
+    // when
+    Map<MimeMessage, Exception> failures = sender.sendMails(messages);
+
+    // then
+    assertThat(failures).isEmpty();
+    verify(mailSender, never()).send(any(MimeMessage.class));
+  }
+
+  @Test
+  public void shouldTakePermitFromRateLimiter() {
+    // given
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ReflectionTestUtils.setField(sender, "rateLimitPermitsPerSecond", 100.0);
+    ReflectionTestUtils.setField(sender, "rateLimitBurst", 10);
+    ReflectionTestUtils.setField(sender, "meterRegistry", meterRegistry);
+    sender.initRateLimiter();
+
+    // when
+    sender.sendMail(TO, SUBJECT, BODY);
+
+    // then
+    assertThat(meterRegistry.get(TokenBucketRateLimiter.WAIT_METRIC)
+        .tag("provider", "email").timer().count()).isEqualTo(1);
+  }
+
   @Test
   public void shouldThrowExceptionIfMailCanNotBeSend() {
     // given
@@ -16,11 +16,28 @@
 package org.openlmis.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.domain.PendingNotification.HIGH_PRIORITY;
+import static org.openlmis.notification.domain.PendingNotification.NORMAL_PRIORITY;
 import static org.openlmis.notification.service.NotificationToSendRetriever.CHANNEL_TO_USE_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.IMPORTANT_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.NOTIFICATION_ID_HEADER;
 import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.START_CHANNEL;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -29,58 +46,218 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.openlmis.notification.domain.Notification;
 import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.domain.UserContactDetails;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.util.NotificationDataBuilder;
-import org.springframework.integration.jpa.core.JpaExecutor;
+import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessagingException;
 
 public class NotificationToSendRetrieverTest {
 
   @Rule
   public MockitoRule mockitoRule = MockitoJUnit.rule();
 
+  private static final int BATCH_SIZE = 10;
+  private static final long LEASE_DURATION = 300000;
+  private static final Duration LEASE = Duration.ofMillis(LEASE_DURATION);
+  private static final int PRIORITY_WEIGHT = 4;
+
+  @Mock
+  private PendingNotificationRepository pendingNotificationRepository;
+
+  @Mock
+  private PendingNotificationService pendingNotificationService;
+
+  @Mock
+  private UserContactDetailsRepository userContactDetailsRepository;
+
   @Mock
-  private JpaExecutor jpaExecutor;
+  private MessagingTemplate messagingTemplate;
 
   private NotificationToSendRetriever retriever;
 
   private Notification notification = new NotificationDataBuilder()
       .withEmptyMessage(NotificationChannel.EMAIL)
-      .buildAsNew();
+      .build();
 
   private PendingNotification pendingNotification =
       new PendingNotification(notification, NotificationChannel.EMAIL);
 
   @Before
   public void setUp() {
-    retriever = new NotificationToSendRetriever(jpaExecutor);
+    retriever = new NotificationToSendRetriever(pendingNotificationRepository,
+        pendingNotificationService, userContactDetailsRepository, messagingTemplate, BATCH_SIZE,
+        LEASE_DURATION, PRIORITY_WEIGHT);
   }
 
   @Test
-  public void shouldReturnFirstPendingNotificationReadyToSend() {
+  public void shouldClaimImportantPendingNotificationsFirst() {
     // given
-    given(jpaExecutor.poll()).willReturn(pendingNotification);
+    PendingNotification important = new PendingNotification(new NotificationDataBuilder()
+        .withEmptyMessage(NotificationChannel.EMAIL)
+        .withImportant(true)
+        .build(), NotificationChannel.EMAIL);
+
+    given(pendingNotificationRepository.claimPendingNotifications(HIGH_PRIORITY, 8, LEASE))
+        .willReturn(Lists.newArrayList(important));
+    given(pendingNotificationRepository.claimPendingNotifications(NORMAL_PRIORITY, 9, LEASE))
+        .willReturn(Lists.newArrayList(pendingNotification));
 
     // when
-    Message<Notification> message = retriever.retrieve();
+    Message<List<PendingNotification>> message = retriever.retrieve();
 
     // then
     assertThat(message).isNotNull();
-    assertThat(message.getPayload()).isEqualTo(notification);
-    assertThat(message.getHeaders())
-        .containsEntry(RECIPIENT_HEADER, notification.getUserId())
-        .containsEntry(IMPORTANT_HEADER, notification.getImportant())
-        .containsEntry(CHANNEL_TO_USE_HEADER, pendingNotification.getChannel());
+    assertThat(message.getPayload()).containsExactly(important, pendingNotification);
+  }
+
+  @Test
+  public void shouldGiveUnusedNormalSlotsToImportantPendingNotifications() {
+    // given
+    given(pendingNotificationRepository.claimPendingNotifications(HIGH_PRIORITY, 8, LEASE))
+        .willReturn(Lists.newArrayList(newImportantPendingNotifications(8)));
+    given(pendingNotificationRepository.claimPendingNotifications(NORMAL_PRIORITY, 2, LEASE))
+        .willReturn(Lists.newArrayList());
+    given(pendingNotificationRepository.claimPendingNotifications(HIGH_PRIORITY, 2, LEASE))
+        .willReturn(Lists.newArrayList(newImportantPendingNotifications(2)));
+
+    // when
+    Message<List<PendingNotification>> message = retriever.retrieve();
+
+    // then
+    assertThat(message).isNotNull();
+    assertThat(message.getPayload()).hasSize(BATCH_SIZE);
   }
 
   @Test
   public void shouldReturnNullValueIfThereIsNoPendingNotification() {
     // given
-    given(jpaExecutor.poll()).willReturn(null);
+    given(pendingNotificationRepository.claimPendingNotifications(anyInt(), anyInt(), eq(LEASE)))
+        .willReturn(Lists.newArrayList());
 
     // when
-    Message<Notification> message = retriever.retrieve();
+    Message<List<PendingNotification>> message = retriever.retrieve();
 
     // then
     assertThat(message).isNull();
+    verify(pendingNotificationRepository, never())
+        .claimPendingNotifications(HIGH_PRIORITY, 2, LEASE);
+  }
+
+  @Test
+  public void shouldNotStarveNormalPendingNotifications() {
+    // single-element batches: one out of five slots is reserved for normal notifications
+    assertThat(retriever.getHighPrioritySlots(1)).isEqualTo(1);
+    assertThat(retriever.getHighPrioritySlots(1)).isEqualTo(1);
+    assertThat(retriever.getHighPrioritySlots(1)).isEqualTo(1);
+    assertThat(retriever.getHighPrioritySlots(1)).isEqualTo(1);
+    assertThat(retriever.getHighPrioritySlots(1)).isZero();
+    assertThat(retriever.getHighPrioritySlots(BATCH_SIZE)).isEqualTo(8);
+  }
+
+  @Test
+  public void shouldSplitPendingNotificationsIntoSingleMessages() {
+    // given
+    UserContactDetails contactDetails = new UserContactDetailsDataBuilder().build();
+    Notification smsNotification = new NotificationDataBuilder()
+        .withUserId(contactDetails.getReferenceDataUserId())
+        .withEmptyMessage(NotificationChannel.SMS)
+        .build();
+    PendingNotification smsPendingNotification =
+        new PendingNotification(smsNotification, NotificationChannel.SMS);
+
+    given(userContactDetailsRepository.findAllById(anyCollection()))
+        .willReturn(Lists.newArrayList(contactDetails));
+
+    // when
+    List<Message<Notification>> messages = retriever
+        .split(Lists.newArrayList(pendingNotification, smsPendingNotification));
+
+    // then
+    assertThat(messages).hasSize(2);
+
+    assertThat(messages.get(0).getPayload()).isEqualTo(notification);
+    assertThat(messages.get(0).getHeaders())
+        .containsEntry(RECIPIENT_HEADER, notification.getUserId())
+        .containsEntry(IMPORTANT_HEADER, notification.getImportant())
+        .containsEntry(CHANNEL_TO_USE_HEADER, pendingNotification.getChannel())
+        .containsEntry(NOTIFICATION_ID_HEADER, notification.getId())
+        .containsKey(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK)
+        .doesNotContainKey(CONTACT_DETAILS_HEADER);
+
+    assertThat(messages.get(1).getPayload()).isEqualTo(smsNotification);
+    assertThat(messages.get(1).getHeaders())
+        .containsEntry(RECIPIENT_HEADER, smsNotification.getUserId())
+        .containsEntry(IMPORTANT_HEADER, smsNotification.getImportant())
+        .containsEntry(CHANNEL_TO_USE_HEADER, smsPendingNotification.getChannel())
+        .containsEntry(NOTIFICATION_ID_HEADER, smsNotification.getId())
+        .containsEntry(CONTACT_DETAILS_HEADER, new UserContactDetailsSnapshot(contactDetails));
+
+    verify(userContactDetailsRepository).findAllById(anyCollection());
+  }
+
+  @Test
+  public void shouldSendRemainingNotificationsIfOneCanNotBeSent() {
+    // given
+    PendingNotification other = new PendingNotification(new NotificationDataBuilder()
+        .withEmptyMessage(NotificationChannel.EMAIL)
+        .build(), NotificationChannel.EMAIL);
+    pendingNotification.lease(ZonedDateTime.now(), LEASE);
+    other.lease(ZonedDateTime.now(), LEASE);
+
+    willThrow(new MessageDeliveryException("test"))
+        .willDoNothing()
+        .given(messagingTemplate).send(eq(START_CHANNEL), any());
+
+    // when
+    retriever.send(Lists.newArrayList(pendingNotification, other));
+
+    // then
+    verify(messagingTemplate, times(2)).send(eq(START_CHANNEL), any());
+    verify(pendingNotificationService)
+        .retry(pendingNotification.getId(), pendingNotification.getLeaseId());
+    verify(pendingNotificationService, never()).retry(other.getId(), other.getLeaseId());
+  }
+
+  @Test
+  public void shouldReleaseRemainingNotificationsIfLanesAreFull() {
+    // given
+    PendingNotification other = new PendingNotification(new NotificationDataBuilder()
+        .withEmptyMessage(NotificationChannel.EMAIL)
+        .build(), NotificationChannel.EMAIL);
+    pendingNotification.lease(ZonedDateTime.now(), LEASE);
+    other.lease(ZonedDateTime.now(), LEASE);
+
+    willThrow(new MessagingException("test", new TaskRejectedException("full")))
+        .given(messagingTemplate).send(eq(START_CHANNEL), any());
+
+    // when
+    retriever.send(Lists.newArrayList(pendingNotification, other));
+
+    // then
+    verify(messagingTemplate).send(eq(START_CHANNEL), any());
+    verify(pendingNotificationService)
+        .release(pendingNotification.getId(), pendingNotification.getLeaseId());
+    verify(pendingNotificationService).release(other.getId(), other.getLeaseId());
+    verify(pendingNotificationService, never()).retry(any(), any());
+  }
+
+  private List<PendingNotification> newImportantPendingNotifications(int count) {
+    List<PendingNotification> list = Lists.newArrayList();
+
+    for (int idx = 0; idx < count; ++idx) {
+      list.add(new PendingNotification(new NotificationDataBuilder()
+          .withEmptyMessage(NotificationChannel.EMAIL)
+          .withImportant(true)
+          .build(), NotificationChannel.EMAIL));
+    }
+
+    return list;
   }
 }
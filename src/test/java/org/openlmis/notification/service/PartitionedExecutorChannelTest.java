@@ -0,0 +1,185 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class PartitionedExecutorChannelTest {
+
+  private static final int LANE_COUNT = 4;
+  private static final int MESSAGE_COUNT = 50;
+  private static final long TIMEOUT = 5000;
+
+  private List<ThreadPoolTaskExecutor> lanes = new ArrayList<>();
+  private PartitionedExecutorChannel channel;
+
+  @Before
+  public void setUp() {
+    for (int idx = 0; idx < LANE_COUNT; ++idx) {
+      ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+      executor.setCorePoolSize(1);
+      executor.setMaxPoolSize(1);
+      executor.initialize();
+
+      lanes.add(executor);
+    }
+
+    channel = new PartitionedExecutorChannel(lanes,
+        message -> message.getHeaders().get(RECIPIENT_HEADER));
+    channel.setBeanFactory(new DefaultListableBeanFactory());
+    channel.afterPropertiesSet();
+  }
+
+  @After
+  public void tearDown() {
+    lanes.forEach(ThreadPoolTaskExecutor::shutdown);
+  }
+
+  @Test
+  public void shouldAssignMessagesOfTheSameRecipientToTheSameLane() {
+    UUID recipient = UUID.randomUUID();
+
+    assertThat(channel.getLane(createMessage(recipient, 1)))
+        .isEqualTo(channel.getLane(createMessage(recipient, 2)))
+        .isBetween(0, LANE_COUNT - 1);
+  }
+
+  @Test
+  public void shouldHandleMessagesOfRecipientInOrder() throws InterruptedException {
+    // given
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+
+    List<Message<?>> handled = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(2 * MESSAGE_COUNT);
+
+    channel.subscribe(message -> {
+      handled.add(message);
+      latch.countDown();
+    });
+
+    // when
+    for (int idx = 0; idx < MESSAGE_COUNT; ++idx) {
+      channel.send(createMessage(first, idx));
+      channel.send(createMessage(second, idx));
+    }
+
+    // then
+    assertThat(latch.await(TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(getPayloads(handled, first)).isSorted().hasSize(MESSAGE_COUNT);
+    assertThat(getPayloads(handled, second)).isSorted().hasSize(MESSAGE_COUNT);
+  }
+
+  @Test
+  public void shouldReturnNumberOfMessagesInLane() throws InterruptedException {
+    // given
+    UUID recipient = UUID.randomUUID();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    channel.subscribe(message -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+
+    // when
+    channel.send(createMessage(recipient, 1));
+    channel.send(createMessage(recipient, 2));
+    channel.send(createMessage(recipient, 3));
+    started.await(TIMEOUT, TimeUnit.MILLISECONDS);
+
+    // then
+    int lane = channel.getLane(createMessage(recipient, 1));
+
+    assertThat(channel.getLaneCount()).isEqualTo(LANE_COUNT);
+    assertThat(channel.getLaneDepth(lane)).isEqualTo(3);
+    assertThat(channel.getLaneDepth((lane + 1) % LANE_COUNT)).isZero();
+
+    release.countDown();
+  }
+
+  @Test
+  public void shouldInvokeExecutorInterceptorsInLane() {
+    // given
+    ExecutorChannelInterceptor interceptor = mock(ExecutorChannelInterceptor.class);
+    when(interceptor.preSend(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(interceptor.beforeHandle(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    channel.addInterceptor(interceptor);
+    channel.subscribe(message -> { });
+
+    Message<Integer> message = createMessage(UUID.randomUUID(), 1);
+
+    // when
+    channel.send(message);
+
+    // then
+    verify(interceptor, timeout(TIMEOUT))
+        .afterMessageHandled(eq(message), eq(channel), any(), isNull());
+  }
+
+  private Message<Integer> createMessage(UUID recipient, int payload) {
+    return MessageBuilder
+        .withPayload(payload)
+        .setHeader(RECIPIENT_HEADER, recipient)
+        .build();
+  }
+
+  private List<Integer> getPayloads(List<Message<?>> messages, UUID recipient) {
+    List<Integer> payloads = new ArrayList<>();
+
+    for (Message<?> message : messages) {
+      if (recipient.equals(message.getHeaders().get(RECIPIENT_HEADER))) {
+        payloads.add((Integer) message.getPayload());
+      }
+    }
+
+    return payloads;
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+
+public class PendingNotificationAcknowledgmentInterceptorTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private AcknowledgmentCallback callback;
+
+  @Mock
+  private MessageChannel channel;
+
+  private PendingNotificationAcknowledgmentInterceptor interceptor =
+      new PendingNotificationAcknowledgmentInterceptor();
+
+  private Message<String> message;
+
+  @Before
+  public void setUp() {
+    message = MessageBuilder
+        .withPayload("payload")
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, callback)
+        .build();
+
+    given(callback.isAutoAck()).willReturn(true);
+  }
+
+  @Test
+  public void shouldAcceptMessageIfFlowHasCompleted() {
+    // when
+    interceptor.afterSendCompletion(message, channel, true, null);
+
+    // then
+    verify(callback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldRequeueMessageIfFlowHasFailed() {
+    // when
+    interceptor.afterSendCompletion(message, channel, false, new IllegalStateException());
+
+    // then
+    verify(callback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldReleaseMessageRejectedByFullLane() {
+    // given
+    PendingNotificationService service = mock(PendingNotificationService.class);
+    PendingNotificationId id =
+        new PendingNotificationId(UUID.randomUUID(), NotificationChannel.EMAIL);
+    UUID leaseId = UUID.randomUUID();
+    message = MessageBuilder
+        .withPayload("payload")
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK,
+            new PendingNotificationAcknowledgment(service, id, leaseId))
+        .build();
+
+    // when
+    interceptor.afterSendCompletion(message, channel, false,
+        new MessageDeliveryException(message, "test", new TaskRejectedException("full")));
+
+    // then
+    verify(service).release(id, leaseId);
+    verify(service, never()).retry(any(), any());
+  }
+
+  @Test
+  public void shouldNotAcknowledgeMessageHandedOffToLane() {
+    // given
+    given(callback.isAutoAck()).willReturn(false);
+
+    // when
+    interceptor.afterSendCompletion(message, channel, true, null);
+
+    // then
+    verify(callback, never()).acknowledge(any());
+  }
+
+  @Test
+  public void shouldNotAcknowledgeMessageTwice() {
+    // given
+    given(callback.isAcknowledged()).willReturn(true);
+
+    // when
+    interceptor.afterSendCompletion(message, channel, false, new IllegalStateException());
+
+    // then
+    verify(callback, never()).acknowledge(any());
+  }
+}
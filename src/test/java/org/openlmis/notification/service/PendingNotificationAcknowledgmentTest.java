@@ -0,0 +1,128 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.PendingNotification.PendingNotificationId;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+
+public class PendingNotificationAcknowledgmentTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private PendingNotificationService pendingNotificationService;
+
+  private PendingNotificationId id =
+      new PendingNotificationId(UUID.randomUUID(), NotificationChannel.EMAIL);
+
+  private UUID leaseId = UUID.randomUUID();
+
+  private PendingNotificationAcknowledgment acknowledgment;
+
+  @Before
+  public void setUp() {
+    acknowledgment = new PendingNotificationAcknowledgment(pendingNotificationService, id,
+        leaseId);
+  }
+
+  @Test
+  public void shouldCompletePendingNotificationIfMessageWasAccepted() {
+    // when
+    acknowledgment.acknowledge(Status.ACCEPT);
+
+    // then
+    verify(pendingNotificationService).complete(id, leaseId);
+    assertThat(acknowledgment.isAcknowledged()).isTrue();
+  }
+
+  @Test
+  public void shouldRetryPendingNotificationIfMessageWasRequeued() {
+    // when
+    acknowledgment.acknowledge(Status.REQUEUE);
+
+    // then
+    verify(pendingNotificationService).retry(id, leaseId);
+    verify(pendingNotificationService, never()).complete(any(), any());
+  }
+
+  @Test
+  public void shouldRejectPendingNotificationIfMessageWasRejected() {
+    // when
+    acknowledgment.acknowledge(Status.REJECT);
+
+    // then
+    verify(pendingNotificationService).reject(id, leaseId);
+    verify(pendingNotificationService, never()).complete(any(), any());
+  }
+
+  @Test
+  public void shouldReleasePendingNotificationWithoutAcknowledgment() {
+    // when
+    acknowledgment.release();
+    acknowledgment.acknowledge(Status.REQUEUE);
+
+    // then
+    verify(pendingNotificationService).release(id, leaseId);
+    verify(pendingNotificationService, never()).retry(any(), any());
+  }
+
+  @Test
+  public void shouldTakeIntoAccountOnlyFirstAcknowledgment() {
+    // when
+    acknowledgment.acknowledge(Status.REQUEUE);
+    acknowledgment.acknowledge(Status.ACCEPT);
+
+    // then
+    verify(pendingNotificationService).retry(id, leaseId);
+    verify(pendingNotificationService, never()).complete(any(), any());
+  }
+
+  @Test
+  public void shouldNotThrowExceptionIfPendingNotificationCanNotBeCompleted() {
+    // given
+    willThrow(new IllegalStateException())
+        .given(pendingNotificationService).complete(id, leaseId);
+
+    // when
+    acknowledgment.acknowledge(Status.ACCEPT);
+
+    // then
+    assertThat(acknowledgment.isAcknowledged()).isTrue();
+  }
+
+  @Test
+  public void shouldDisableAutoAck() {
+    // when
+    acknowledgment.noAutoAck();
+
+    // then
+    assertThat(acknowledgment.isAutoAck()).isFalse();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_NOTIFICATION_QUEUE_FULL;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.web.TooManyRequestsException;
+
+public class PendingNotificationBacklogTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Rule
+  public ExpectedException exception = ExpectedException.none();
+
+  private static final long THRESHOLD = 10;
+  private static final long REFRESH_INTERVAL = 60000;
+  private static final long RETRY_AFTER = 30;
+
+  @Mock
+  private PendingNotificationRepository pendingNotificationRepository;
+
+  @Test
+  public void shouldAdmitNotificationIfBacklogIsBelowThreshold() {
+    // given
+    given(pendingNotificationRepository.count()).willReturn(THRESHOLD - 1);
+
+    // when
+    createBacklog(THRESHOLD).admit(false);
+
+    // then
+    verify(pendingNotificationRepository).count();
+  }
+
+  @Test
+  public void shouldRejectNotificationIfBacklogHasReachedThreshold() {
+    // given
+    exception.expect(TooManyRequestsException.class);
+    exception.expectMessage(ERROR_NOTIFICATION_QUEUE_FULL);
+
+    given(pendingNotificationRepository.count()).willReturn(THRESHOLD);
+
+    // when
+    createBacklog(THRESHOLD).admit(null);
+  }
+
+  @Test
+  public void shouldAlwaysAdmitImportantNotification() {
+    // when
+    createBacklog(THRESHOLD).admit(true);
+
+    // then
+    verify(pendingNotificationRepository, never()).count();
+  }
+
+  @Test
+  public void shouldAdmitAllNotificationsIfThresholdIsNotSet() {
+    // when
+    createBacklog(0).admit(false);
+
+    // then
+    verify(pendingNotificationRepository, never()).count();
+  }
+
+  @Test
+  public void shouldCountPendingNotificationsOncePerRefreshInterval() {
+    // given
+    given(pendingNotificationRepository.count()).willReturn(THRESHOLD - 2);
+    PendingNotificationBacklog backlog = createBacklog(THRESHOLD);
+
+    // when
+    backlog.admit(false);
+    backlog.added(1);
+
+    // then
+    assertThat(backlog.getSize()).isEqualTo(THRESHOLD - 1);
+    verify(pendingNotificationRepository, times(1)).count();
+  }
+
+  @Test
+  public void shouldAddNewPendingNotificationsToBacklog() {
+    // given
+    exception.expect(TooManyRequestsException.class);
+
+    given(pendingNotificationRepository.count()).willReturn(THRESHOLD - 1);
+    PendingNotificationBacklog backlog = createBacklog(THRESHOLD);
+    backlog.admit(false);
+
+    // when
+    backlog.added(1);
+    backlog.admit(false);
+  }
+
+  private PendingNotificationBacklog createBacklog(long threshold) {
+    return new PendingNotificationBacklog(pendingNotificationRepository, threshold,
+        REFRESH_INTERVAL, RETRY_AFTER);
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CHANNEL_TO_USE_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.CONTACT_DETAILS_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.RECIPIENT_HEADER;
+import static org.openlmis.notification.service.NotificationToSendRetriever.START_CHANNEL;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import org.assertj.core.util.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.Notification;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.domain.UserContactDetails;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.util.NotificationDataBuilder;
+import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class PendingNotificationDispatcherTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  private static final long LEASE_DURATION = 300000;
+
+  @Mock
+  private PendingNotificationRepository pendingNotificationRepository;
+
+  @Mock
+  private PendingNotificationService pendingNotificationService;
+
+  @Mock
+  private MessagingTemplate messagingTemplate;
+
+  @Captor
+  private ArgumentCaptor<Message<?>> messageCaptor;
+
+  private PendingNotificationDispatcher dispatcher;
+
+  private UserContactDetails contactDetails = new UserContactDetailsDataBuilder().build();
+  private UserContactDetailsSnapshot snapshot = new UserContactDetailsSnapshot(contactDetails);
+
+  private Notification notification = new NotificationDataBuilder()
+      .withUserId(contactDetails.getReferenceDataUserId())
+      .withEmptyMessage(NotificationChannel.EMAIL)
+      .build();
+
+  @Before
+  public void setUp() {
+    dispatcher = new PendingNotificationDispatcher(pendingNotificationRepository,
+        pendingNotificationService, messagingTemplate, LEASE_DURATION, true, 1, 1);
+  }
+
+  @After
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    dispatcher.destroy();
+  }
+
+  @Test
+  public void shouldSendClaimedPendingNotifications() {
+    // given
+    given(pendingNotificationRepository.claimPendingNotifications(notification.getId(),
+        Duration.ofMillis(LEASE_DURATION)))
+        .willReturn(Lists.newArrayList(
+            new PendingNotification(notification, NotificationChannel.EMAIL)));
+
+    // when
+    dispatcher.dispatch(notification, snapshot);
+
+    // then
+    verify(messagingTemplate).send(eq(START_CHANNEL), messageCaptor.capture());
+
+    assertThat(messageCaptor.getValue().getPayload()).isEqualTo(notification);
+    assertThat(messageCaptor.getValue().getHeaders())
+        .containsEntry(RECIPIENT_HEADER, notification.getUserId())
+        .containsEntry(CHANNEL_TO_USE_HEADER, NotificationChannel.EMAIL)
+        .containsEntry(CONTACT_DETAILS_HEADER, snapshot)
+        .containsKey(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK);
+  }
+
+  @Test
+  public void shouldSendRemainingPendingNotificationsIfOneCanNotBeSent() {
+    // given
+    Duration lease = Duration.ofMillis(LEASE_DURATION);
+    PendingNotification email = new PendingNotification(notification, NotificationChannel.EMAIL);
+    PendingNotification sms = new PendingNotification(notification, NotificationChannel.SMS);
+    email.lease(ZonedDateTime.now(), lease);
+    sms.lease(ZonedDateTime.now(), lease);
+
+    given(pendingNotificationRepository.claimPendingNotifications(notification.getId(), lease))
+        .willReturn(Lists.newArrayList(email, sms));
+    willThrow(new MessageDeliveryException("test"))
+        .willDoNothing()
+        .given(messagingTemplate).send(eq(START_CHANNEL), any());
+
+    // when
+    dispatcher.dispatch(notification, snapshot);
+
+    // then
+    verify(messagingTemplate, times(2)).send(eq(START_CHANNEL), any());
+    verify(pendingNotificationService).retry(email.getId(), email.getLeaseId());
+    verify(pendingNotificationService, never()).retry(sms.getId(), sms.getLeaseId());
+  }
+
+  @Test
+  public void shouldNotSendNotificationsClaimedByOthers() {
+    // given
+    given(pendingNotificationRepository.claimPendingNotifications(notification.getId(),
+        Duration.ofMillis(LEASE_DURATION)))
+        .willReturn(Lists.newArrayList());
+
+    // when
+    dispatcher.dispatch(notification, snapshot);
+
+    // then
+    verify(messagingTemplate, never()).send(any(String.class), any());
+  }
+
+  @Test
+  public void shouldNotThrowExceptionIfNotificationCanNotBeSent() {
+    // given
+    given(pendingNotificationRepository.claimPendingNotifications(notification.getId(),
+        Duration.ofMillis(LEASE_DURATION)))
+        .willThrow(new IllegalStateException());
+
+    // when
+    dispatcher.dispatch(notification, snapshot);
+
+    // then
+    verify(messagingTemplate, never()).send(any(String.class), any());
+  }
+
+  @Test
+  public void shouldDispatchNotificationOnlyAfterCommit() {
+    // given
+    TransactionSynchronizationManager.initSynchronization();
+
+    // when
+    dispatcher.dispatchAfterCommit(notification, contactDetails);
+
+    // then
+    assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+    verifyZeroInteractions(pendingNotificationRepository);
+  }
+
+  @Test
+  public void shouldNotDispatchNotificationIfFastPathIsDisabled() {
+    // given
+    dispatcher = new PendingNotificationDispatcher(pendingNotificationRepository,
+        pendingNotificationService, messagingTemplate, LEASE_DURATION, false, 1, 1);
+    TransactionSynchronizationManager.initSynchronization();
+
+    // when
+    dispatcher.dispatchAfterCommit(notification, contactDetails);
+
+    // then
+    assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.service.NotificationToSendRetriever.BATCH_CHANNEL;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.util.NotificationDataBuilder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PendingNotificationListenerTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  private static final int VALIDATION_INTERVAL = 30000;
+
+  @Mock
+  private NotificationToSendRetriever retriever;
+
+  @Mock
+  private MessagingTemplate messagingTemplate;
+
+  @Mock
+  private Connection connection;
+
+  @Mock
+  private PGConnection pgConnection;
+
+  @InjectMocks
+  private PendingNotificationListener listener;
+
+  private List<PendingNotification> pendingNotifications = Lists.newArrayList(
+      new PendingNotification(
+          new NotificationDataBuilder().withEmptyMessage(NotificationChannel.EMAIL).buildAsNew(),
+          NotificationChannel.EMAIL));
+
+  private Message<List<PendingNotification>> batch = MessageBuilder
+      .withPayload(pendingNotifications)
+      .build();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(listener, "running", true);
+    ReflectionTestUtils.setField(listener, "validationInterval", VALIDATION_INTERVAL);
+  }
+
+  @Test
+  public void shouldWaitForNotificationsWithoutPolling() throws SQLException {
+    // given
+    given(connection.createStatement()).willReturn(mock(Statement.class));
+    given(connection.unwrap(PGConnection.class)).willReturn(pgConnection);
+    given(connection.isValid(anyInt())).willReturn(true);
+    given(pgConnection.getNotifications(VALIDATION_INTERVAL))
+        .willReturn(new PGNotification[]{mock(PGNotification.class)})
+        .willAnswer(invocation -> {
+          ReflectionTestUtils.setField(listener, "running", false);
+          return new PGNotification[0];
+        });
+
+    // when
+    listener.listen(connection);
+
+    // then
+    verify(pgConnection, times(2)).getNotifications(VALIDATION_INTERVAL);
+    verify(pgConnection, never()).getNotifications();
+    verify(retriever, times(2)).retrieve();
+    verify(connection).isValid(anyInt());
+  }
+
+  @Test
+  public void shouldSendBatchesUntilThereIsNothingToSend() {
+    // given
+    given(retriever.retrieve()).willReturn(batch, batch, null);
+
+    // when
+    listener.drain();
+
+    // then
+    verify(messagingTemplate, times(2)).send(BATCH_CHANNEL, batch);
+    verify(retriever, times(3)).retrieve();
+  }
+
+  @Test
+  public void shouldNotSendBatchesIfListenerIsStopped() {
+    // given
+    ReflectionTestUtils.setField(listener, "running", false);
+
+    // when
+    listener.drain();
+
+    // then
+    verify(retriever, never()).retrieve();
+    verify(messagingTemplate, never()).send(any(String.class), any());
+  }
+}
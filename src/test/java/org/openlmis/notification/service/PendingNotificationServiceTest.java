@@ -0,0 +1,257 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.domain.PendingNotification;
+import org.openlmis.notification.repository.DeadLetterNotificationRepository;
+import org.openlmis.notification.repository.PendingNotificationRepository;
+import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
+import org.openlmis.notification.web.NotFoundException;
+
+@SuppressWarnings("PMD.TooManyMethods")
+public class PendingNotificationServiceTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Rule
+  public ExpectedException exception = ExpectedException.none();
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long INITIAL_BACKOFF = 1000;
+  private static final long MAX_BACKOFF = 3000;
+
+  @Mock
+  private PendingNotificationRepository pendingNotificationRepository;
+
+  @Mock
+  private DeadLetterNotificationRepository deadLetterNotificationRepository;
+
+  @Captor
+  private ArgumentCaptor<DeadLetterNotification> deadLetterCaptor;
+
+  @Captor
+  private ArgumentCaptor<List<PendingNotification>> pendingNotificationsCaptor;
+
+  private PendingNotificationService service;
+
+  private PendingNotification pending = new PendingNotificationDataBuilder()
+      .withChannel(NotificationChannel.EMAIL)
+      .build();
+
+  private UUID leaseId;
+
+  @Before
+  public void setUp() {
+    service = new PendingNotificationService(pendingNotificationRepository,
+        deadLetterNotificationRepository, MAX_ATTEMPTS, INITIAL_BACKOFF, MAX_BACKOFF);
+
+    pending.lease(ZonedDateTime.now(), Duration.ofMinutes(5));
+    leaseId = pending.getLeaseId();
+
+    given(pendingNotificationRepository.findByIdAndLeaseId(pending.getId(), leaseId))
+        .willReturn(Optional.of(pending));
+  }
+
+  @Test
+  public void shouldRemoveCompletedPendingNotification() {
+    // when
+    service.complete(pending.getId(), leaseId);
+
+    // then
+    verify(pendingNotificationRepository).removePendingNotification(pending.getId(), leaseId);
+  }
+
+  @Test
+  public void shouldRetryPendingNotificationLater() {
+    // given
+    final ZonedDateTime before = ZonedDateTime.now();
+
+    // when
+    service.retry(pending.getId(), leaseId);
+
+    // then
+    verify(pendingNotificationRepository).save(pending);
+    verify(deadLetterNotificationRepository, never()).save(any());
+
+    assertThat(pending.getAttemptCount()).isEqualTo(1);
+    assertThat(pending.getNextAttemptAt())
+        .isAfterOrEqualTo(before.plus(Duration.ofMillis(INITIAL_BACKOFF)));
+  }
+
+  @Test
+  public void shouldMovePendingNotificationToDeadLettersAfterMaxAttempts() {
+    // given
+    for (int attempt = 1; attempt < MAX_ATTEMPTS; ++attempt) {
+      pending.failed(ZonedDateTime.now(), Duration.ZERO);
+    }
+
+    // when
+    service.retry(pending.getId(), leaseId);
+
+    // then
+    verify(deadLetterNotificationRepository).save(deadLetterCaptor.capture());
+    verify(pendingNotificationRepository).delete(pending);
+
+    assertThat(deadLetterCaptor.getValue().getId()).isEqualTo(pending.getId());
+    assertThat(deadLetterCaptor.getValue().getAttemptCount()).isEqualTo(MAX_ATTEMPTS);
+  }
+
+  @Test
+  public void shouldNotRetryPendingNotificationThatDoesNotExist() {
+    // given
+    given(pendingNotificationRepository.findByIdAndLeaseId(pending.getId(), leaseId))
+        .willReturn(Optional.empty());
+
+    // when
+    service.retry(pending.getId(), leaseId);
+
+    // then
+    verify(pendingNotificationRepository, never()).save(any());
+    verify(deadLetterNotificationRepository, never()).save(any());
+  }
+
+  @Test
+  public void shouldIgnoreAcknowledgmentsOfExpiredLease() {
+    // given
+    UUID staleLeaseId = UUID.randomUUID();
+    given(pendingNotificationRepository.findByIdAndLeaseId(pending.getId(), staleLeaseId))
+        .willReturn(Optional.empty());
+
+    // when
+    service.retry(pending.getId(), staleLeaseId);
+    service.reject(pending.getId(), staleLeaseId);
+
+    // then
+    verify(pendingNotificationRepository, never()).save(any());
+    verify(pendingNotificationRepository, never()).delete(any());
+    verify(deadLetterNotificationRepository, never()).save(any());
+    assertThat(pending.getAttemptCount()).isZero();
+  }
+
+  @Test
+  public void shouldReleasePendingNotificationWithoutCountingAttempt() {
+    // given
+    final ZonedDateTime before = ZonedDateTime.now();
+
+    // when
+    service.release(pending.getId(), leaseId);
+
+    // then
+    verify(pendingNotificationRepository).save(pending);
+
+    assertThat(pending.getAttemptCount()).isZero();
+    assertThat(pending.getLeaseId()).isNull();
+    assertThat(pending.getNextAttemptAt())
+        .isAfterOrEqualTo(before.plus(Duration.ofMillis(INITIAL_BACKOFF)));
+  }
+
+  @Test
+  public void shouldMoveRejectedPendingNotificationToDeadLetters() {
+    // when
+    service.reject(pending.getId(), leaseId);
+
+    // then
+    verify(deadLetterNotificationRepository).save(deadLetterCaptor.capture());
+    verify(pendingNotificationRepository).delete(pending);
+
+    assertThat(deadLetterCaptor.getValue().getAttemptCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldIncreaseBackoffExponentially() {
+    assertThat(service.getBackoff(1)).isEqualTo(Duration.ofMillis(INITIAL_BACKOFF));
+    assertThat(service.getBackoff(2)).isEqualTo(Duration.ofMillis(2 * INITIAL_BACKOFF));
+    assertThat(service.getBackoff(3)).isEqualTo(Duration.ofMillis(MAX_BACKOFF));
+    assertThat(service.getBackoff(Integer.MAX_VALUE)).isEqualTo(Duration.ofMillis(MAX_BACKOFF));
+  }
+
+  @Test
+  public void shouldRequeueDeadLettersOfGivenChannel() {
+    // given
+    DeadLetterNotification email = new DeadLetterNotification(pending, ZonedDateTime.now());
+    DeadLetterNotification sms = new DeadLetterNotification(new PendingNotificationDataBuilder()
+        .withNotification(pending.getNotification())
+        .withChannel(NotificationChannel.SMS)
+        .build(), ZonedDateTime.now());
+
+    given(deadLetterNotificationRepository.findByNotificationId(pending.getNotificationId()))
+        .willReturn(Lists.newArrayList(email, sms));
+
+    // when
+    service.requeue(pending.getNotificationId(), NotificationChannel.EMAIL);
+
+    // then
+    verify(pendingNotificationRepository).saveAll(pendingNotificationsCaptor.capture());
+    verify(deadLetterNotificationRepository).deleteAll(Lists.newArrayList(email));
+
+    assertThat(pendingNotificationsCaptor.getValue())
+        .extracting(PendingNotification::getId)
+        .containsExactly(pending.getId());
+  }
+
+  @Test
+  public void shouldThrowExceptionIfThereAreNoDeadLettersToRequeue() {
+    // given
+    exception.expect(NotFoundException.class);
+    exception.expectMessage(ERROR_DEAD_LETTER_NOTIFICATION_NOT_FOUND);
+
+    given(deadLetterNotificationRepository.findByNotificationId(pending.getNotificationId()))
+        .willReturn(Lists.newArrayList());
+
+    // when
+    service.requeue(pending.getNotificationId(), null);
+  }
+
+  @Test
+  public void shouldRequeueAllDeadLetters() {
+    // given
+    DeadLetterNotification deadLetter = new DeadLetterNotification(pending, ZonedDateTime.now());
+    given(deadLetterNotificationRepository.findAll())
+        .willReturn(Lists.newArrayList(deadLetter));
+
+    // when
+    int requeued = service.requeueAll();
+
+    // then
+    assertThat(requeued).isEqualTo(1);
+    verify(pendingNotificationRepository).saveAll(pendingNotificationsCaptor.capture());
+    verify(deadLetterNotificationRepository).deleteAll(Lists.newArrayList(deadLetter));
+  }
+}
@@ -18,6 +18,8 @@ package org.openlmis.notification.service;
 import static org.hamcrest.Matchers.arrayContaining;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.notification.i18n.MessageKeys.PERMISSION_MISSING;
 import static org.openlmis.notification.i18n.MessageKeys.PERMISSION_MISSING_GENERIC;
@@ -171,6 +173,125 @@ public class PermissionServiceTest {
     permissionService.canSendNotification();
   }
 
+  @Test
+  public void shouldAllowOtherServiceToManageDeadLetterNotifications() {
+    when(securityContext.getAuthentication()).thenReturn(serviceAuthentication);
+
+    permissionService.canManageDeadLetterNotifications();
+  }
+
+  @Test
+  public void shouldAllowUserWithUsersManageRightToManageDeadLetterNotifications() {
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(new ResultDto<>(true));
+
+    permissionService.canManageDeadLetterNotifications();
+  }
+
+  @Test
+  public void shouldNotAllowUserWithoutUsersManageRightToManageDeadLetterNotifications() {
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(new ResultDto<>(false));
+
+    expectException();
+
+    permissionService.canManageDeadLetterNotifications();
+  }
+
+  @Test
+  public void shouldAllowOtherServiceToManageDigestConfigurations() {
+    when(securityContext.getAuthentication()).thenReturn(serviceAuthentication);
+
+    permissionService.canManageDigestConfigurations();
+  }
+
+  @Test
+  public void shouldNotAllowUserWithoutUsersManageRightToManageDigestConfigurations() {
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(new ResultDto<>(false));
+
+    expectException();
+
+    permissionService.canManageDigestConfigurations();
+  }
+
+  @Test
+  public void shouldCheckUserRightOnceIfPermissionsAreCached() {
+    enablePermissionCache();
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(new ResultDto<>(true));
+
+    permissionService.canManageDeadLetterNotifications();
+    permissionService.canManageUserSubscriptions(UUID.randomUUID());
+
+    verify(userReferenceDataService, times(1))
+        .hasRight(userDto.getId(), rightDto.getId(), null, null, null);
+  }
+
+  @Test
+  public void shouldCacheMissingUserRight() {
+    enablePermissionCache();
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(new ResultDto<>(false));
+
+    try {
+      permissionService.canManageDeadLetterNotifications();
+    } catch (MissingPermissionException exp) {
+      // expected, the second check should not call the referencedata service
+    }
+
+    expectException();
+
+    try {
+      permissionService.canManageDeadLetterNotifications();
+    } finally {
+      verify(userReferenceDataService, times(1))
+          .hasRight(userDto.getId(), rightDto.getId(), null, null, null);
+    }
+  }
+
+  @Test
+  public void shouldNotCacheUserRightIfReferenceDataReturnedNoResult() {
+    enablePermissionCache();
+    when(securityContext.getAuthentication()).thenReturn(userAuthentication);
+    when(authenticationHelper.getCurrentUser()).thenReturn(userDto);
+    when(authenticationHelper.getRight(eq(USERS_MANAGE))).thenReturn(rightDto);
+    when(userReferenceDataService.hasRight(userDto.getId(), rightDto.getId(), null, null, null))
+        .thenReturn(null, new ResultDto<>(true));
+
+    try {
+      permissionService.canManageDeadLetterNotifications();
+    } catch (MissingPermissionException exp) {
+      // expected, the missing result should not be cached
+    }
+
+    permissionService.canManageDeadLetterNotifications();
+
+    verify(userReferenceDataService, times(2))
+        .hasRight(userDto.getId(), rightDto.getId(), null, null, null);
+  }
+
+  private void enablePermissionCache() {
+    ReflectionTestUtils.setField(permissionService, "permissionCacheMaximumSize", 10L);
+    ReflectionTestUtils.setField(permissionService, "permissionCacheTimeToLive", 60000L);
+    permissionService.initCache();
+  }
+
   private void expectException() {
     exception.expect(MissingPermissionException.class);
     exception.expect(hasProperty("params", arrayContaining(USERS_MANAGE)));
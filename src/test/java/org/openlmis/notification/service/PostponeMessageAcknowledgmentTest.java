@@ -0,0 +1,109 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.List;
+import org.assertj.core.util.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.PostponeMessage;
+import org.openlmis.notification.repository.PostponeMessageRepository;
+import org.openlmis.notification.testutils.PostponeMessageDataBuilder;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+
+public class PostponeMessageAcknowledgmentTest {
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private PostponeMessageRepository postponeMessageRepository;
+
+  @Captor
+  private ArgumentCaptor<List<PostponeMessage>> messagesCaptor;
+
+  private PostponeMessage message = new PostponeMessageDataBuilder().build();
+
+  private PostponeMessageAcknowledgment acknowledgment;
+
+  @Before
+  public void setUp() {
+    acknowledgment = new PostponeMessageAcknowledgment(postponeMessageRepository,
+        Lists.newArrayList(message));
+  }
+
+  @Test
+  public void shouldNotRestoreMessagesIfDigestWasAccepted() {
+    // when
+    acknowledgment.acknowledge(Status.ACCEPT);
+
+    // then
+    verifyZeroInteractions(postponeMessageRepository);
+    assertThat(acknowledgment.isAcknowledged()).isTrue();
+  }
+
+  @Test
+  public void shouldRestoreMessagesIfDigestWasRequeued() {
+    // when
+    acknowledgment.acknowledge(Status.REQUEUE);
+
+    // then
+    verify(postponeMessageRepository).saveAll(messagesCaptor.capture());
+    assertThat(messagesCaptor.getValue()).hasSize(1);
+
+    PostponeMessage restored = messagesCaptor.getValue().get(0);
+    assertThat(restored.getId()).isNull();
+    assertThat(restored.getConfiguration()).isEqualTo(message.getConfiguration());
+    assertThat(restored.getBody()).isEqualTo(message.getBody());
+    assertThat(restored.getSubject()).isEqualTo(message.getSubject());
+    assertThat(restored.getUserId()).isEqualTo(message.getUserId());
+    assertThat(restored.getChannel()).isEqualTo(message.getChannel());
+  }
+
+  @Test
+  public void shouldTakeOnlyFirstAcknowledgmentIntoAccount() {
+    // when
+    acknowledgment.acknowledge(Status.ACCEPT);
+    acknowledgment.acknowledge(Status.REQUEUE);
+
+    // then
+    verifyZeroInteractions(postponeMessageRepository);
+  }
+
+  @Test
+  public void shouldNotThrowIfMessagesCanNotBeRestored() {
+    // given
+    willThrow(new IllegalStateException()).given(postponeMessageRepository).saveAll(anyList());
+
+    // when
+    acknowledgment.acknowledge(Status.REQUEUE);
+
+    // then
+    assertThat(acknowledgment.isAcknowledged()).isTrue();
+  }
+}
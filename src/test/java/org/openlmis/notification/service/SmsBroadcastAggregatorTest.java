@@ -0,0 +1,253 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.scheduling.TaskScheduler;
+
+public class SmsBroadcastAggregatorTest {
+
+  private static final long WINDOW = 500;
+  private static final int MAX_RECIPIENTS = 3;
+  private static final int MAX_PENDING = 10;
+  private static final String BODY = "Stock out";
+  private static final String OTHER_BODY = "Order approved";
+  private static final String FIRST_NUMBER = "12065551234";
+  private static final String SECOND_NUMBER = "12065555678";
+  private static final String THIRD_NUMBER = "12065559012";
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private SmsSender smsSender;
+
+  @Mock
+  private TaskScheduler scheduler;
+
+  @Mock
+  private AcknowledgmentCallback firstCallback;
+
+  @Mock
+  private AcknowledgmentCallback secondCallback;
+
+  @Captor
+  private ArgumentCaptor<Runnable> taskCaptor;
+
+  private SmsBroadcastAggregator aggregator;
+
+  @Before
+  public void setUp() {
+    aggregator = new SmsBroadcastAggregator(smsSender, WINDOW, MAX_RECIPIENTS, MAX_PENDING,
+        scheduler);
+
+    given(smsSender.sendMessageAsync(anyList(), anyString()))
+        .willReturn(CompletableFuture.completedFuture(null));
+  }
+
+  @Test
+  public void shouldMergeMessagesWithIdenticalBodiesWhenWindowCloses() {
+    // given
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, BODY, secondCallback);
+
+    verify(scheduler).schedule(taskCaptor.capture(), any(Instant.class));
+    verifyZeroInteractions(smsSender);
+
+    // when
+    taskCaptor.getValue().run();
+
+    // then
+    verify(smsSender).sendMessageAsync(Arrays.asList(FIRST_NUMBER, SECOND_NUMBER), BODY);
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldSendMessagesWithDifferentBodiesSeparately() {
+    // when
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, OTHER_BODY, secondCallback);
+    aggregator.flush();
+
+    // then
+    verify(scheduler, times(2)).schedule(any(Runnable.class), any(Instant.class));
+    verify(smsSender).sendMessageAsync(Collections.singletonList(FIRST_NUMBER), BODY);
+    verify(smsSender).sendMessageAsync(Collections.singletonList(SECOND_NUMBER), OTHER_BODY);
+  }
+
+  @Test
+  public void shouldSendBroadcastWhenItReachesMaxRecipients() {
+    // when
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, BODY, secondCallback);
+    aggregator.add(THIRD_NUMBER, BODY, null);
+
+    // then
+    verify(smsSender)
+        .sendMessageAsync(Arrays.asList(FIRST_NUMBER, SECOND_NUMBER, THIRD_NUMBER), BODY);
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldSendAllBroadcastsWhenTooManyRecipientsAreWaiting() {
+    // given
+    aggregator = new SmsBroadcastAggregator(smsSender, WINDOW, MAX_RECIPIENTS, 2, scheduler);
+
+    // when
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, OTHER_BODY, secondCallback);
+
+    // then
+    verify(smsSender).sendMessageAsync(Collections.singletonList(FIRST_NUMBER), BODY);
+    verify(smsSender).sendMessageAsync(Collections.singletonList(SECOND_NUMBER), OTHER_BODY);
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldNotSendBroadcastTwice() {
+    // given
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    verify(scheduler).schedule(taskCaptor.capture(), any(Instant.class));
+    aggregator.flush();
+
+    // when
+    taskCaptor.getValue().run();
+
+    // then
+    verify(smsSender).sendMessageAsync(anyList(), anyString());
+  }
+
+  @Test
+  public void shouldOpenNewBroadcastIfPhoneNumberIsAlreadyRecipient() {
+    // when
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(FIRST_NUMBER, BODY, secondCallback);
+
+    // then
+    verify(smsSender).sendMessageAsync(Collections.singletonList(FIRST_NUMBER), BODY);
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verifyZeroInteractions(secondCallback);
+
+    aggregator.flush();
+
+    verify(smsSender, times(2)).sendMessageAsync(Collections.singletonList(FIRST_NUMBER), BODY);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldNotSendNewBroadcastWhenWindowOfPreviousOneCloses() {
+    // given
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, BODY, null);
+    aggregator.add(THIRD_NUMBER, BODY, null);
+    aggregator.add(FIRST_NUMBER, BODY, secondCallback);
+
+    verify(scheduler, times(2)).schedule(taskCaptor.capture(), any(Instant.class));
+
+    // when
+    taskCaptor.getAllValues().get(0).run();
+
+    // then
+    verify(smsSender).sendMessageAsync(anyList(), anyString());
+    verifyZeroInteractions(secondCallback);
+
+    taskCaptor.getAllValues().get(1).run();
+
+    verify(smsSender).sendMessageAsync(Collections.singletonList(FIRST_NUMBER), BODY);
+    verify(secondCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldRequeueAllRecipientsIfBroadcastCouldNotBeSent() {
+    // given
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new ServerException(new IllegalStateException(), "test"));
+
+    given(smsSender.sendMessageAsync(anyList(), anyString())).willReturn(failed);
+
+    // when
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.add(SECOND_NUMBER, BODY, secondCallback);
+    aggregator.flush();
+
+    // then
+    verify(firstCallback).acknowledge(Status.REQUEUE);
+    verify(secondCallback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldAcknowledgeRecipientsWhenAsyncBroadcastCompletes() {
+    // given
+    CompletableFuture<Void> response = new CompletableFuture<>();
+    given(smsSender.sendMessageAsync(anyList(), anyString())).willReturn(response);
+
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+    aggregator.flush();
+    verifyZeroInteractions(firstCallback);
+
+    // when
+    response.complete(null);
+
+    // then
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldSendOpenBroadcastsOnDestroy() {
+    // given
+    aggregator.add(FIRST_NUMBER, BODY, firstCallback);
+
+    // when
+    aggregator.destroy();
+
+    // then
+    verify(firstCallback).acknowledge(Status.ACCEPT);
+    verify(firstCallback, never()).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldBeDisabledIfWindowIsNotPositive() {
+    assertThat(new SmsBroadcastAggregator(smsSender, 0, MAX_RECIPIENTS, MAX_PENDING,
+        scheduler).isEnabled()).isFalse();
+    assertThat(aggregator.isEnabled()).isTrue();
+  }
+}
@@ -16,13 +16,14 @@
 package org.openlmis.notification.service;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.openlmis.notification.service.NotificationChannel.SMS;
 
-import java.util.Optional;
+import java.util.Collections;
 import java.util.UUID;
-import org.junit.Before;
+import java.util.concurrent.CompletableFuture;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -31,18 +32,24 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.notification.domain.Notification;
 import org.openlmis.notification.domain.NotificationMessage;
 import org.openlmis.notification.domain.UserContactDetails;
-import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.util.NotificationDataBuilder;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.acks.AcknowledgmentCallback.Status;
+import org.springframework.integration.support.MessageBuilder;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SmsNotificationChannelHandlerTest {
 
   @Mock
-  private UserContactDetailsRepository userContactDetailsRepository;
+  private SmsSender smsSender;
 
   @Mock
-  private SmsSender smsSender;
+  private SmsBroadcastAggregator smsBroadcastAggregator;
+
+  @Mock
+  private AcknowledgmentCallback callback;
 
   @InjectMocks
   private SmsNotificationChannelHandler handler;
@@ -55,30 +62,107 @@ public class SmsNotificationChannelHandlerTest {
 
   private UUID userId = contactDetails.getId();
 
-  @Before
-  public void setUp() {
-    given(userContactDetailsRepository.findById(userId))
-        .willReturn(Optional.of(contactDetails));
-  }
-
   @Test
   public void shouldSendMessage() {
     // when
-    handler.handle(message, userId);
+    handler.handle(message, userId, snapshot(), null);
 
     // then
     verify(smsSender).sendMessage(contactDetails.getPhoneNumber(), message.getBody());
   }
 
+  @Test
+  public void shouldAcknowledgeMessageWhenAsyncRequestCompletes() {
+    // given
+    CompletableFuture<Void> response = new CompletableFuture<>();
+
+    given(smsSender.isAsync()).willReturn(true);
+    given(smsSender.sendMessageAsync(
+        Collections.singletonList(contactDetails.getPhoneNumber()), message.getBody()))
+        .willReturn(response);
+
+    // when
+    handler.handle(message, userId, snapshot(), callback);
+    new ChannelLaneInterceptor().afterMessageHandled(MessageBuilder
+        .withPayload(message)
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, callback)
+        .build(), null, null, null);
+
+    // then
+    verifyZeroInteractions(callback);
+    response.completeExceptionally(new IllegalStateException());
+    verify(callback).acknowledge(Status.REQUEUE);
+  }
+
+  @Test
+  public void shouldSendAsyncMessagesOfUserOneByOne() {
+    // given
+    CompletableFuture<Void> first = new CompletableFuture<>();
+
+    given(smsSender.isAsync()).willReturn(true);
+    given(smsSender.sendMessageAsync(
+        Collections.singletonList(contactDetails.getPhoneNumber()), message.getBody()))
+        .willReturn(first, CompletableFuture.completedFuture(null));
+
+    // when
+    handler.handle(message, userId, snapshot(), null);
+    handler.handle(message, userId, snapshot(), callback);
+
+    // then
+    verify(smsSender, times(1)).sendMessageAsync(
+        Collections.singletonList(contactDetails.getPhoneNumber()), message.getBody());
+    verifyZeroInteractions(callback);
+
+    first.completeExceptionally(new IllegalStateException());
+
+    verify(smsSender, times(2)).sendMessageAsync(
+        Collections.singletonList(contactDetails.getPhoneNumber()), message.getBody());
+    verify(callback).acknowledge(Status.ACCEPT);
+  }
+
+  @Test
+  public void shouldAddRecipientToBroadcastIfMergingIsEnabled() {
+    // given
+    given(smsBroadcastAggregator.isEnabled()).willReturn(true);
+
+    // when
+    handler.handle(message, userId, snapshot(), callback);
+
+    // then
+    verify(smsBroadcastAggregator)
+        .add(contactDetails.getPhoneNumber(), message.getBody(), callback);
+    verifyZeroInteractions(smsSender);
+
+    // and the lane leaves the acknowledgment to the broadcast
+    new ChannelLaneInterceptor().afterMessageHandled(MessageBuilder
+        .withPayload(message)
+        .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, callback)
+        .build(), null, null, null);
+    verifyZeroInteractions(callback);
+  }
+
   @Test
   public void shouldNotSendMessageIfUserPhoneNumberIsNotSet() {
     // given
     contactDetails.setPhoneNumber(null);
 
     // when
-    handler.handle(message, userId);
+    handler.handle(message, userId, snapshot(), null);
 
     // then
     verifyZeroInteractions(smsSender);
   }
+
+  @Test
+  public void shouldNotSendMessageIfUserContactDetailsDoNotExist() {
+    // when
+    handler.handle(message, userId, null, null);
+
+    // then
+    verifyZeroInteractions(smsSender);
+  }
+
+  private UserContactDetailsSnapshot snapshot() {
+    return new UserContactDetailsSnapshot(contactDetails);
+  }
 }
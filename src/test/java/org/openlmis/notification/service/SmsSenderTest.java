@@ -19,9 +19,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_SEND_SMS_FAILURE;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -48,6 +53,7 @@ public class SmsSenderTest {
   private static final String SMS_SEND_API_TOKEN = "token";
   private static final String MESSAGE = "This is an SMS message";
   private static final String TO_PHONE_NUMBER = "12065551234";
+  private static final String OTHER_PHONE_NUMBER = "12065555678";
 
   @Rule
   public ExpectedException exception = ExpectedException.none();
@@ -55,6 +61,9 @@ public class SmsSenderTest {
   @Mock
   private RestTemplate restTemplate;
 
+  @Mock
+  private AsyncSmsClient asyncSmsClient;
+
   @InjectMocks
   private SmsSender sender;
   
@@ -97,6 +106,79 @@ public class SmsSenderTest {
     assertThat(requestBody.getUrns()).contains("tel:" + TO_PHONE_NUMBER);
   }
   
+  @Test
+  public void sendMessageShouldSendSingleBroadcastToAllPhoneNumbers() {
+    // when
+    sender.sendMessage(Arrays.asList(TO_PHONE_NUMBER, OTHER_PHONE_NUMBER), MESSAGE);
+
+    // then
+    verify(restTemplate).postForEntity(urlCaptor.capture(), requestCaptor.capture(),
+        eq(String.class));
+
+    SmsRequestDto requestBody = (SmsRequestDto) requestCaptor.getValue().getBody();
+    assertThat(requestBody.getText()).isEqualToIgnoringCase(MESSAGE);
+    assertThat(requestBody.getUrns())
+        .containsExactly("tel:" + TO_PHONE_NUMBER, "tel:" + OTHER_PHONE_NUMBER);
+  }
+
+  @Test
+  public void sendMessageAsyncShouldPostRequestWithAsyncClientIfItIsEnabled() {
+    // given
+    CompletableFuture<Void> response = new CompletableFuture<>();
+
+    given(asyncSmsClient.isEnabled()).willReturn(true);
+    given(asyncSmsClient.post(eq(SMS_SEND_API_URL), any(HttpEntity.class))).willReturn(response);
+
+    // when
+    CompletableFuture<Void> result = sender
+        .sendMessageAsync(Collections.singletonList(TO_PHONE_NUMBER), MESSAGE);
+
+    // then
+    assertThat(result).isSameAs(response);
+    verify(asyncSmsClient).post(eq(SMS_SEND_API_URL), requestCaptor.capture());
+    verify(restTemplate, never()).postForEntity(
+        any(String.class), any(HttpEntity.class), eq(String.class));
+
+    HttpEntity requestValue = requestCaptor.getValue();
+    assertThat(requestValue.getHeaders().get("Authorization"))
+        .contains("Token " + SMS_SEND_API_TOKEN);
+    assertThat(((SmsRequestDto) requestValue.getBody()).getUrns())
+        .containsExactly("tel:" + TO_PHONE_NUMBER);
+  }
+
+  @Test
+  public void sendMessageAsyncShouldFailIfSyncRequestFails() {
+    // given
+    given(restTemplate.postForEntity(
+        any(String.class), any(HttpEntity.class), eq(String.class)))
+        .willThrow(new RestClientException("Bad request"));
+
+    // when
+    CompletableFuture<Void> result = sender
+        .sendMessageAsync(Collections.singletonList(TO_PHONE_NUMBER), MESSAGE);
+
+    // then
+    assertThat(result).isCompletedExceptionally();
+  }
+
+  @Test
+  public void sendMessageShouldTakePermitFromRateLimiter() {
+    // given
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ReflectionTestUtils.setField(sender, "rateLimitPermitsPerSecond", 100.0);
+    ReflectionTestUtils.setField(sender, "rateLimitBurst", 10);
+    ReflectionTestUtils.setField(sender, "meterRegistry", meterRegistry);
+    sender.initRateLimiter();
+
+    // when
+    sender.sendMessage(TO_PHONE_NUMBER, MESSAGE);
+
+    // then
+    assertThat(meterRegistry.get(TokenBucketRateLimiter.WAIT_METRIC)
+        .tag("provider", "sms").timer().count()).isEqualTo(1);
+  }
+
   @Test
   public void sendMessageShouldThrowExceptionIfServiceReturnsAnErrorCode() {
     // given
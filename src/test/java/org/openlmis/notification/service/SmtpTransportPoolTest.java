@@ -0,0 +1,202 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Map;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.service.SmtpTransportPool.TransportFactory;
+
+public class SmtpTransportPoolTest {
+
+  private static final int SIZE = 2;
+  private static final long IDLE_TIMEOUT = 60000;
+  private static final int MAX_MESSAGES_PER_CONNECTION = 3;
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private TransportFactory transportFactory;
+
+  @Mock
+  private Transport transport;
+
+  @Mock
+  private Transport otherTransport;
+
+  private SmtpTransportPool pool;
+
+  private MimeMessage message;
+
+  @Before
+  public void setUp() throws MessagingException {
+    pool = new SmtpTransportPool(transportFactory, SIZE, IDLE_TIMEOUT,
+        MAX_MESSAGES_PER_CONNECTION);
+
+    message = new MimeMessage((Session) null);
+    message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user@example.org"));
+    message.setText("body");
+  }
+
+  @Test
+  public void shouldReuseConnectedTransport() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport);
+    given(transport.isConnected()).willReturn(true);
+
+    // when
+    pool.send(message);
+    pool.send(message);
+
+    // then
+    verify(transportFactory, times(1)).connect();
+    verify(transport, times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+    verify(transport, never()).close();
+  }
+
+  @Test
+  public void shouldReplaceBrokenTransport() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport, otherTransport);
+    given(transport.isConnected()).willReturn(false);
+
+    // when
+    pool.send(message);
+    pool.send(message);
+
+    // then
+    verify(transport).close();
+    verify(otherTransport).sendMessage(any(MimeMessage.class), any(Address[].class));
+  }
+
+  @Test
+  public void shouldCloseTransportAfterFailedSend() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport);
+    willThrow(new MessagingException("test"))
+        .given(transport)
+        .sendMessage(any(MimeMessage.class), any(Address[].class));
+
+    // when
+    try {
+      pool.send(message);
+    } catch (MessagingException exp) {
+      // expected
+    }
+
+    // then
+    verify(transport).close();
+  }
+
+  @Test
+  public void shouldCloseTransportAfterMaxMessages() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport, otherTransport);
+    given(transport.isConnected()).willReturn(true);
+
+    // when
+    for (int idx = 0; idx <= MAX_MESSAGES_PER_CONNECTION; ++idx) {
+      pool.send(message);
+    }
+
+    // then
+    verify(transport, times(MAX_MESSAGES_PER_CONNECTION))
+        .sendMessage(any(MimeMessage.class), any(Address[].class));
+    verify(transport).close();
+    verify(otherTransport).sendMessage(any(MimeMessage.class), any(Address[].class));
+  }
+
+  @Test
+  public void shouldSendBatchOverSingleTransport() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport);
+
+    // when
+    Map<MimeMessage, Exception> failures = pool.sendAll(Arrays.asList(message, message));
+
+    // then
+    assertThat(failures).isEmpty();
+    verify(transportFactory, times(1)).connect();
+    verify(transport, times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+  }
+
+  @Test
+  public void shouldContinueBatchWithNewTransportAfterFailedSend() throws MessagingException {
+    // given
+    MimeMessage failed = new MimeMessage((Session) null);
+    failed.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user@example.org"));
+    failed.setText("failed");
+    MessagingException cause = new MessagingException("test");
+
+    given(transportFactory.connect()).willReturn(transport, otherTransport);
+    willThrow(cause)
+        .given(transport)
+        .sendMessage(any(MimeMessage.class), any(Address[].class));
+
+    // when
+    Map<MimeMessage, Exception> failures = pool.sendAll(Arrays.asList(failed, message));
+
+    // then
+    assertThat(failures).containsOnly(entry(failed, cause));
+    verify(transport).close();
+    verify(otherTransport).sendMessage(any(MimeMessage.class), any(Address[].class));
+  }
+
+  @Test
+  public void shouldCloseIdleTransportsOnDestroy() throws MessagingException {
+    // given
+    given(transportFactory.connect()).willReturn(transport);
+    pool.send(message);
+
+    // when
+    pool.destroy();
+
+    // then
+    verify(transport).close();
+  }
+
+  @Test
+  public void shouldBeDisabledIfSizeIsNotPositive() {
+    // when
+    SmtpTransportPool disabled = new SmtpTransportPool(mock(TransportFactory.class), 0,
+        IDLE_TIMEOUT, MAX_MESSAGES_PER_CONNECTION);
+
+    // then
+    assertThat(disabled.isEnabled()).isFalse();
+  }
+}
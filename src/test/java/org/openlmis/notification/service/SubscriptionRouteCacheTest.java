@@ -0,0 +1,147 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.UUID;
+import org.assertj.core.util.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.openlmis.notification.domain.DigestSubscription;
+import org.openlmis.notification.repository.DigestSubscriptionRepository;
+import org.openlmis.notification.testutils.DigestConfigurationDataBuilder;
+import org.openlmis.notification.testutils.DigestSubscriptionDataBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class SubscriptionRouteCacheTest {
+
+  private static final String TAG = "tag";
+  private static final long CACHE_SIZE = 1;
+  private static final long CACHE_TIME_TO_LIVE = 60000;
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private DigestSubscriptionRepository digestSubscriptionRepository;
+
+  private SubscriptionRouteCache cache;
+
+  private UUID userId = UUID.randomUUID();
+
+  private DigestSubscription subscription = new DigestSubscriptionDataBuilder()
+      .withDigestConfiguration(new DigestConfigurationDataBuilder().withTag(TAG).build())
+      .withPreferredChannel(NotificationChannel.SMS)
+      .build();
+
+  @Before
+  public void setUp() {
+    given(digestSubscriptionRepository.getUserSubscriptions(userId))
+        .willReturn(Lists.newArrayList(subscription));
+
+    cache = new SubscriptionRouteCache(digestSubscriptionRepository, CACHE_SIZE,
+        CACHE_TIME_TO_LIVE);
+  }
+
+  @After
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void shouldFindRouteForTag() {
+    assertThat(cache.find(userId, TAG)).isEqualTo(new SubscriptionRoute(subscription));
+    assertThat(cache.find(userId, "other-tag")).isNull();
+  }
+
+  @Test
+  public void shouldNotRetrieveSubscriptionsForMessageWithoutTag() {
+    // when
+    SubscriptionRoute route = cache.find(userId, null);
+
+    // then
+    assertThat(route).isNull();
+    verifyZeroInteractions(digestSubscriptionRepository);
+  }
+
+  @Test
+  public void shouldRetrieveUserSubscriptionsOnlyOnce() {
+    // when
+    cache.find(userId, TAG);
+    cache.find(userId, "other-tag");
+
+    // then
+    verify(digestSubscriptionRepository).getUserSubscriptions(userId);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedUser() {
+    // given
+    UUID otherUserId = UUID.randomUUID();
+    given(digestSubscriptionRepository.getUserSubscriptions(otherUserId))
+        .willReturn(Lists.newArrayList());
+
+    // when
+    cache.find(userId, TAG);
+    cache.find(otherUserId, TAG);
+    cache.find(userId, TAG);
+
+    // then
+    verify(digestSubscriptionRepository, times(2)).getUserSubscriptions(userId);
+  }
+
+  @Test
+  public void shouldRetrieveUserSubscriptionsAgainAfterInvalidation() {
+    // given
+    cache.find(userId, TAG);
+
+    // when
+    cache.invalidate(userId);
+    cache.find(userId, TAG);
+
+    // then
+    verify(digestSubscriptionRepository, times(2)).getUserSubscriptions(userId);
+  }
+
+  @Test
+  public void shouldInvalidateRoutesAgainAfterCommit() {
+    // given
+    TransactionSynchronizationManager.initSynchronization();
+
+    // when
+    cache.invalidate(userId);
+    cache.find(userId, TAG);
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    cache.find(userId, TAG);
+
+    // then
+    verify(digestSubscriptionRepository, times(2)).getUserSubscriptions(userId);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openlmis.notification.service.TokenBucketRateLimiter.PERMITS_METRIC;
+import static org.openlmis.notification.service.TokenBucketRateLimiter.WAIT_METRIC;
+
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class TokenBucketRateLimiterTest {
+
+  private static final String PROVIDER = "sms";
+  private static final double PERMITS_PER_SECOND = 10;
+  private static final int BURST = 3;
+  private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private FakeTicker ticker = new FakeTicker();
+
+  private TokenBucketRateLimiter limiter =
+      new TokenBucketRateLimiter(PROVIDER, PERMITS_PER_SECOND, BURST, ticker);
+
+  @Test
+  public void shouldAllowBurstWithoutWaiting() {
+    assertThat(limiter.getAvailablePermits()).isEqualTo(BURST);
+
+    assertThat(limiter.reserve(1)).isZero();
+    assertThat(limiter.reserve(1)).isZero();
+    assertThat(limiter.reserve(1)).isZero();
+
+    assertThat(limiter.getAvailablePermits()).isZero();
+  }
+
+  @Test
+  public void shouldWaitForPermitsAfterBurst() {
+    // given
+    limiter.reserve(BURST);
+
+    // when & then
+    assertThat(limiter.reserve(1)).isEqualTo(INTERVAL);
+    assertThat(limiter.reserve(1)).isEqualTo(2 * INTERVAL);
+  }
+
+  @Test
+  public void shouldRefillPermitsAtFixedRate() {
+    // given
+    limiter.reserve(BURST);
+
+    // when
+    ticker.advance(2 * INTERVAL);
+
+    // then
+    assertThat(limiter.getAvailablePermits()).isEqualTo(2);
+    assertThat(limiter.reserve(2)).isZero();
+    assertThat(limiter.reserve(1)).isEqualTo(INTERVAL);
+  }
+
+  @Test
+  public void shouldNotHoldMorePermitsThanBurst() {
+    // when
+    ticker.advance(TimeUnit.MINUTES.toNanos(1));
+
+    // then
+    assertThat(limiter.getAvailablePermits()).isEqualTo(BURST);
+    assertThat(limiter.reserve(BURST + 1)).isEqualTo(INTERVAL);
+  }
+
+  @Test
+  public void shouldNotLimitIfRateIsNotPositive() {
+    TokenBucketRateLimiter unlimited = new TokenBucketRateLimiter(PROVIDER, 0, BURST, ticker);
+
+    assertThat(unlimited.isEnabled()).isFalse();
+    assertThat(unlimited.reserve(1000)).isZero();
+  }
+
+  @Test
+  public void shouldNotGiveAwayMorePermitsUnderConcurrency() throws InterruptedException {
+    // given
+    int threads = 8;
+    int permitsPerThread = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch done = new CountDownLatch(threads);
+
+    // when
+    for (int idx = 0; idx < threads; ++idx) {
+      executor.execute(() -> {
+        for (int permit = 0; permit < permitsPerThread; ++permit) {
+          limiter.reserve(1);
+        }
+        done.countDown();
+      });
+    }
+
+    done.await(10, TimeUnit.SECONDS);
+    executor.shutdown();
+
+    // then
+    long taken = (long) threads * permitsPerThread;
+    assertThat(limiter.reserve(1)).isEqualTo((taken - BURST + 1) * INTERVAL);
+  }
+
+  @Test
+  public void shouldPublishMetrics() {
+    // given
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    limiter.bindTo(registry);
+
+    // when
+    limiter.acquire(1);
+
+    // then
+    assertThat(registry.get(PERMITS_METRIC).tag("provider", PROVIDER).gauge().value())
+        .isEqualTo(BURST - 1);
+    assertThat(registry.get(WAIT_METRIC).tag("provider", PROVIDER).timer().count())
+        .isEqualTo(1);
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(long duration) {
+      nanos.addAndGet(duration);
+    }
+  }
+}
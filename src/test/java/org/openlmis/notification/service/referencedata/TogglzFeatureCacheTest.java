@@ -0,0 +1,165 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service.referencedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import org.assertj.core.util.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+public class TogglzFeatureCacheTest {
+
+  private static final String FEATURE = "FEATURE";
+  private static final long LONG_TIME_TO_LIVE = 60000;
+  private static final long NO_TIME_TO_LIVE = 0;
+
+  @Rule
+  public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+  @Mock
+  private TogglzReferenceDataService togglzReferenceDataService;
+
+  private List<Runnable> tasks = Lists.newArrayList();
+
+  @Test
+  public void shouldLoadFeaturesOnlyOnce() {
+    // given
+    givenFeature(true);
+    TogglzFeatureCache cache = loadedCache(LONG_TIME_TO_LIVE);
+
+    // when
+    boolean first = cache.isFeatureActive(FEATURE);
+    boolean second = cache.isFeatureActive(FEATURE);
+
+    // then
+    assertThat(first).isTrue();
+    assertThat(second).isTrue();
+    assertThat(tasks).isEmpty();
+    verify(togglzReferenceDataService).findAll();
+  }
+
+  @Test
+  public void shouldTreatUnknownFeatureAsDisabled() {
+    // given
+    givenFeature(true);
+
+    // when
+    boolean active = loadedCache(LONG_TIME_TO_LIVE).isFeatureActive("UNKNOWN");
+
+    // then
+    assertThat(active).isFalse();
+  }
+
+  @Test
+  public void shouldRefreshFeaturesInBackgroundIfTheyAreStale() {
+    // given
+    givenFeature(true);
+    TogglzFeatureCache cache = loadedCache(NO_TIME_TO_LIVE);
+    givenFeature(false);
+
+    // when
+    boolean stale = cache.isFeatureActive(FEATURE);
+    runTasks();
+
+    // then
+    assertThat(stale).isTrue();
+    assertThat(cache.isFeatureActive(FEATURE)).isFalse();
+    verify(togglzReferenceDataService, times(2)).findAll();
+  }
+
+  @Test
+  public void shouldScheduleOnlyOneRefreshAtTime() {
+    // given
+    givenFeature(true);
+    TogglzFeatureCache cache = loadedCache(NO_TIME_TO_LIVE);
+
+    // when
+    cache.isFeatureActive(FEATURE);
+    cache.isFeatureActive(FEATURE);
+
+    // then
+    assertThat(tasks).hasSize(1);
+  }
+
+  @Test
+  public void shouldUseLastKnownStateIfFeaturesCanNotBeRefreshed() {
+    // given
+    givenFeature(true);
+    TogglzFeatureCache cache = loadedCache(NO_TIME_TO_LIVE);
+
+    given(togglzReferenceDataService.findAll()).willThrow(new IllegalStateException());
+
+    // when
+    cache.isFeatureActive(FEATURE);
+    runTasks();
+
+    // then
+    assertThat(cache.isFeatureActive(FEATURE)).isTrue();
+  }
+
+  @Test
+  public void shouldFailAndScheduleLoadIfFeaturesHaveNotBeenLoaded() {
+    // given
+    given(togglzReferenceDataService.findAll())
+        .willThrow(new IllegalStateException())
+        .willReturn(Lists.newArrayList(new TogglzFeatureDto(FEATURE, true, null, null)));
+    TogglzFeatureCache cache = loadedCache(LONG_TIME_TO_LIVE);
+
+    // when
+    assertThatThrownBy(() -> cache.isFeatureActive(FEATURE))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> cache.isFeatureActive(FEATURE))
+        .isInstanceOf(IllegalStateException.class);
+
+    // then
+    assertThat(tasks).hasSize(1);
+
+    runTasks();
+    assertThat(cache.isFeatureActive(FEATURE)).isTrue();
+  }
+
+  private TogglzFeatureCache createCache(long timeToLive) {
+    return new TogglzFeatureCache(togglzReferenceDataService, timeToLive, tasks::add);
+  }
+
+  private TogglzFeatureCache loadedCache(long timeToLive) {
+    TogglzFeatureCache cache = createCache(timeToLive);
+    cache.load();
+    runTasks();
+
+    return cache;
+  }
+
+  private void givenFeature(boolean enabled) {
+    given(togglzReferenceDataService.findAll())
+        .willReturn(Lists.newArrayList(new TogglzFeatureDto(FEATURE, enabled, null, null)));
+  }
+
+  private void runTasks() {
+    List<Runnable> scheduled = Lists.newArrayList(tasks);
+    tasks.clear();
+    scheduled.forEach(Runnable::run);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.service.referencedata;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.UUID;
+import org.junit.Test;
+import org.openlmis.notification.service.DataRetrievalException;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+public class UserReferenceDataServiceTest extends BaseReferenceDataServiceTest<UserDto> {
+
+  private static final String CACHE_NAME = "referencedata.users";
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private UUID userId = UUID.randomUUID();
+
+  @Override
+  protected UserDto generateInstance() {
+    return new UserDto();
+  }
+
+  @Override
+  protected UserReferenceDataService getService() {
+    return new UserReferenceDataService();
+  }
+
+  @Test
+  public void shouldReturnCachedUser() {
+    // given
+    BaseReferenceDataService<UserDto> service = prepareCachedService(60000, 60000);
+    UserDto user = generateInstance();
+    ResponseEntity<UserDto> response = mock(ResponseEntity.class);
+
+    when(response.getBody()).thenReturn(user);
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(UserDto.class))).thenReturn(response);
+
+    // when
+    UserDto first = service.findOne(userId);
+    UserDto second = service.findOne(userId);
+
+    // then
+    assertThat(first, is(user));
+    assertThat(second, is(user));
+
+    verify(restTemplate, times(1)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(HttpEntity.class), eq(UserDto.class));
+
+    assertThat(meterRegistry.get("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+        .functionCounter().count(), is(1.0));
+    assertThat(meterRegistry.get("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+        .functionCounter().count(), is(1.0));
+  }
+
+  @Test
+  public void shouldCacheUserThatDoesNotExist() {
+    // given
+    BaseReferenceDataService<UserDto> service = prepareCachedService(60000, 60000);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(UserDto.class))).thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+    // when
+    UserDto first = service.findOne(userId);
+    UserDto second = service.findOne(userId);
+
+    // then
+    assertThat(first, is(nullValue()));
+    assertThat(second, is(nullValue()));
+
+    verify(restTemplate, times(1)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(HttpEntity.class), eq(UserDto.class));
+  }
+
+  @Test
+  public void shouldRetrieveUserThatDidNotExistAfterNotFoundTimeToLive() {
+    // given
+    BaseReferenceDataService<UserDto> service = prepareCachedService(60000, 0);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(UserDto.class))).thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+    // when
+    service.findOne(userId);
+    service.findOne(userId);
+
+    // then
+    verify(restTemplate, times(3)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(HttpEntity.class), eq(UserDto.class));
+  }
+
+  @Test
+  public void shouldNotCacheErrors() {
+    // given
+    BaseReferenceDataService<UserDto> service = prepareCachedService(60000, 60000);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(UserDto.class))).thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+    // when
+    for (int idx = 0; idx < 2; ++idx) {
+      try {
+        service.findOne(userId);
+      } catch (DataRetrievalException exp) {
+        // expected
+      }
+    }
+
+    // then
+    verify(restTemplate, times(2)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(HttpEntity.class), eq(UserDto.class));
+  }
+
+  private BaseReferenceDataService<UserDto> prepareCachedService(long timeToLive,
+      long notFoundTimeToLive) {
+    BaseReferenceDataService<UserDto> service = prepareService();
+
+    ReflectionTestUtils.setField(service, "cacheMaximumSize", 10L);
+    ReflectionTestUtils.setField(service, "cacheTimeToLive", timeToLive);
+    ReflectionTestUtils.setField(service, "cacheNotFoundTimeToLive", notFoundTimeToLive);
+    ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+    service.initCache();
+
+    return service;
+  }
+}
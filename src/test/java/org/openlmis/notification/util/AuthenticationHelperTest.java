@@ -23,6 +23,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -118,6 +119,21 @@ public class AuthenticationHelperTest {
     assertThat(dto, is(right));
   }
 
+  @Test
+  public void shouldRetrieveRightOnlyOnce() {
+    // given
+    RightDto right = mock(RightDto.class);
+    when(rightReferenceDataService.findRight("rightName")).thenReturn(right);
+
+    // when
+    authenticationHelper.getRight("rightName");
+    RightDto dto = authenticationHelper.getRight("rightName");
+
+    // then
+    assertThat(dto, is(right));
+    verify(rightReferenceDataService, times(1)).findRight("rightName");
+  }
+
   @Test(expected = AuthenticationException.class)
   public void shouldThrowExceptionIfRightDoesNotExist() {
     // given
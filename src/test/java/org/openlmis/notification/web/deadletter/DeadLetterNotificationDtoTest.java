@@ -0,0 +1,60 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.notification.web.deadletter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
+import org.junit.Test;
+import org.openlmis.notification.domain.DeadLetterNotification;
+import org.openlmis.notification.testutils.PendingNotificationDataBuilder;
+import org.openlmis.notification.testutils.ToStringTestUtils;
+
+public class DeadLetterNotificationDtoTest {
+
+  @Test
+  public void shouldCreateInstanceBasedOnDomain() {
+    // given
+    DeadLetterNotification domain = new DeadLetterNotification(
+        new PendingNotificationDataBuilder().build(), ZonedDateTime.now());
+
+    // when
+    DeadLetterNotificationDto dto = DeadLetterNotificationDto.newInstance(domain);
+
+    // then
+    assertThat(dto.getNotificationId()).isEqualTo(domain.getNotificationId());
+    assertThat(dto.getChannel()).isEqualTo(domain.getChannel());
+    assertThat(dto.getCreatedDate()).isEqualTo(domain.getCreatedDate());
+    assertThat(dto.getAttemptCount()).isEqualTo(domain.getAttemptCount());
+    assertThat(dto.getDeadLetteredDate()).isEqualTo(domain.getDeadLetteredDate());
+  }
+
+  @Test
+  public void equalsContract() {
+    EqualsVerifier
+        .forClass(DeadLetterNotificationDto.class)
+        .suppress(Warning.NONFINAL_FIELDS)
+        .verify();
+  }
+
+  @Test
+  public void shouldImplementToString() {
+    ToStringTestUtils.verify(DeadLetterNotificationDto.class, new DeadLetterNotificationDto());
+  }
+
+}
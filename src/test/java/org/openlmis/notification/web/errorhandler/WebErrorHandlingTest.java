@@ -41,10 +41,13 @@ import org.openlmis.notification.i18n.MessageService;
 import org.openlmis.notification.service.ServerException;
 import org.openlmis.notification.web.MissingPermissionException;
 import org.openlmis.notification.web.NotFoundException;
+import org.openlmis.notification.web.TooManyRequestsException;
 import org.openlmis.notification.web.ValidationException;
 import org.springframework.context.MessageSource;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.web.client.HttpStatusCodeException;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -113,6 +116,21 @@ public class WebErrorHandlingTest {
     assertMessage(message, MESSAGE_KEY);
   }
 
+  @Test
+  public void shouldHandleTooManyRequestsException() {
+    // given
+    TooManyRequestsException exp = new TooManyRequestsException(30, MESSAGE_KEY);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    // when
+    mockMessage(MESSAGE_KEY);
+    Message.LocalizedMessage message = errorHandler.handleTooManyRequestsException(exp, response);
+
+    // then
+    assertMessage(message, MESSAGE_KEY);
+    assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("30");
+  }
+
   @Test
   public void shouldHandleNotFoundException() {
     // given
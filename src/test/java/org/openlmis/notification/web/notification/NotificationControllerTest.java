@@ -15,7 +15,15 @@
 
 package org.openlmis.notification.web.notification;
 
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.notification.i18n.MessageKeys.ERROR_NOTIFICATION_QUEUE_FULL;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_USER_CONTACT_DETAILS_NOT_FOUND;
 import static org.openlmis.notification.i18n.MessageKeys.ERROR_USER_NOT_ACTIVE_OR_NOT_FOUND;
 
@@ -34,6 +42,8 @@ import org.openlmis.notification.repository.NotificationRepository;
 import org.openlmis.notification.repository.PendingNotificationRepository;
 import org.openlmis.notification.repository.UserContactDetailsRepository;
 import org.openlmis.notification.service.NotificationChannel;
+import org.openlmis.notification.service.PendingNotificationBacklog;
+import org.openlmis.notification.service.PendingNotificationDispatcher;
 import org.openlmis.notification.service.PermissionService;
 import org.openlmis.notification.service.referencedata.UserDto;
 import org.openlmis.notification.service.referencedata.UserReferenceDataService;
@@ -41,6 +51,7 @@ import org.openlmis.notification.testutils.UserDataBuilder;
 import org.openlmis.notification.util.NotificationDataBuilder;
 import org.openlmis.notification.util.UserContactDetailsDataBuilder;
 import org.openlmis.notification.web.NotFoundException;
+import org.openlmis.notification.web.TooManyRequestsException;
 import org.openlmis.notification.web.ValidationException;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.BindingResult;
@@ -72,6 +83,12 @@ public class NotificationControllerTest {
   @Mock
   private PendingNotificationRepository pendingNotificationRepository;
 
+  @Mock
+  private PendingNotificationDispatcher pendingNotificationDispatcher;
+
+  @Mock
+  private PendingNotificationBacklog pendingNotificationBacklog;
+
   @InjectMocks
   private NotificationController controller;
 
@@ -97,6 +114,36 @@ public class NotificationControllerTest {
         .willReturn(userDto);
   }
 
+  @Test
+  public void shouldDispatchNotificationAfterCommit() {
+    // when
+    controller.sendNotification(notificationDto, bindingResult);
+
+    // then
+    verify(pendingNotificationRepository).saveAll(anyCollection());
+    verify(pendingNotificationDispatcher)
+        .dispatchAfterCommit(any(Notification.class), eq(contactDetails));
+    verify(pendingNotificationBacklog).added(1);
+  }
+
+  @Test
+  public void shouldNotSaveNotificationIfItIsNotAdmitted() {
+    // given
+    willThrow(new TooManyRequestsException(30, ERROR_NOTIFICATION_QUEUE_FULL))
+        .given(pendingNotificationBacklog).admit(notificationDto.getImportant());
+
+    // when
+    try {
+      controller.sendNotification(notificationDto, bindingResult);
+      fail("An exception should be thrown");
+    } catch (TooManyRequestsException exp) {
+      // then
+      verify(notificationRepository, never()).saveAndFlush(any(Notification.class));
+      verify(pendingNotificationDispatcher, never())
+          .dispatchAfterCommit(any(Notification.class), any(UserContactDetails.class));
+    }
+  }
+
   @Test
   public void shouldThrowExceptionWhenContactDetailsDoesNotExist() {
     // given